@@ -1,6 +1,8 @@
 import org.gradle.api.tasks.compile.JavaCompile
 import org.gradle.jvm.toolchain.JavaLanguageVersion
 import org.gradle.api.publish.maven.MavenPublication
+import groovy.json.JsonSlurper
+import java.io.DataOutputStream
 
 plugins {
     id("net.fabricmc.fabric-loom-remap")
@@ -47,6 +49,139 @@ tasks.processResources {
     }
 }
 
+/**
+ * Compiles colors.json and checklistdata.json into data/seymouranalyzer/referencedata.bin so the mod
+ * doesn't parse JSON or convert colors to LAB at startup. Read by ReferenceData.readCompiled();
+ * the layout and the LAB formula (ColorMath.hexToLab) must stay in sync with it.
+ */
+abstract class CompileReferenceData : DefaultTask() {
+    @get:InputFile
+    abstract val colorsFile: RegularFileProperty
+
+    @get:InputFile
+    abstract val checklistFile: RegularFileProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    // Same order as CollectionStore.TYPE_NAMES, bit i of a piece mask
+    private val pieceTypes = listOf("helmet", "chestplate", "leggings", "boots")
+
+    @TaskAction
+    fun compile() {
+        @Suppress("UNCHECKED_CAST")
+        val colors = JsonSlurper().parse(colorsFile.get().asFile) as Map<String, Any?>
+        @Suppress("UNCHECKED_CAST")
+        val checklist = JsonSlurper().parse(checklistFile.get().asFile) as Map<String, Any?>
+
+        @Suppress("UNCHECKED_CAST")
+        val targets = (colors["TARGET_COLORS"] as Map<String, String>?) ?: emptyMap()
+        @Suppress("UNCHECKED_CAST")
+        val fades = (colors["FADE_DYES"] as Map<String, String>?) ?: emptyMap()
+        @Suppress("UNCHECKED_CAST")
+        val categories = (checklist["categories"] as Map<String, List<Map<String, Any?>>>?) ?: emptyMap()
+        @Suppress("UNCHECKED_CAST")
+        val pageOrder = (checklist["normalPageOrder"] as List<String>?) ?: emptyList()
+
+        // Fade stages grouped by dye, in file order, as indexes into the fade table
+        val fadeNames = fades.keys.toList()
+        val curves = LinkedHashMap<String, MutableList<Int>>()
+        fadeNames.forEachIndexed { index, name ->
+            val parts = name.split(" - Stage ")
+            if (parts.size == 2) {
+                curves.getOrPut(parts[0]) { mutableListOf() }.add(index)
+            }
+        }
+
+        val file = outputDir.get().file("data/seymouranalyzer/referencedata.bin").asFile
+        file.parentFile.mkdirs()
+        DataOutputStream(file.outputStream().buffered()).use { out ->
+            out.writeInt(0x53524431) // "SRD1"
+            out.writeByte(1)
+
+            out.writeInt(targets.size)
+            targets.forEach { (name, hex) -> writeColor(out, name, hex) }
+
+            out.writeInt(fades.size)
+            fades.forEach { (name, hex) -> writeColor(out, name, hex) }
+
+            out.writeInt(curves.size)
+            curves.forEach { (name, stages) ->
+                out.writeUTF(name)
+                out.writeInt(stages.size)
+                stages.forEach { out.writeInt(it) }
+            }
+
+            out.writeInt(categories.size)
+            categories.forEach { (name, stages) ->
+                out.writeUTF(name)
+                out.writeInt(stages.size)
+                stages.forEach { stage ->
+                    val hex = (stage["hex"] as String).uppercase()
+                    @Suppress("UNCHECKED_CAST")
+                    val pieces = (stage["pieces"] as List<String>?) ?: emptyList()
+                    var mask = 0
+                    pieceTypes.forEachIndexed { bit, type -> if (type in pieces) mask = mask or (1 shl bit) }
+
+                    out.writeUTF(stage["name"] as String)
+                    out.writeUTF(hex)
+                    out.writeInt(hex.toInt(16))
+                    out.writeByte(mask)
+                    writeLab(out, hex)
+                }
+            }
+
+            out.writeInt(pageOrder.size)
+            pageOrder.forEach { out.writeUTF(it) }
+        }
+        logger.lifecycle("Compiled reference data: ${targets.size} targets, ${fades.size} fade stages, ${categories.size} categories")
+    }
+
+    private fun writeColor(out: DataOutputStream, name: String, rawHex: String) {
+        val hex = rawHex.uppercase()
+        out.writeUTF(name)
+        out.writeUTF(hex)
+        out.writeInt(hex.toInt(16))
+        writeLab(out, hex)
+    }
+
+    // Same math as ColorMath.hexToLab (sRGB -> XYZ D65 -> CIELAB)
+    private fun writeLab(out: DataOutputStream, hex: String) {
+        fun linear(channel: Int): Double {
+            val c = channel / 255.0
+            return if (c > 0.04045) Math.pow((c + 0.055) / 1.055, 2.4) else c / 12.92
+        }
+        fun f(t: Double): Double = if (t > 0.008856) Math.pow(t, 1.0 / 3.0) else (7.787 * t + 16.0 / 116.0)
+
+        val rgb = hex.toInt(16)
+        val r = linear((rgb shr 16) and 0xFF)
+        val g = linear((rgb shr 8) and 0xFF)
+        val b = linear(rgb and 0xFF)
+
+        val x = (r * 0.4124564 + g * 0.3575761 + b * 0.1804375) * 100
+        val y = (r * 0.2126729 + g * 0.7151522 + b * 0.0721750) * 100
+        val z = (r * 0.0193339 + g * 0.1191920 + b * 0.9503041) * 100
+
+        val fx = f(x / 95.047)
+        val fy = f(y / 100.0)
+        val fz = f(z / 108.883)
+
+        out.writeDouble(116 * fy - 16)
+        out.writeDouble(500 * (fx - fy))
+        out.writeDouble(200 * (fy - fz))
+    }
+}
+
+val compileReferenceData = tasks.register<CompileReferenceData>("compileReferenceData") {
+    colorsFile.set(layout.projectDirectory.file("src/main/resources/data/seymouranalyzer/colors.json"))
+    checklistFile.set(layout.projectDirectory.file("src/main/resources/data/seymouranalyzer/checklistdata.json"))
+    outputDir.set(layout.buildDirectory.dir("generated/referenceData"))
+}
+
+sourceSets.main {
+    resources.srcDir(compileReferenceData)
+}
+
 tasks.withType<JavaCompile>().configureEach {
     options.release.set(21)
 }
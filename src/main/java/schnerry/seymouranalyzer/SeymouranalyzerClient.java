@@ -5,7 +5,9 @@ import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import schnerry.seymouranalyzer.command.SeymourCommand;
+import schnerry.seymouranalyzer.data.ChecklistCache;
 import schnerry.seymouranalyzer.data.ChecklistCacheGenerator;
+import schnerry.seymouranalyzer.data.ChecklistCacheUpdater;
 import schnerry.seymouranalyzer.data.CollectionManager;
 import schnerry.seymouranalyzer.debug.ItemDebugger;
 import schnerry.seymouranalyzer.keybind.KeyBindings;
@@ -58,12 +60,22 @@ public class SeymouranalyzerClient implements ClientModInitializer {
             try {
                 // Wait a bit to let collection load
                 Thread.sleep(1000);
+
+                // Reuse the persisted cache if the collection hasn't changed since it was built
+                long fingerprint = CollectionManager.getInstance().getFingerprint();
+                if (ChecklistCache.getInstance().isCompleteFor(fingerprint)) {
+                    Seymouranalyzer.LOGGER.info("Checklist cache is up to date, skipping generation");
+                    return;
+                }
                 ChecklistCacheGenerator.generateAllCaches();
             } catch (Exception e) {
                 Seymouranalyzer.LOGGER.error("Failed to generate initial checklist cache", e);
             }
         }, "ChecklistCacheInitializer").start();
 
+        // Regenerate checklist caches when the collection changes
+        CollectionManager.getInstance().addListener(ChecklistCacheUpdater.getInstance());
+
         // Register keybindings (Press O to open GUI)
         KeyBindings.register();
         Seymouranalyzer.LOGGER.info("Registered keybindings");
@@ -78,8 +90,9 @@ public class SeymouranalyzerClient implements ClientModInitializer {
         ClientTickEvents.END_CLIENT_TICK.register(client -> {
             if (client.player != null && client.level != null) {
                 chestScanner.tick(client);
-                // Tick collection manager for auto-save
+                // Tick collection manager for auto-save and change events
                 CollectionManager.getInstance().tick();
+                ChecklistCacheUpdater.getInstance().tick();
             }
         });
 
@@ -2,6 +2,7 @@ package schnerry.seymouranalyzer.analyzer;
 
 import schnerry.seymouranalyzer.Seymouranalyzer;
 import schnerry.seymouranalyzer.data.ColorDatabase;
+import schnerry.seymouranalyzer.data.ReferenceData;
 import schnerry.seymouranalyzer.config.ClothConfig;
 import schnerry.seymouranalyzer.config.MatchPriority;
 import schnerry.seymouranalyzer.util.ColorMath;
@@ -42,6 +43,7 @@ public class ColorAnalyzer {
      */
     public AnalysisResult analyzeArmorColor(String hexcode, String pieceName) {
         ClothConfig config = ClothConfig.getInstance();
+        ReferenceData referenceData = ReferenceData.get(); // One consistent palette for the whole analysis
         String pieceType = detectPieceType(pieceName);
 
         // Collect matches from each category separately to prevent one category from crowding out others
@@ -51,17 +53,17 @@ public class ColorAnalyzer {
 
         // Check custom colors first if enabled
         if (config.isCustomColorsEnabled()) {
-            customMatches = findMatchesInMap(hexcode, pieceType, config.getCustomColors(), true, false);
+            customMatches = findMatchesInPalette(hexcode, pieceType, referenceData.getCustomColors(), true, false);
             customMatches.sort(Comparator.comparingDouble(m -> m.deltaE));
         }
 
         // Check target colors
-        normalMatches = findMatchesInMap(hexcode, pieceType, colorDatabase.getTargetColors(), false, false);
+        normalMatches = findMatchesInPalette(hexcode, pieceType, referenceData.getTargetColors(), false, false);
         normalMatches.sort(Comparator.comparingDouble(m -> m.deltaE));
 
         // Check fade dyes if enabled
         if (config.isFadeDyesEnabled()) {
-            fadeMatches = findMatchesInMap(hexcode, pieceType, colorDatabase.getFadeDyes(), false, true);
+            fadeMatches = findMatchesInPalette(hexcode, pieceType, referenceData.getFadeDyes(), false, true);
 
             // Apply high fade filtering - only show T0/T1 fades (deltaE <= 2.0) when disabled
             if (!config.isShowHighFades()) {
@@ -202,16 +204,16 @@ public class ColorAnalyzer {
         return guarded;
     }
 
-    private List<ColorMatch> findMatchesInMap(String itemHex, String pieceType,
-                                               Map<String, String> colorMap,
-                                               boolean isCustom, boolean isFade) {
+    private List<ColorMatch> findMatchesInPalette(String itemHex, String pieceType,
+                                                  Map<String, ReferenceData.PaletteColor> palette,
+                                                  boolean isCustom, boolean isFade) {
         ClothConfig config = ClothConfig.getInstance();
         List<ColorMatch> matches = new ArrayList<>();
         ColorMath.LAB itemLab = colorDatabase.getLabForHex(itemHex);
 
-        for (Map.Entry<String, String> entry : colorMap.entrySet()) {
-            String colorName = entry.getKey();
-            String targetHex = entry.getValue();
+        for (ReferenceData.PaletteColor color : palette.values()) {
+            String colorName = color.name();
+            String targetHex = color.hex();
 
             // Piece-specific filtering
             if (config.isPieceSpecificEnabled() && !canMatchPiece(colorName, pieceType)) {
@@ -225,8 +227,7 @@ public class ColorAnalyzer {
                 }
             }
 
-            ColorMath.LAB targetLab = colorDatabase.getLabForHex(targetHex);
-            double deltaE = ColorMath.calculateDeltaEWithLab(itemLab, targetLab);
+            double deltaE = ColorMath.calculateDeltaEWithLab(itemLab, color.lab());
 
             // Always add to matches - filtering is now done at the category level in analyzeArmorColor
             int absoluteDist = ColorMath.calculateAbsoluteDistance(itemHex, targetHex);
@@ -19,8 +19,14 @@ import schnerry.seymouranalyzer.config.ClothConfig;
 import schnerry.seymouranalyzer.config.ConfigScreen;
 import schnerry.seymouranalyzer.config.PriorityEditorScreen;
 import schnerry.seymouranalyzer.data.ArmorPiece;
+import schnerry.seymouranalyzer.data.CollectionIndex;
 import schnerry.seymouranalyzer.data.CollectionManager;
-import schnerry.seymouranalyzer.data.ColorDatabase;
+import schnerry.seymouranalyzer.data.CollectionPersister;
+import schnerry.seymouranalyzer.data.CollectionStore;
+import schnerry.seymouranalyzer.data.MergedCollectionView;
+import schnerry.seymouranalyzer.data.PaletteTable;
+import schnerry.seymouranalyzer.data.ProfileManager;
+import schnerry.seymouranalyzer.data.ReferenceData;
 import schnerry.seymouranalyzer.debug.ItemDebugger;
 import schnerry.seymouranalyzer.gui.*;
 import schnerry.seymouranalyzer.render.BlockHighlighter;
@@ -87,6 +93,16 @@ public class SeymourCommand {
             .then(literal("stats")
                 .executes(SeymourCommand::showStats))
 
+            // /seymour profile [switch <name> | find <hex>]
+            .then(literal("profile")
+                .executes(SeymourCommand::listProfiles)
+                .then(literal("switch")
+                    .then(argument("name", StringArgumentType.word())
+                        .executes(SeymourCommand::switchProfile)))
+                .then(literal("find")
+                    .then(argument("hex", StringArgumentType.word())
+                        .executes(SeymourCommand::findInProfiles))))
+
             // /seymour resetpos
             .then(literal("resetpos")
                 .executes(SeymourCommand::resetPosition))
@@ -189,9 +205,11 @@ public class SeymourCommand {
         ctx.getSource().sendFeedback(Component.literal("§2/seymour toggle <option> §7- Toggle settings"));
         ctx.getSource().sendFeedback(Component.literal("§4/seymour clear §7- Clear all caches & collection"));
         ctx.getSource().sendFeedback(Component.literal("§8/seymour stats §7- Print the amount of T1/T2/Dupes"));
+        ctx.getSource().sendFeedback(Component.literal("§d/seymour profile [switch <name>|find <hex>] §7- Manage collection profiles"));
 
         int size = CollectionManager.getInstance().size();
-        ctx.getSource().sendFeedback(Component.literal("§7Collection: §e" + size + " §7pieces"));
+        ctx.getSource().sendFeedback(Component.literal("§7Collection: §e" + size + " §7pieces §8(profile " +
+            ProfileManager.getInstance().getActiveProfile() + ")"));
         ctx.getSource().sendFeedback(Component.literal("§8§m----------------------------------------------------"));
         return 1;
     }
@@ -374,7 +392,8 @@ public class SeymourCommand {
         config.getCustomColors().put(colorName, hex);
         config.saveData();
 
-        ColorDatabase.getInstance().rebuildLabCache();
+        // Publish the new palette to the analyzer and checklist
+        ReferenceData.reload();
 
         // Mark custom colors for reload in checklist GUI
         ArmorChecklistScreen.markCustomColorsForReload();
@@ -396,7 +415,8 @@ public class SeymourCommand {
         String hex = config.getCustomColors().remove(colorName);
         config.saveData();
 
-        ColorDatabase.getInstance().rebuildLabCache();
+        // Publish the new palette to the analyzer and checklist
+        ReferenceData.reload();
 
         // Mark custom colors for reload in checklist GUI
         ArmorChecklistScreen.markCustomColorsForReload();
@@ -508,82 +528,115 @@ public class SeymourCommand {
         return 1;
     }
 
-    private static int showStats(CommandContext<FabricClientCommandSource> ctx) {
-        var collection = CollectionManager.getInstance().getCollection();
+    private static int listProfiles(CommandContext<FabricClientCommandSource> ctx) {
+        ProfileManager profiles = ProfileManager.getInstance();
+        MergedCollectionView view = profiles.mergedView();
 
-        if (collection.isEmpty()) {
-            ctx.getSource().sendFeedback(Component.literal("§a[Seymour Analyzer] §7Collection is empty! Start scanning to add pieces."));
-            return 1;
+        ctx.getSource().sendFeedback(Component.literal("§a[Seymour] §7Collection profiles:"));
+        for (String name : view.getProfiles()) {
+            boolean active = name.equals(profiles.getActiveProfile());
+            ctx.getSource().sendFeedback(Component.literal("  " + (active ? "§a▶ " : "§7  ") + "§f" + name +
+                " §8- §e" + view.getSnapshot(name).size() + " §7pieces"));
         }
+        ctx.getSource().sendFeedback(Component.literal("§7Total: §e" + view.size() + " §7pieces. Use §f/seymour profile switch <name>§7 to change."));
+        return 1;
+    }
 
-        // Count pieces by tier
-        int t0Count = 0; // T1< (ΔE < 1.0)
-        int t1Count = 0; // T1 (1.0 ≤ ΔE < 2.0)
-        int t2Count = 0; // T2 (2.0 ≤ ΔE < 3.0)
-        int t3PlusCount = 0; // T3+ (ΔE ≥ 3.0)
-        int noAnalysisCount = 0;
-
-        // Count fade dyes and custom colors
-        int fadeDyeCount = 0;
-        int customColorCount = 0;
-        int normalColorCount = 0;
-
-        // Count patterns and words
-        int withPattern = 0;
-        int withWord = 0;
-
-        // Track duplicates (same hex, different UUID)
-        Map<String, Integer> hexCounts = new HashMap<>();
-
-        for (var piece : collection.values()) {
-            // Count by tier
-            var bestMatch = piece.getBestMatch();
-            if (bestMatch != null) {
-                int tier = bestMatch.tier;
-                if (tier == 0) t0Count++;
-                else if (tier == 1) t1Count++;
-                else if (tier == 2) t2Count++;
-                else t3PlusCount++;
-
-                // Count by type
-                if (bestMatch.colorName != null) {
-                    if (bestMatch.colorName.contains(" - Stage ")) {
-                        fadeDyeCount++;
-                    } else if (ClothConfig.getInstance().getCustomColors().containsKey(bestMatch.colorName)) {
-                        customColorCount++;
-                    } else {
-                        normalColorCount++;
-                    }
-                }
-            } else {
-                noAnalysisCount++;
-            }
+    private static int switchProfile(CommandContext<FabricClientCommandSource> ctx) {
+        String name = StringArgumentType.getString(ctx, "name");
+        ProfileManager profiles = ProfileManager.getInstance();
 
-            // Count patterns
-            if (piece.getSpecialPattern() != null && !piece.getSpecialPattern().isEmpty()) {
-                withPattern++;
-            }
+        if (!ProfileManager.isValidName(name)) {
+            ctx.getSource().sendError(Component.literal("§c[Seymour] §7Profile names may only use letters, digits, - and _ (max 32)"));
+            return 0;
+        }
+        if (name.equals(profiles.getActiveProfile())) {
+            ctx.getSource().sendFeedback(Component.literal("§e[Seymour] §7Profile §f" + name + " §7is already active"));
+            return 0;
+        }
 
-            // Count words
-            if (piece.getWordMatch() != null && !piece.getWordMatch().isEmpty()) {
-                withWord++;
-            }
+        var scanner = SeymouranalyzerClient.getScanner();
+        if (scanner != null && (scanner.isScanningEnabled() || scanner.isExportingEnabled())) {
+            ctx.getSource().sendError(Component.literal("§c[Seymour] §7Stop scanning/exporting before switching profiles"));
+            return 0;
+        }
+
+        profiles.switchTo(name);
+        ctx.getSource().sendFeedback(Component.literal("§a[Seymour] §7Switched to profile §f" + name +
+            " §7(§e" + CollectionManager.getInstance().size() + " §7pieces)"));
+        return 1;
+    }
+
+    private static int findInProfiles(CommandContext<FabricClientCommandSource> ctx) {
+        String hex = StringArgumentType.getString(ctx, "hex").replace("#", "").toUpperCase();
+        if (!hex.matches("^[0-9A-F]{6}$")) {
+            ctx.getSource().sendError(Component.literal("§c[Seymour] §7Invalid hex code: " + hex));
+            return 0;
+        }
 
-            // Track hex for duplicate detection
-            String hex = piece.getHexcode().toUpperCase();
-            hexCounts.put(hex, hexCounts.getOrDefault(hex, 0) + 1);
+        Map<String, List<ArmorPiece>> found = ProfileManager.getInstance().mergedView().findByHex(hex);
+        if (found.isEmpty()) {
+            ctx.getSource().sendFeedback(Component.literal("§e[Seymour] §7No pieces with §f#" + hex + " §7in any profile"));
+            return 0;
         }
 
-        // Count duplicates
-        int dupeHexCount = 0;
-        int totalDupes = 0;
-        for (var entry : hexCounts.entrySet()) {
-            if (entry.getValue() > 1) {
-                dupeHexCount++;
-                totalDupes += entry.getValue();
+        ctx.getSource().sendFeedback(Component.literal("§a[Seymour] §7Pieces with §f#" + hex + "§7:"));
+        found.forEach((profile, pieces) -> {
+            for (ArmorPiece piece : pieces) {
+                ctx.getSource().sendFeedback(Component.literal("  §8[" + profile + "] §f" + piece.getPieceName() +
+                    (piece.getChestLocation() != null ? " §7at §e" + piece.getChestLocation() : "")));
             }
+        });
+        return 1;
+    }
+
+    private static int showStats(CommandContext<FabricClientCommandSource> ctx) {
+        var collection = CollectionManager.getInstance().getCollection();
+
+        if (collection.isEmpty()) {
+            ctx.getSource().sendFeedback(Component.literal("§a[Seymour Analyzer] §7Collection is empty! Start scanning to add pieces."));
+            return 1;
         }
 
+        CollectionStore store = CollectionManager.getInstance().getStore();
+        Map<String, String> customColors = ClothConfig.getInstance().getCustomColors();
+
+        // Count pieces by tier (bucket 3 = T3+, bucket 4 = no analysis)
+        int[] tierCounts = store.query().histogram(row -> {
+            int tier = store.tier(row);
+            return tier == CollectionStore.TIER_NONE ? 4 : Math.min(tier, 3);
+        }, 5);
+        int t0Count = tierCounts[0]; // T1< (ΔE < 1.0)
+        int t1Count = tierCounts[1]; // T1 (1.0 ≤ ΔE < 2.0)
+        int t2Count = tierCounts[2]; // T2 (2.0 ≤ ΔE < 3.0)
+        int t3PlusCount = tierCounts[3]; // T3+ (ΔE ≥ 3.0)
+        int noAnalysisCount = tierCounts[4];
+
+        // Count fade dyes and custom colors (bucket 0 = normal, 1 = fade, 2 = custom)
+        int[] typeCounts = store.query()
+            .where(row -> store.bestTarget(row) != CollectionStore.NO_ID)
+            .histogram(row -> {
+                String colorName = PaletteTable.getInstance().getColorName(store.bestTarget(row));
+                if (colorName == null) return -1;
+                if (colorName.contains(" - Stage ")) return 1;
+                return customColors.containsKey(colorName) ? 2 : 0;
+            }, 3);
+        int normalColorCount = typeCounts[0];
+        int fadeDyeCount = typeCounts[1];
+        int customColorCount = typeCounts[2];
+
+        // Count patterns (as stored on the piece) and words
+        int withPattern = store.query().where(row -> {
+            String pattern = store.piece(row).getSpecialPattern();
+            return pattern != null && !pattern.isEmpty();
+        }).count();
+        int withWord = store.query().where(row -> store.word(row) != CollectionStore.NO_ID).count();
+
+        // Count duplicates (same hex, different UUID)
+        CollectionIndex index = CollectionManager.getInstance().getIndex();
+        int dupeHexCount = index.countDuplicateColors();
+        int totalDupes = index.countDuplicatePieces();
+
         // Display statistics
         ctx.getSource().sendFeedback(Component.literal("§8§m----------------------------------------------------"));
         ctx.getSource().sendFeedback(Component.literal("§a§l[Seymour Analyzer] §7- Collection Statistics"));
@@ -620,6 +673,17 @@ public class SeymourCommand {
             ctx.getSource().sendFeedback(Component.literal("§a✓ No duplicate hex codes found!"));
         }
 
+        CollectionPersister persister = CollectionManager.getInstance().getPersister();
+        ctx.getSource().sendFeedback(Component.literal(""));
+        ctx.getSource().sendFeedback(Component.literal("§7§lSaving:"));
+        ctx.getSource().sendFeedback(Component.literal("  §7Pending changes: §e" + persister.getQueueDepth() +
+            " §8(max " + persister.getMaxQueueDepth() + ")"));
+        ctx.getSource().sendFeedback(Component.literal("  §7Last save: §e" + persister.getLastFlushMillis() + "ms§7, §e" +
+            persister.getLastFlushBytes() / 1024 + " KB"));
+        ctx.getSource().sendFeedback(Component.literal("  §7Saves: §e" + persister.getFlushCount() + " §7(" +
+            persister.getTotalBytesWritten() / 1024 + " KB total" +
+            (persister.getFailedFlushes() > 0 ? ", §c" + persister.getFailedFlushes() + " failed§7" : "") + ")"));
+
         ctx.getSource().sendFeedback(Component.literal("§8§m----------------------------------------------------"));
         return 1;
     }
@@ -675,7 +739,7 @@ public class SeymourCommand {
                 String top = "N/A";
                 if (piece.getBestMatch() != null) {
                     ArmorPiece.BestMatch best = piece.getBestMatch();
-                    top = best.colorName + " (ΔE: " + String.format("%.2f", best.deltaE) +
+                    top = best.getColorName() + " (ΔE: " + String.format("%.2f", best.deltaE) +
                           " | Abs: " + best.absoluteDistance + ")";
                 }
 
@@ -837,25 +901,22 @@ public class SeymourCommand {
             }
 
             // Search for pieces with these hex codes
-            var collection = CollectionManager.getInstance().getCollection();
             List<ArmorPiece> foundPieces = new ArrayList<>();
+            for (String validHex : new LinkedHashSet<>(validHexes)) {
+                foundPieces.addAll(CollectionManager.getInstance().getPiecesByHex(validHex));
+            }
             Set<String> foundChestLocations = new HashSet<>();
             List<BlockPos> blocksToHighlight = new ArrayList<>();
 
-            for (var piece : collection.values()) {
-                String pieceHex = piece.getHexcode().toUpperCase();
-                if (validHexes.contains(pieceHex)) {
-                    foundPieces.add(piece);
-
-                    // Track chest location if available and add to highlighter
-                    var chestLoc = piece.getChestLocation();
-                    if (chestLoc != null) {
-                        foundChestLocations.add(chestLoc.toString());
-                        // Add block position to highlight
-                        BlockPos blockPos = new BlockPos(chestLoc.x, chestLoc.y, chestLoc.z);
-                        if (!blocksToHighlight.contains(blockPos)) {
-                            blocksToHighlight.add(blockPos);
-                        }
+            for (var piece : foundPieces) {
+                // Track chest location if available and add to highlighter
+                var chestLoc = piece.getChestLocation();
+                if (chestLoc != null) {
+                    foundChestLocations.add(chestLoc.toString());
+                    // Add block position to highlight
+                    BlockPos blockPos = new BlockPos(chestLoc.x, chestLoc.y, chestLoc.z);
+                    if (!blocksToHighlight.contains(blockPos)) {
+                        blocksToHighlight.add(blockPos);
                     }
                 }
             }
@@ -998,6 +1059,7 @@ public class SeymourCommand {
                 }
 
                 ctx.getSource().sendFeedback(Component.literal("§7Saving collection..."));
+                CollectionManager.getInstance().reindex();
                 CollectionManager.getInstance().save();
 
                 ctx.getSource().sendFeedback(Component.literal("§a[Seymour Analyzer] §7Rebuilt word matches for §e" + updated + " §7pieces!"));
@@ -1057,6 +1119,7 @@ public class SeymourCommand {
                 }
 
                 ctx.getSource().sendFeedback(Component.literal("§7Saving collection..."));
+                CollectionManager.getInstance().reindex();
                 CollectionManager.getInstance().save();
 
                 ctx.getSource().sendFeedback(Component.literal("§a[Seymour Analyzer] §7Rebuilt analysis for §e" + updated + " §7pieces!"));
@@ -1124,6 +1187,7 @@ public class SeymourCommand {
                 }
 
                 ctx.getSource().sendFeedback(Component.literal("§7Saving collection..."));
+                CollectionManager.getInstance().reindex();
                 CollectionManager.getInstance().save();
 
                 ctx.getSource().sendFeedback(Component.literal("§a[Seymour Analyzer] §7Rebuilt match data for §e" + updated + " §7pieces!"));
@@ -1170,6 +1234,7 @@ public class SeymourCommand {
                 }
 
                 ctx.getSource().sendFeedback(Component.literal("§7Saving collection..."));
+                CollectionManager.getInstance().reindex();
                 CollectionManager.getInstance().save();
 
                 ctx.getSource().sendFeedback(Component.literal("§a[Seymour Analyzer] §7Rebuilt pattern data for §e" + updated + " §7pieces!"));
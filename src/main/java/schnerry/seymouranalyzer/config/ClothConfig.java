@@ -59,6 +59,21 @@ public class ClothConfig {
     @Setter
     private boolean itemFramesEnabled = false;
 
+    // Best sets: optimise the whole selection (slower) instead of picking greedily
+    @Getter
+    @Setter
+    private boolean bestSetsOptimalSelection = true;
+    // Best sets: set shape ("4p" or "3p"), scoring id (see SetScoring) and target hex ("" for none)
+    @Getter
+    @Setter
+    private String bestSetsShape = "4p";
+    @Getter
+    @Setter
+    private String bestSetsScoring = "avg";
+    @Getter
+    @Setter
+    private String bestSetsTarget = "";
+
     @Getter
     @Setter
     private int infoBoxX = 50;
@@ -66,6 +81,11 @@ public class ClothConfig {
     @Setter
     private int infoBoxY = 80;
 
+    // Collection profile loaded at startup (see ProfileManager)
+    @Getter
+    @Setter
+    private String activeProfile = "default";
+
     @Getter
     private List<MatchPriority> matchPriorities = getDefaultMatchPriorities();
 
@@ -109,9 +129,14 @@ public class ClothConfig {
                 if (json.has("dupesEnabled")) dupesEnabled = json.get("dupesEnabled").getAsBoolean();
                 if (json.has("showHighFades")) showHighFades = json.get("showHighFades").getAsBoolean();
                 if (json.has("itemFramesEnabled")) itemFramesEnabled = json.get("itemFramesEnabled").getAsBoolean();
+                if (json.has("bestSetsOptimalSelection")) bestSetsOptimalSelection = json.get("bestSetsOptimalSelection").getAsBoolean();
+                if (json.has("bestSetsShape")) bestSetsShape = json.get("bestSetsShape").getAsString();
+                if (json.has("bestSetsScoring")) bestSetsScoring = json.get("bestSetsScoring").getAsString();
+                if (json.has("bestSetsTarget")) bestSetsTarget = json.get("bestSetsTarget").getAsString();
 
                 if (json.has("infoBoxX")) infoBoxX = json.get("infoBoxX").getAsInt();
                 if (json.has("infoBoxY")) infoBoxY = json.get("infoBoxY").getAsInt();
+                if (json.has("activeProfile")) activeProfile = json.get("activeProfile").getAsString();
 
                 if (json.has("matchPriorities")) {
                     matchPriorities = new ArrayList<>();
@@ -173,9 +198,14 @@ public class ClothConfig {
             json.addProperty("dupesEnabled", dupesEnabled);
             json.addProperty("showHighFades", showHighFades);
             json.addProperty("itemFramesEnabled", itemFramesEnabled);
+            json.addProperty("bestSetsOptimalSelection", bestSetsOptimalSelection);
+            json.addProperty("bestSetsShape", bestSetsShape);
+            json.addProperty("bestSetsScoring", bestSetsScoring);
+            json.addProperty("bestSetsTarget", bestSetsTarget);
 
             json.addProperty("infoBoxX", infoBoxX);
             json.addProperty("infoBoxY", infoBoxY);
+            json.addProperty("activeProfile", activeProfile);
 
             com.google.gson.JsonArray prioritiesArray = new com.google.gson.JsonArray();
             matchPriorities.forEach(priority -> prioritiesArray.add(priority.name()));
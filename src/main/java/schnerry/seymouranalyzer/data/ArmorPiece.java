@@ -1,8 +1,14 @@
 package schnerry.seymouranalyzer.data;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -26,6 +32,9 @@ public class ArmorPiece {
     private transient Double cachedSearchDeltaE;
     private transient Integer cachedSearchDistance;
 
+    // Session id from PieceIdTable, -1 until assigned (not serialized)
+    private transient int pieceId = -1;
+
     public static class ChestLocation {
         public int x, y, z;
 
@@ -41,25 +50,66 @@ public class ArmorPiece {
         }
     }
 
+    /**
+     * Best match for a piece. The color name and target hex live in the shared {@link PaletteTable};
+     * JSON still carries the full strings so existing collection files stay compatible.
+     */
+    @JsonAdapter(BestMatch.Adapter.class)
     public static class BestMatch {
-        public String colorName;
-        public String targetHex;
+        public final int paletteId;
         public double deltaE;
         public int absoluteDistance;
         public int tier;
 
         public BestMatch(String colorName, String targetHex, double deltaE, int absoluteDistance, int tier) {
-            this.colorName = colorName;
-            this.targetHex = targetHex;
+            this(PaletteTable.getInstance().idFor(colorName, targetHex), deltaE, absoluteDistance, tier);
+        }
+
+        public BestMatch(int paletteId, double deltaE, int absoluteDistance, int tier) {
+            this.paletteId = paletteId;
             this.deltaE = deltaE;
             this.absoluteDistance = absoluteDistance;
             this.tier = tier;
         }
+
+        public String getColorName() {
+            return PaletteTable.getInstance().getColorName(paletteId);
+        }
+
+        public String getTargetHex() {
+            return PaletteTable.getInstance().getTargetHex(paletteId);
+        }
+
+        static class Adapter extends TypeAdapter<BestMatch> {
+            @Override
+            public void write(JsonWriter out, BestMatch match) throws IOException {
+                if (match == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                writePaletteFields(out, match.paletteId, match.deltaE, match.absoluteDistance, match.tier);
+                out.endObject();
+            }
+
+            @Override
+            public BestMatch read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                MatchFields fields = readMatchFields(in);
+                return new BestMatch(fields.colorName, fields.targetHex, fields.deltaE, fields.absoluteDistance, fields.tier);
+            }
+        }
     }
 
+    /**
+     * One of the top matches for a piece, stored the same way as {@link BestMatch}
+     */
+    @JsonAdapter(ColorMatch.Adapter.class)
     public static class ColorMatch {
-        public String colorName;
-        public String targetHex;
+        public final int paletteId;
         public double deltaE;
         public int absoluteDistance;
         public int tier;
@@ -67,12 +117,117 @@ public class ArmorPiece {
         public boolean isFade;
 
         public ColorMatch(String colorName, String targetHex, double deltaE, int absoluteDistance, int tier) {
-            this.colorName = colorName;
-            this.targetHex = targetHex;
+            this(PaletteTable.getInstance().idFor(colorName, targetHex), deltaE, absoluteDistance, tier);
+        }
+
+        public ColorMatch(int paletteId, double deltaE, int absoluteDistance, int tier) {
+            this.paletteId = paletteId;
             this.deltaE = deltaE;
             this.absoluteDistance = absoluteDistance;
             this.tier = tier;
         }
+
+        public String getColorName() {
+            return PaletteTable.getInstance().getColorName(paletteId);
+        }
+
+        public String getTargetHex() {
+            return PaletteTable.getInstance().getTargetHex(paletteId);
+        }
+
+        static class Adapter extends TypeAdapter<ColorMatch> {
+            @Override
+            public void write(JsonWriter out, ColorMatch match) throws IOException {
+                if (match == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                writePaletteFields(out, match.paletteId, match.deltaE, match.absoluteDistance, match.tier);
+                out.name("isCustom").value(match.isCustom);
+                out.name("isFade").value(match.isFade);
+                out.endObject();
+            }
+
+            @Override
+            public ColorMatch read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                MatchFields fields = readMatchFields(in);
+                ColorMatch match = new ColorMatch(fields.colorName, fields.targetHex, fields.deltaE, fields.absoluteDistance, fields.tier);
+                match.isCustom = fields.isCustom;
+                match.isFade = fields.isFade;
+                return match;
+            }
+        }
+    }
+
+    private static class MatchFields {
+        String colorName;
+        String targetHex;
+        double deltaE;
+        int absoluteDistance;
+        int tier;
+        boolean isCustom;
+        boolean isFade;
+    }
+
+    private static void writePaletteFields(JsonWriter out, int paletteId, double deltaE, int absoluteDistance, int tier) throws IOException {
+        PaletteTable.PaletteEntry entry = PaletteTable.getInstance().getEntry(paletteId);
+        if (entry.colorName() != null) out.name("colorName").value(entry.colorName());
+        if (entry.targetHex() != null) out.name("targetHex").value(entry.targetHex());
+        out.name("deltaE").value(deltaE);
+        out.name("absoluteDistance").value(absoluteDistance);
+        out.name("tier").value(tier);
+    }
+
+    private static MatchFields readMatchFields(JsonReader in) throws IOException {
+        MatchFields fields = new MatchFields();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "colorName" -> fields.colorName = in.nextString();
+                case "targetHex" -> fields.targetHex = in.nextString();
+                case "deltaE" -> fields.deltaE = in.nextDouble();
+                case "absoluteDistance" -> fields.absoluteDistance = in.nextInt();
+                case "tier" -> fields.tier = in.nextInt();
+                case "isCustom" -> fields.isCustom = in.nextBoolean();
+                case "isFade" -> fields.isFade = in.nextBoolean();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return fields;
+    }
+
+    /**
+     * Swap repeated strings for their shared instances (called after loading from JSON,
+     * since Gson writes fields directly and bypasses the setters)
+     */
+    void internStrings() {
+        PaletteTable table = PaletteTable.getInstance();
+        pieceName = table.intern(pieceName);
+        wordMatch = table.intern(wordMatch);
+        specialPattern = table.intern(specialPattern);
+    }
+
+    public void setPieceName(String pieceName) {
+        this.pieceName = PaletteTable.getInstance().intern(pieceName);
+    }
+
+    public void setWordMatch(String wordMatch) {
+        this.wordMatch = PaletteTable.getInstance().intern(wordMatch);
+    }
+
+    public void setSpecialPattern(String specialPattern) {
+        this.specialPattern = PaletteTable.getInstance().intern(specialPattern);
     }
 
     // Convenience method for rebuild commands
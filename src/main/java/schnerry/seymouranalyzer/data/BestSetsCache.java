@@ -0,0 +1,124 @@
+package schnerry.seymouranalyzer.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import schnerry.seymouranalyzer.Seymouranalyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persisted result of the best sets search, so reopening the screen (or restarting the game) doesn't
+ * redo the combinatorial search. One instance per profile, {@link #getInstance()} returns the active one.
+ * A result is tagged with the search parameters and the collection fingerprint it was calculated for;
+ * callers compare both to decide whether it is still valid.
+ */
+public class BestSetsCache {
+    private static final String CACHE_FILE = "bestSets.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private final Path file;
+    private volatile Result result; // Null until something was calculated
+
+    /**
+     * @param params      Search parameters the sets were calculated with, see the best sets screen
+     * @param fingerprint Collection fingerprint at calculation time
+     * @param sets        Piece uuids per set in the slot order of the set shape (e.g. helmet, chestplate, leggings, boots), best first
+     */
+    public record Result(String params, long fingerprint, long calculatedAt, List<String[]> sets) {
+        public boolean isValidFor(String params, long fingerprint) {
+            return this.params.equals(params) && this.fingerprint == fingerprint;
+        }
+    }
+
+    BestSetsCache(Path profileDir) {
+        this.file = profileDir.resolve(CACHE_FILE);
+        load();
+    }
+
+    public static BestSetsCache getInstance() {
+        return ProfileManager.getInstance().getActiveBestSetsCache();
+    }
+
+    /**
+     * Last stored result, may be null or outdated
+     */
+    public Result get() {
+        return result;
+    }
+
+    /**
+     * Replace the stored result and write it to disk (call off the render thread)
+     */
+    public synchronized void put(String params, long fingerprint, List<String[]> sets) {
+        Result stored = new Result(params, fingerprint, System.currentTimeMillis(), List.copyOf(sets));
+        result = stored;
+
+        JsonObject root = new JsonObject();
+        root.addProperty("formatVersion", FORMAT_VERSION);
+        root.addProperty("params", stored.params());
+        root.addProperty("fingerprint", stored.fingerprint());
+        root.addProperty("calculatedAt", stored.calculatedAt());
+        JsonArray setsJson = new JsonArray();
+        for (String[] set : stored.sets()) {
+            JsonArray setJson = new JsonArray();
+            for (String uuid : set) {
+                setJson.add(uuid);
+            }
+            setsJson.add(setJson);
+        }
+        root.add("sets", setsJson);
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(CACHE_FILE + ".tmp");
+            Files.writeString(temp, GSON.toJson(root), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Seymouranalyzer.LOGGER.error("Failed to save best sets", e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) return;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject root = GSON.fromJson(reader, JsonObject.class);
+            if (root == null || !root.has("formatVersion") || root.get("formatVersion").getAsInt() != FORMAT_VERSION) {
+                Seymouranalyzer.LOGGER.info("Ignoring best sets cache with unknown format");
+                return;
+            }
+
+            List<String[]> sets = new ArrayList<>();
+            for (JsonElement setJson : root.getAsJsonArray("sets")) {
+                JsonArray uuids = setJson.getAsJsonArray();
+                String[] set = new String[uuids.size()];
+                for (int i = 0; i < set.length; i++) {
+                    set[i] = uuids.get(i).getAsString();
+                }
+                sets.add(set);
+            }
+
+            result = new Result(root.get("params").getAsString(), root.get("fingerprint").getAsLong(),
+                root.get("calculatedAt").getAsLong(), List.copyOf(sets));
+            Seymouranalyzer.LOGGER.info("Loaded {} best sets from cache", sets.size());
+        } catch (Exception e) {
+            Seymouranalyzer.LOGGER.warn("Failed to load best sets cache, will recalculate", e);
+        }
+    }
+}
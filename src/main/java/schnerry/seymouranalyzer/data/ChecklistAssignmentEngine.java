@@ -0,0 +1,409 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.Seymouranalyzer;
+import schnerry.seymouranalyzer.render.InfoBoxRenderer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the checklist assignment algorithm (candidates within ΔE 5, min-cost matching per piece type) and solves
+ * single categories on request, off the render thread. Results are only ever published to the
+ * {@link ChecklistCache}; screens render whatever is cached and poll {@link #getPublishedCount()}.
+ * {@link ChecklistCacheGenerator} uses the same static helpers for full and incremental runs.
+ */
+public class ChecklistAssignmentEngine {
+    static final String[] PIECE_TYPES = {"helmet", "chestplate", "leggings", "boots"};
+    static final double MATCH_RADIUS = 5.0;
+
+    private static ChecklistAssignmentEngine INSTANCE;
+
+    // One worker, requests are small (a single category) and mostly come from one open screen
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ChecklistAssignment");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, Request> pending = new ConcurrentHashMap<>(); // category key -> queued/running request
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>(); // category key -> last failed solve
+    private final AtomicLong publishedCount = new AtomicLong();
+
+    private static class Request {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        Future<?> future;
+    }
+
+    static class CandidateMatch {
+        int stageIndex;
+        int pieceId; // See PieceIdTable
+        ArmorPiece piece;
+        double deltaE;
+        boolean isNeeded;
+
+        CandidateMatch(int stageIndex, int pieceId, ArmorPiece piece, double deltaE, boolean isNeeded) {
+            this.stageIndex = stageIndex;
+            this.pieceId = pieceId;
+            this.piece = piece;
+            this.deltaE = deltaE;
+            this.isNeeded = isNeeded;
+        }
+    }
+
+    record TypeResult(ChecklistCache.MatchInfo[] matches, long fingerprint) {}
+
+    /**
+     * A solve that threw, for these stages and this collection state; solving them again would fail the same way
+     */
+    private record Failure(long stageHash, long collectionFingerprint) {}
+
+    private ChecklistAssignmentEngine() {}
+
+    public static ChecklistAssignmentEngine getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new ChecklistAssignmentEngine();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Cached result of a category if it was built for these stages and the current collection, otherwise null.
+     * Cheap enough to call from the render thread.
+     */
+    public ChecklistCache.CategoryCache getCurrent(boolean fade, String category, List<ReferenceData.Stage> stages) {
+        ChecklistCache.CategoryCache cached = categoryCache(ChecklistCache.getInstance(), fade, category);
+        if (cached == null || cached.stageHash != stageHash(stages)
+                || cached.collectionFingerprint != CollectionManager.getInstance().getFingerprint()) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Whether solving this category failed for these stages and the current collection.
+     * It isn't retried until either of them changes.
+     */
+    public boolean hasFailed(boolean fade, String category, List<ReferenceData.Stage> stages) {
+        Failure failure = failures.get(categoryKey(fade, category));
+        return failure != null && failure.stageHash() == stageHash(stages)
+            && failure.collectionFingerprint() == CollectionManager.getInstance().getFingerprint();
+    }
+
+    /**
+     * Solve a category in the background and publish it to the cache.
+     * Does nothing if a request for the same category is already queued or running, or if it failed
+     * for the same stages and collection (see {@link #hasFailed}).
+     */
+    public void request(boolean fade, String category, List<ReferenceData.Stage> stages) {
+        if (hasFailed(fade, category, stages)) {
+            return;
+        }
+        String key = categoryKey(fade, category);
+        Request request = new Request();
+        if (pending.putIfAbsent(key, request) != null) {
+            return;
+        }
+
+        List<ReferenceData.Stage> entries = List.copyOf(stages);
+        Failure attempt = new Failure(stageHash(entries), CollectionManager.getInstance().getFingerprint());
+        request.future = worker.submit(() -> {
+            try {
+                solve(fade, category, entries, request);
+                failures.remove(key);
+            } catch (Exception e) {
+                failures.put(key, attempt);
+                Seymouranalyzer.LOGGER.error("Failed to calculate checklist matches for {}", category, e);
+            } finally {
+                pending.remove(key, request);
+            }
+        });
+    }
+
+    /**
+     * Drop a queued or running request, e.g. when the screen moves to another page.
+     * A running request stops before its next piece type and publishes nothing.
+     */
+    public void cancel(boolean fade, String category) {
+        String key = categoryKey(fade, category);
+        Request request = pending.remove(key);
+        if (request != null) {
+            request.cancelled.set(true);
+            if (request.future != null) {
+                request.future.cancel(false);
+            }
+        }
+    }
+
+    public boolean isPending(boolean fade, String category) {
+        return pending.containsKey(categoryKey(fade, category));
+    }
+
+    /**
+     * Number of categories published so far, lets screens notice fresh results
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    private void solve(boolean fade, String category, List<ReferenceData.Stage> entries, Request request) {
+        long start = System.currentTimeMillis();
+        CollectionSnapshot snapshot = CollectionManager.getInstance().snapshot();
+        ChecklistCache.CategoryCache previous = categoryCache(ChecklistCache.getInstance(), fade, category);
+        ChecklistCandidateIndex candidateIndex = ChecklistCandidateIndex.of(snapshot);
+
+        TypeResult[] results = new TypeResult[PIECE_TYPES.length];
+        for (int t = 0; t < PIECE_TYPES.length; t++) {
+            if (request.cancelled.get()) return;
+            results[t] = solvePieceType(entries, PIECE_TYPES[t], candidateIndex, previous);
+        }
+
+        // Same lock as full/incremental generation, so an older result never overwrites a newer one
+        synchronized (ChecklistCacheGenerator.class) {
+            // Collection changed meanwhile - drop the result, the screen asks again for the new state
+            if (request.cancelled.get() || snapshot.isStale()) return;
+
+            ChecklistCache cache = ChecklistCache.getInstance();
+            ChecklistCache.CategoryCache existing = categoryCache(cache, fade, category);
+            ChecklistCache.CategoryCache categoryCache = mergeCategory(category, entries, results, snapshot, existing);
+            if (categoryCache != existing) {
+                if (fade) {
+                    cache.setFadeDyeOptimalCache(category, categoryCache);
+                } else {
+                    cache.setNormalColorCache(category, categoryCache);
+                }
+                cache.save();
+                InfoBoxRenderer.forceCloseHoveredDataCache();
+            }
+        }
+        publishedCount.incrementAndGet();
+
+        Seymouranalyzer.LOGGER.debug("Calculated checklist matches for {} in {} ms", category, System.currentTimeMillis() - start);
+    }
+
+    static String categoryKey(boolean fade, String category) {
+        return (fade ? "fade:" : "normal:") + category;
+    }
+
+    static ChecklistCache.CategoryCache categoryCache(ChecklistCache cache, boolean fade, String category) {
+        return fade ? cache.getFadeDyeOptimalCache(category) : cache.getNormalColorCache(category);
+    }
+
+    /**
+     * {@link ChecklistCache#stageHash} of a category's stages
+     */
+    public static long stageHash(List<ReferenceData.Stage> entries) {
+        return ChecklistCache.stageHash(
+            entries.stream().map(ReferenceData.Stage::hex).toList(),
+            entries.stream().map(ReferenceData.Stage::pieces).toList());
+    }
+
+    /**
+     * Copy of a category with its own StageMatches, so screens reading the old one never see a half-updated assignment
+     */
+    static ChecklistCache.CategoryCache copyCategory(ChecklistCache.CategoryCache source) {
+        ChecklistCache.CategoryCache copy = new ChecklistCache.CategoryCache();
+        copy.category = source.category;
+        copy.isCalculating = false;
+        copy.stageHash = source.stageHash;
+        copy.inputFingerprint = source.inputFingerprint;
+        copy.collectionFingerprint = source.collectionFingerprint;
+
+        for (Map.Entry<Integer, ChecklistCache.StageMatches> entry : source.matchesByIndex.entrySet()) {
+            ChecklistCache.StageMatches from = entry.getValue();
+            ChecklistCache.StageMatches to = new ChecklistCache.StageMatches();
+            to.helmet = from.helmet;
+            to.chestplate = from.chestplate;
+            to.leggings = from.leggings;
+            to.boots = from.boots;
+            to.calculated = from.calculated;
+            to.stageHex = from.stageHex;
+            copy.matchesByIndex.put(entry.getKey(), to);
+        }
+        return copy;
+    }
+
+    /**
+     * Assemble a category from its per piece type results
+     * @param existing Cached result to reuse if its stages and candidate pieces are unchanged, may be null
+     * @return {@code existing} if it is still valid for this snapshot, a copy of it with the new collection fingerprint
+     *         if only unrelated pieces changed (so callers store and save it like a new result), otherwise a freshly built cache
+     */
+    static ChecklistCache.CategoryCache mergeCategory(
+            String categoryName,
+            List<ReferenceData.Stage> entries,
+            TypeResult[] results,
+            CollectionSnapshot snapshot,
+            ChecklistCache.CategoryCache existing) {
+
+        long stageHash = stageHash(entries);
+
+        long inputFingerprint = 0;
+        for (TypeResult result : results) {
+            inputFingerprint += result.fingerprint();
+        }
+
+        // Same stages and same candidate pieces give the same assignment
+        if (existing != null && existing.stageHash == stageHash && existing.inputFingerprint == inputFingerprint) {
+            if (existing.collectionFingerprint == snapshot.getFingerprint()) {
+                return existing;
+            }
+            ChecklistCache.CategoryCache revalidated = copyCategory(existing);
+            revalidated.collectionFingerprint = snapshot.getFingerprint();
+            return revalidated;
+        }
+
+        ChecklistCache.CategoryCache categoryCache = new ChecklistCache.CategoryCache();
+        categoryCache.category = categoryName;
+        categoryCache.isCalculating = false;
+        categoryCache.stageHash = stageHash;
+        categoryCache.inputFingerprint = inputFingerprint;
+        categoryCache.collectionFingerprint = snapshot.getFingerprint();
+
+        for (int i = 0; i < entries.size(); i++) {
+            ChecklistCache.StageMatches stageMatches = new ChecklistCache.StageMatches();
+            stageMatches.stageHex = entries.get(i).hex();
+            stageMatches.calculated = true;
+            for (int t = 0; t < PIECE_TYPES.length; t++) {
+                setMatch(stageMatches, PIECE_TYPES[t], results[t].matches()[i]);
+            }
+            categoryCache.matchesByIndex.put(i, stageMatches);
+        }
+
+        return categoryCache;
+    }
+
+    /**
+     * Candidates and assignment of one piece type in one category
+     * @param previous Earlier result for this category to warm-start from, may be null
+     */
+    static TypeResult solvePieceType(List<ReferenceData.Stage> entries, String pieceType, ChecklistCandidateIndex candidateIndex,
+                                     ChecklistCache.CategoryCache previous) {
+        List<CandidateMatch> candidates = candidateIndex.candidates(entries, pieceType);
+        long fingerprint = 0;
+        for (CandidateMatch candidate : candidates) {
+            fingerprint += candidateHash(candidate.stageIndex, pieceType, candidate.piece);
+        }
+        return new TypeResult(assign(entries, pieceType, candidates, previous), fingerprint);
+    }
+
+    /**
+     * Every owned piece of {@code pieceType} within ΔE 5 of a stage, from the live spatial index.
+     * For incremental updates, which only look at a few categories per change; full runs and requests
+     * build a {@link ChecklistCandidateIndex} for their snapshot instead.
+     */
+    static List<CandidateMatch> collectCandidates(List<ReferenceData.Stage> entries, String pieceType, CollectionSnapshot snapshot) {
+        LabSpatialIndex spatialIndex = CollectionManager.getInstance().getSpatialIndex();
+        PieceIdTable ids = PieceIdTable.getInstance();
+        List<CandidateMatch> candidates = new ArrayList<>();
+        for (int stageIdx = 0; stageIdx < entries.size(); stageIdx++) {
+            ReferenceData.Stage entry = entries.get(stageIdx);
+            boolean isNeeded = entry.needs(pieceType);
+
+            for (LabSpatialIndex.Neighbor hit : spatialIndex.withinRadius(entry.lab(), MATCH_RADIUS, pieceType)) {
+                // The index is live, skip pieces that are not part of this snapshot
+                if (snapshot.get(hit.piece().getUuid()) != hit.piece()) continue;
+                candidates.add(new CandidateMatch(stageIdx, ids.idOf(hit.piece()), hit.piece(), hit.deltaE(), isNeeded));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Assignment of one piece type, each piece and stage used at most once. Solved as a min-cost matching
+     * (see {@link ChecklistMatchingSolver}) that covers as many stages as possible, then as many stages
+     * that need this piece type as possible, then has the lowest total ΔE.
+     * @param previous Earlier result for this category to warm-start from, may be null
+     * @return The match per stage index, null where nothing was assigned
+     */
+    static ChecklistCache.MatchInfo[] assign(List<ReferenceData.Stage> entries, String pieceType,
+                                             List<CandidateMatch> candidates, ChecklistCache.CategoryCache previous) {
+        int stageCount = entries.size();
+
+        // Every extra stage outweighs any ΔE total, every extra needed stage outweighs any ΔE total too
+        double neededBonus = MATCH_RADIUS * (stageCount + 1);
+        double matchBonus = neededBonus * (stageCount + 1);
+
+        // Candidate pieces numbered 0..n-1 in session id order (sorted ids, looked up by binary search)
+        int[] pieceIds = new int[candidates.size()];
+        for (int e = 0; e < candidates.size(); e++) {
+            pieceIds[e] = candidates.get(e).pieceId;
+        }
+        Arrays.sort(pieceIds);
+        int pieceCount = 0;
+        for (int e = 0; e < pieceIds.length; e++) {
+            if (pieceCount == 0 || pieceIds[pieceCount - 1] != pieceIds[e]) {
+                pieceIds[pieceCount++] = pieceIds[e];
+            }
+        }
+
+        // One edge per candidate
+        int[] edgeStage = new int[candidates.size()];
+        int[] edgePiece = new int[candidates.size()];
+        double[] edgeCost = new double[candidates.size()];
+        for (int e = 0; e < candidates.size(); e++) {
+            CandidateMatch candidate = candidates.get(e);
+            edgeStage[e] = candidate.stageIndex;
+            edgePiece[e] = Arrays.binarySearch(pieceIds, 0, pieceCount, candidate.pieceId);
+            edgeCost[e] = candidate.deltaE - matchBonus - (candidate.isNeeded ? neededBonus : 0);
+        }
+
+        ChecklistMatchingSolver solver = new ChecklistMatchingSolver(stageCount, pieceCount, edgeStage, edgePiece, edgeCost);
+        if (previous != null) {
+            PieceIdTable ids = PieceIdTable.getInstance();
+            int[] hint = new int[stageCount];
+            for (int i = 0; i < stageCount; i++) {
+                ChecklistCache.StageMatches stageMatches = previous.matchesByIndex.get(i);
+                ChecklistCache.MatchInfo match = stageMatches != null ? stageMatches.getMatch(pieceType) : null;
+                int id = match != null ? ids.find(match.uuid) : -1;
+                int piece = id >= 0 ? Arrays.binarySearch(pieceIds, 0, pieceCount, id) : -1;
+                hint[i] = piece >= 0 ? piece : -1;
+            }
+            solver.warmStart(hint);
+        }
+
+        int[] stageEdges = solver.solve();
+        ChecklistCache.MatchInfo[] matches = new ChecklistCache.MatchInfo[stageCount];
+        for (int i = 0; i < stageCount; i++) {
+            if (stageEdges[i] < 0) continue;
+            CandidateMatch candidate = candidates.get(stageEdges[i]);
+            ArmorPiece piece = candidate.piece;
+            matches[i] = new ChecklistCache.MatchInfo(piece.getPieceName(), piece.getHexcode(), candidate.deltaE, piece.getUuid());
+        }
+        return matches;
+    }
+
+    /**
+     * Replace one piece type's matches in {@code categoryCache}, warm-started from its current ones;
+     * other piece types are left alone
+     */
+    static void assignPieceType(List<ReferenceData.Stage> entries, String pieceType,
+                                List<CandidateMatch> candidates, ChecklistCache.CategoryCache categoryCache) {
+        ChecklistCache.MatchInfo[] matches = assign(entries, pieceType, candidates, categoryCache);
+        for (Map.Entry<Integer, ChecklistCache.StageMatches> entry : categoryCache.matchesByIndex.entrySet()) {
+            int stageIdx = entry.getKey();
+            setMatch(entry.getValue(), pieceType, stageIdx < matches.length ? matches[stageIdx] : null);
+        }
+    }
+
+    private static void setMatch(ChecklistCache.StageMatches stageMatches, String pieceType, ChecklistCache.MatchInfo match) {
+        switch (pieceType) {
+            case "helmet" -> stageMatches.helmet = match;
+            case "chestplate" -> stageMatches.chestplate = match;
+            case "leggings" -> stageMatches.leggings = match;
+            case "boots" -> stageMatches.boots = match;
+        }
+    }
+
+    static long candidateHash(int stageIdx, String pieceType, ArmorPiece piece) {
+        long h = CollectionFingerprint.pieceHash(piece) ^ ((long) stageIdx << 32) ^ pieceType.hashCode();
+        // SplitMix64 finalizer so the per-pair hashes don't cancel out when summed
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -1,42 +1,78 @@
 package schnerry.seymouranalyzer.data;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import lombok.Getter;
 import lombok.Setter;
-import net.fabricmc.loader.api.FabricLoader;
 import schnerry.seymouranalyzer.Seymouranalyzer;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Persistent cache for armor checklist calculations
  * Ported from ChatTriggers PogObject system
+ * One instance per profile, {@link #getInstance()} returns the active profile's cache.
+ *
+ * Stored as one small binary file per category under checklistCache/, plus a header file.
+ * Each category remembers the stage list it was built for ({@link CategoryCache#stageHash}) and the
+ * candidate pieces it was built from ({@link CategoryCache#inputFingerprint}), so a collection change
+ * only recomputes and rewrites the categories whose candidates actually changed.
  */
 public class ChecklistCache {
-    private static final String CACHE_FILE = "armorChecklistCache.json";
-    private static ChecklistCache instance;
+    private static final String LEGACY_CACHE_FILE = "armorChecklistCache.json"; // Migrated on first load
+    private static final String CACHE_DIR = "checklistCache";
+    private static final String HEADER_FILE = "header.bin";
+    private static final int MAGIC = 0x53434331; // "SCC1"
+    private static final byte FORMAT_VERSION = 1;
+    private static final String NORMAL_PREFIX = "normal_";
+    private static final String FADE_PREFIX = "fade_";
+
+    private final Path legacyFile;
+    private final Path cacheDir;
 
     // Cache data (matches the JS structure)
     @Getter
-    private Map<String, CategoryCache> normalColorCache = new HashMap<>();
+    private final Map<String, CategoryCache> normalColorCache = new ConcurrentHashMap<>();
     @Getter
-    private Map<String, CategoryCache> fadeDyeOptimalCache = new HashMap<>();
+    private final Map<String, CategoryCache> fadeDyeOptimalCache = new ConcurrentHashMap<>();
     @Setter
     @Getter
     private int collectionSize = 0;
+    // Fingerprint of the collection the cache was built from (see CollectionFingerprint)
+    @Setter
+    @Getter
+    private volatile long collectionFingerprint = 0;
+    // False when categories were cleared and only some were recalculated by the checklist screen
+    @Setter
+    @Getter
+    private volatile boolean complete = false;
     private long lastUpdated = 0;
 
+    // Reverse index: packed target rgb -> every stage with that target, normal categories first.
+    // Lists are replaced, never modified, so hover lookups need no locking.
+    private final Map<Integer, List<StageTarget>> targetsByRgb = new ConcurrentHashMap<>();
+
+    // Category files that need writing / deleting on the next save
+    private final Set<String> dirtyFiles = ConcurrentHashMap.newKeySet();
+    private final Set<String> removedFiles = ConcurrentHashMap.newKeySet();
+
     public static class CategoryCache {
         public String category;
-        public Map<Integer, StageMatches> matchesByIndex = new HashMap<>();
+        public Map<Integer, StageMatches> matchesByIndex = new ConcurrentHashMap<>();
         public boolean isCalculating = false;
+        public long stageHash; // ChecklistCache.stageHash of the stages this was built for
+        public long inputFingerprint; // Sum of ChecklistAssignmentEngine.candidateHash over the candidates it was built from
+        public long collectionFingerprint; // Collection fingerprint at build time (fast validity check)
     }
 
     public static class StageMatches {
@@ -46,6 +82,27 @@ public class ChecklistCache {
         public MatchInfo boots;
         public boolean calculated = false;
         public String stageHex;
+
+        public MatchInfo getMatch(String pieceType) {
+            return switch (pieceType) {
+                case "helmet" -> helmet;
+                case "chestplate" -> chestplate;
+                case "leggings" -> leggings;
+                case "boots" -> boots;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * A checklist stage targeting a color, see {@link #getTargets(String)}
+     * @param neededPieces Piece types the stage asks for (empty for stages not in the bundled checklist data)
+     * @param matches      Assigned match per piece type
+     */
+    public record StageTarget(boolean fade, String category, int stageIndex, List<String> neededPieces, StageMatches matches) {
+        public MatchInfo getMatch(String pieceType) {
+            return matches.getMatch(pieceType);
+        }
     }
 
     public static class MatchInfo {
@@ -62,147 +119,333 @@ public class ChecklistCache {
         }
     }
 
-    private ChecklistCache() {
+    ChecklistCache(Path profileDir) {
+        this.legacyFile = profileDir.resolve(LEGACY_CACHE_FILE);
+        this.cacheDir = profileDir.resolve(CACHE_DIR);
         load();
     }
 
     public static ChecklistCache getInstance() {
-        if (instance == null) {
-            instance = new ChecklistCache();
-        }
-        return instance;
+        return ProfileManager.getInstance().getActiveChecklistCache();
     }
 
     /**
      * Load cache from disk
      */
     private void load() {
-        Path cacheFile = getCacheFilePath();
-
-        if (!Files.exists(cacheFile)) {
-            Seymouranalyzer.LOGGER.info("No checklist cache file found, starting fresh");
+        if (!Files.isDirectory(cacheDir)) {
+            if (Files.exists(legacyFile)) {
+                migrateLegacyJson();
+            } else {
+                Seymouranalyzer.LOGGER.info("No checklist cache file found, starting fresh");
+            }
             return;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+        try {
+            Path header = cacheDir.resolve(HEADER_FILE);
+            if (Files.exists(header)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(header)))) {
+                    checkMagic(in);
+                    collectionSize = in.readInt();
+                    collectionFingerprint = in.readLong();
+                    complete = in.readBoolean();
+                    lastUpdated = in.readLong();
+                }
+            }
+
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, "*.bin")) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    if (fileName.equals(HEADER_FILE)) continue;
+
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                        CategoryCache categoryCache = readCategory(in);
+                        boolean fade = fileName.startsWith(FADE_PREFIX);
+                        CategoryCache old = (fade ? fadeDyeOptimalCache : normalColorCache).put(categoryCache.category, categoryCache);
+                        reindex(categoryCache.category, fade, old, categoryCache);
+                    } catch (IOException e) {
+                        // A single broken category is simply recalculated
+                        Seymouranalyzer.LOGGER.warn("Skipping unreadable checklist cache file {}", fileName, e);
+                        complete = false;
+                    }
+                }
+            }
+
+            Seymouranalyzer.LOGGER.info("Loaded checklist cache: {} normal categories, {} fade dye categories, collection size {}",
+                normalColorCache.size(), fadeDyeOptimalCache.size(), collectionSize);
+
+        } catch (Exception e) {
+            Seymouranalyzer.LOGGER.error("Failed to load checklist cache", e);
+            // Reset to empty cache on error
+            normalColorCache.clear();
+            fadeDyeOptimalCache.clear();
+            targetsByRgb.clear();
+            collectionSize = 0;
+            collectionFingerprint = 0;
+            complete = false;
+        }
+    }
+
+    /**
+     * One-time import of the old pretty-printed JSON cache. Categories carry no stage hash or
+     * input fingerprint yet, so they are shown as before but get recomputed on the next generation.
+     */
+    private void migrateLegacyJson() {
+        try (BufferedReader reader = Files.newBufferedReader(legacyFile, StandardCharsets.UTF_8)) {
             Gson gson = new Gson();
             JsonObject root = gson.fromJson(reader, JsonObject.class);
 
             if (root.has("collectionSize")) {
                 collectionSize = root.get("collectionSize").getAsInt();
             }
-
-            if (root.has("lastUpdated")) {
-                lastUpdated = root.get("lastUpdated").getAsLong();
+            if (root.has("collectionFingerprint")) {
+                collectionFingerprint = root.get("collectionFingerprint").getAsLong();
             }
 
-            // Load normal color cache
             if (root.has("normalColorCache")) {
                 JsonObject normalCache = root.getAsJsonObject("normalColorCache");
                 for (String categoryName : normalCache.keySet()) {
-                    JsonObject catObj = normalCache.getAsJsonObject(categoryName);
-                    CategoryCache categoryCache = gson.fromJson(catObj, CategoryCache.class);
-                    normalColorCache.put(categoryName, categoryCache);
+                    setNormalColorCache(categoryName, gson.fromJson(normalCache.getAsJsonObject(categoryName), CategoryCache.class));
                 }
             }
-
-            // Load fade dye cache
             if (root.has("fadeDyeOptimalCache")) {
                 JsonObject fadeCache = root.getAsJsonObject("fadeDyeOptimalCache");
                 for (String categoryName : fadeCache.keySet()) {
-                    JsonObject catObj = fadeCache.getAsJsonObject(categoryName);
-                    CategoryCache categoryCache = gson.fromJson(catObj, CategoryCache.class);
-                    fadeDyeOptimalCache.put(categoryName, categoryCache);
+                    setFadeDyeOptimalCache(categoryName, gson.fromJson(fadeCache.getAsJsonObject(categoryName), CategoryCache.class));
                 }
             }
 
-            Seymouranalyzer.LOGGER.info("Loaded checklist cache: {} normal categories, {} fade dye categories, collection size {}",
-                normalColorCache.size(), fadeDyeOptimalCache.size(), collectionSize);
-
+            complete = false;
+            save();
+            Files.deleteIfExists(legacyFile);
+            Seymouranalyzer.LOGGER.info("Migrated checklist cache to binary format ({} normal, {} fade dye categories)",
+                normalColorCache.size(), fadeDyeOptimalCache.size());
         } catch (Exception e) {
-            Seymouranalyzer.LOGGER.error("Failed to load checklist cache", e);
-            // Reset to empty cache on error
+            Seymouranalyzer.LOGGER.error("Failed to migrate old checklist cache, starting fresh", e);
             normalColorCache.clear();
             fadeDyeOptimalCache.clear();
-            collectionSize = 0;
+            dirtyFiles.clear();
         }
     }
 
     /**
-     * Save cache to disk
+     * Save changed categories and the header to disk; untouched category files are left alone
      */
-    public void save() {
-        Path cacheFile = getCacheFilePath();
-
+    public synchronized void save() {
         try {
-            // Ensure parent directory exists
-            Files.createDirectories(cacheFile.getParent());
-
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            JsonObject root = new JsonObject();
-
-            root.addProperty("collectionSize", collectionSize);
-            root.addProperty("lastUpdated", System.currentTimeMillis());
-
-            // Save normal color cache
-            JsonObject normalCache = new JsonObject();
-            for (Map.Entry<String, CategoryCache> entry : normalColorCache.entrySet()) {
-                normalCache.add(entry.getKey(), gson.toJsonTree(entry.getValue()));
+            Files.createDirectories(cacheDir);
+
+            int written = 0;
+            int failed = 0;
+            for (String fileName : dirtyFiles.toArray(new String[0])) {
+                dirtyFiles.remove(fileName); // Before writing, so changes made during the write mark it again
+                boolean fade = fileName.startsWith(FADE_PREFIX);
+                CategoryCache categoryCache = categoryForFile(fileName, fade);
+                if (categoryCache == null) continue; // Removed again before we got here
+
+                try {
+                    writeAtomically(cacheDir.resolve(fileName), out -> writeCategory(out, categoryCache));
+                    written++;
+                } catch (IOException e) {
+                    // Still outdated on disk, the next save retries it
+                    dirtyFiles.add(fileName);
+                    failed++;
+                    Seymouranalyzer.LOGGER.error("Failed to save checklist cache category file {}", fileName, e);
+                }
             }
-            root.add("normalColorCache", normalCache);
 
-            // Save fade dye cache
-            JsonObject fadeCache = new JsonObject();
-            for (Map.Entry<String, CategoryCache> entry : fadeDyeOptimalCache.entrySet()) {
-                fadeCache.add(entry.getKey(), gson.toJsonTree(entry.getValue()));
+            for (String fileName : removedFiles.toArray(new String[0])) {
+                removedFiles.remove(fileName);
+                try {
+                    Files.deleteIfExists(cacheDir.resolve(fileName));
+                } catch (IOException e) {
+                    removedFiles.add(fileName);
+                    failed++;
+                    Seymouranalyzer.LOGGER.error("Failed to delete checklist cache category file {}", fileName, e);
+                }
             }
-            root.add("fadeDyeOptimalCache", fadeCache);
 
-            try (BufferedWriter writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
-                gson.toJson(root, writer);
+            // The header vouches for every category file, so keep the old one while any category is outdated on disk
+            if (failed > 0) {
+                Seymouranalyzer.LOGGER.warn("Checklist cache header not updated, {} categories failed to save", failed);
+                return;
             }
 
-            Seymouranalyzer.LOGGER.info("Saved checklist cache to disk");
+            lastUpdated = System.currentTimeMillis();
+            writeAtomically(cacheDir.resolve(HEADER_FILE), out -> {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                out.writeInt(collectionSize);
+                out.writeLong(collectionFingerprint);
+                out.writeBoolean(complete);
+                out.writeLong(lastUpdated);
+            });
+
+            Seymouranalyzer.LOGGER.info("Saved checklist cache to disk ({} categories rewritten)", written);
 
         } catch (Exception e) {
             Seymouranalyzer.LOGGER.error("Failed to save checklist cache", e);
         }
     }
 
+    private CategoryCache categoryForFile(String fileName, boolean fade) {
+        for (CategoryCache categoryCache : (fade ? fadeDyeOptimalCache : normalColorCache).values()) {
+            if (fileName(categoryCache.category, fade).equals(fileName)) {
+                return categoryCache;
+            }
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface BinaryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(Path target, BinaryWriter writer) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            writer.write(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeCategory(DataOutputStream out, CategoryCache categoryCache) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(categoryCache.category);
+        out.writeLong(categoryCache.stageHash);
+        out.writeLong(categoryCache.inputFingerprint);
+        out.writeLong(categoryCache.collectionFingerprint);
+
+        out.writeInt(categoryCache.matchesByIndex.size());
+        for (Map.Entry<Integer, StageMatches> entry : categoryCache.matchesByIndex.entrySet()) {
+            StageMatches stage = entry.getValue();
+            out.writeInt(entry.getKey());
+            out.writeBoolean(stage.calculated);
+            writeNullableString(out, stage.stageHex);
+            writeMatch(out, stage.helmet);
+            writeMatch(out, stage.chestplate);
+            writeMatch(out, stage.leggings);
+            writeMatch(out, stage.boots);
+        }
+    }
+
+    private static CategoryCache readCategory(DataInputStream in) throws IOException {
+        checkMagic(in);
+        CategoryCache categoryCache = new CategoryCache();
+        categoryCache.category = in.readUTF();
+        categoryCache.stageHash = in.readLong();
+        categoryCache.inputFingerprint = in.readLong();
+        categoryCache.collectionFingerprint = in.readLong();
+
+        int stages = in.readInt();
+        for (int i = 0; i < stages; i++) {
+            int index = in.readInt();
+            StageMatches stage = new StageMatches();
+            stage.calculated = in.readBoolean();
+            stage.stageHex = readNullableString(in);
+            stage.helmet = readMatch(in);
+            stage.chestplate = readMatch(in);
+            stage.leggings = readMatch(in);
+            stage.boots = readMatch(in);
+            categoryCache.matchesByIndex.put(index, stage);
+        }
+        return categoryCache;
+    }
+
+    private static void checkMagic(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+            throw new IOException("Unknown checklist cache format");
+        }
+    }
+
+    private static void writeMatch(DataOutputStream out, MatchInfo match) throws IOException {
+        out.writeBoolean(match != null);
+        if (match != null) {
+            writeNullableString(out, match.name);
+            writeNullableString(out, match.hex);
+            out.writeDouble(match.deltaE);
+            writeNullableString(out, match.uuid);
+        }
+    }
+
+    private static MatchInfo readMatch(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        String name = readNullableString(in);
+        String hex = readNullableString(in);
+        double deltaE = in.readDouble();
+        String uuid = readNullableString(in);
+        return new MatchInfo(name, hex, deltaE, uuid);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * File name for a category: readable prefix plus a hash so names that sanitize the same don't collide
+     */
+    private static String fileName(String category, boolean fade) {
+        String safe = category.replaceAll("[^A-Za-z0-9]", "_");
+        return (fade ? FADE_PREFIX : NORMAL_PREFIX) + safe + "_" + Integer.toHexString(category.hashCode()) + ".bin";
+    }
+
     /**
-     * Clear all caches (called when collection size changes)
+     * Clear all caches
      */
     public void clearAll() {
-        normalColorCache.clear();
-        fadeDyeOptimalCache.clear();
+        for (String category : normalColorCache.keySet()) {
+            removeNormalColorCache(category);
+        }
+        for (String category : fadeDyeOptimalCache.keySet()) {
+            removeFadeDyeOptimalCache(category);
+        }
         Seymouranalyzer.LOGGER.info("Cleared all checklist caches");
     }
 
     /**
-     * Check if cache needs to be invalidated
-     * @param currentCollectionSize Current size of the collection
-     * @return true if cache was cleared, false if still valid
+     * True if the cache was built from a collection with exactly this content
      */
-    public boolean checkAndInvalidate(int currentCollectionSize) {
-        if (currentCollectionSize != collectionSize) {
-            int diff = currentCollectionSize - collectionSize;
-            clearAll();
-            collectionSize = currentCollectionSize;
-            save();
+    public boolean isCurrent(long currentFingerprint) {
+        return collectionFingerprint == currentFingerprint;
+    }
 
-            if (diff > 0) {
-                Seymouranalyzer.LOGGER.info("Collection grew by {} pieces, recalculating matches", diff);
-            } else {
-                Seymouranalyzer.LOGGER.info("Collection changed by {} pieces, recalculating matches", diff);
-            }
+    /**
+     * True if every category was generated from a collection with exactly this content
+     */
+    public boolean isCompleteFor(long currentFingerprint) {
+        return complete && isCurrent(currentFingerprint);
+    }
 
-            return true;
+    /**
+     * Hash of a category's stage list (hex and needed piece types per stage, in order).
+     * A cached category is only reused while this still matches.
+     */
+    public static long stageHash(List<String> stageHexes, List<List<String>> stagePieces) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < stageHexes.size(); i++) {
+            h = mix(h, stageHexes.get(i).toUpperCase().hashCode());
+            for (String piece : stagePieces.get(i)) {
+                h = mix(h, piece.hashCode());
+            }
+            h = mix(h, '|');
         }
-        return false;
+        return h;
     }
 
-    private Path getCacheFilePath() {
-        return FabricLoader.getInstance().getConfigDir().resolve("seymouranalyzer").resolve(CACHE_FILE);
+    private static long mix(long h, int value) {
+        h ^= value;
+        h *= 0x100000001b3L;
+        return h;
     }
 
     // Getters and setters
@@ -212,7 +455,17 @@ public class ChecklistCache {
     }
 
     public void setNormalColorCache(String category, CategoryCache cache) {
-        normalColorCache.put(category, cache);
+        CategoryCache old = normalColorCache.put(category, cache);
+        reindex(category, false, old, cache);
+        markDirty(category, false);
+    }
+
+    public void removeNormalColorCache(String category) {
+        CategoryCache old = normalColorCache.remove(category);
+        if (old != null) {
+            reindex(category, false, old, null);
+            markRemoved(category, false);
+        }
     }
 
     public CategoryCache getFadeDyeOptimalCache(String category) {
@@ -220,42 +473,88 @@ public class ChecklistCache {
     }
 
     public void setFadeDyeOptimalCache(String category, CategoryCache cache) {
-        fadeDyeOptimalCache.put(category, cache);
+        CategoryCache old = fadeDyeOptimalCache.put(category, cache);
+        reindex(category, true, old, cache);
+        markDirty(category, true);
+    }
+
+    public void removeFadeDyeOptimalCache(String category) {
+        CategoryCache old = fadeDyeOptimalCache.remove(category);
+        if (old != null) {
+            reindex(category, true, old, null);
+            markRemoved(category, true);
+        }
+    }
+
+    private void markDirty(String category, boolean fade) {
+        String fileName = fileName(category, fade);
+        removedFiles.remove(fileName);
+        dirtyFiles.add(fileName);
+    }
+
+    private void markRemoved(String category, boolean fade) {
+        String fileName = fileName(category, fade);
+        dirtyFiles.remove(fileName);
+        removedFiles.add(fileName);
     }
 
     /**
-     * Check if a hex has any matches in the checklist (needed for items)
-     * @param hex The hex code to check
-     * @return true if this hex is needed for any checklist category
+     * Replace a category's entries in the reverse index
      */
-    public boolean hasChecklistMatches(String hex) {
-        String hexUpper = hex.toUpperCase();
-
-        // Check normal color cache
-        for (CategoryCache categoryCache : normalColorCache.values()) {
-            if (categoryCache.matchesByIndex != null) {
-                for (StageMatches stageMatches : categoryCache.matchesByIndex.values()) {
-                    if (stageMatches.stageHex != null && stageMatches.stageHex.equalsIgnoreCase(hexUpper)) {
-                        // This hex is a target in the checklist
-                        return true;
-                    }
-                }
+    private synchronized void reindex(String category, boolean fade, CategoryCache old, CategoryCache replacement) {
+        if (old != null && old.matchesByIndex != null) {
+            for (StageMatches stageMatches : old.matchesByIndex.values()) {
+                int rgb = CollectionStore.parseRgb(stageMatches.stageHex);
+                if (rgb < 0) continue;
+                targetsByRgb.computeIfPresent(rgb, (key, targets) -> {
+                    List<StageTarget> kept = new ArrayList<>(targets);
+                    kept.removeIf(target -> target.fade() == fade && target.category().equals(category));
+                    return kept.isEmpty() ? null : List.copyOf(kept);
+                });
             }
         }
 
-        // Check fade dye cache
-        for (CategoryCache categoryCache : fadeDyeOptimalCache.values()) {
-            if (categoryCache.matchesByIndex != null) {
-                for (StageMatches stageMatches : categoryCache.matchesByIndex.values()) {
-                    if (stageMatches.stageHex != null && stageMatches.stageHex.equalsIgnoreCase(hexUpper)) {
-                        // This hex is a target in the checklist
-                        return true;
-                    }
-                }
+        if (replacement != null && replacement.matchesByIndex != null) {
+            List<ReferenceData.Stage> stages = ChecklistCacheGenerator.stageIndex().getStages(fade, category);
+            for (Map.Entry<Integer, StageMatches> entry : replacement.matchesByIndex.entrySet()) {
+                StageMatches stageMatches = entry.getValue();
+                int rgb = CollectionStore.parseRgb(stageMatches.stageHex);
+                if (rgb < 0) continue;
+
+                int stageIndex = entry.getKey();
+                List<String> neededPieces = stages != null && stageIndex < stages.size()
+                    ? stages.get(stageIndex).pieces() : List.of();
+                StageTarget target = new StageTarget(fade, category, stageIndex, neededPieces, stageMatches);
+
+                targetsByRgb.merge(rgb, List.of(target), (targets, added) -> {
+                    List<StageTarget> merged = new ArrayList<>(targets);
+                    // Normal categories take precedence over fade dyes
+                    int position = fade ? merged.size() : (int) merged.stream().filter(t -> !t.fade()).count();
+                    merged.add(position, target);
+                    return List.copyOf(merged);
+                });
             }
         }
+    }
 
-        return false;
+    /**
+     * Every checklist stage targeting this color, normal categories before fade dyes
+     * @param hex Target hex, with or without #
+     */
+    public List<StageTarget> getTargets(String hex) {
+        int rgb = CollectionStore.parseRgb(hex);
+        if (rgb < 0) {
+            return List.of();
+        }
+        return targetsByRgb.getOrDefault(rgb, List.of());
     }
-}
 
+    /**
+     * Check if a hex has any matches in the checklist (needed for items)
+     * @param hex The hex code to check
+     * @return true if this hex is needed for any checklist category
+     */
+    public boolean hasChecklistMatches(String hex) {
+        return !getTargets(hex).isEmpty();
+    }
+}
@@ -1,336 +1,315 @@
 package schnerry.seymouranalyzer.data;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import schnerry.seymouranalyzer.Seymouranalyzer;
 import schnerry.seymouranalyzer.render.InfoBoxRenderer;
 import schnerry.seymouranalyzer.util.ColorMath;
 import schnerry.seymouranalyzer.util.PieceTypeUtil;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class ChecklistCacheGenerator {
+import static schnerry.seymouranalyzer.data.ChecklistAssignmentEngine.*;
 
-    private static class ChecklistEntry {
-        String hex;
-        String name;
-        List<String> pieces; // helmet, chestplate, leggings, boots
+/**
+ * Full and incremental checklist cache generation; the assignment itself lives in {@link ChecklistAssignmentEngine}
+ */
+public class ChecklistCacheGenerator {
+    // Shared by all full generations; one task per (category, piece type)
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("ChecklistCacheWorker-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        },
+        null,
+        false
+    );
+
+    private static volatile ChecklistStageIndex stageIndex;
+    private static final Object STAGE_INDEX_LOCK = new Object(); // Not the class lock, generation holds that for a long time
+
+    // Progress of the running full generation, in (category, piece type) tasks
+    private static final AtomicInteger progressDone = new AtomicInteger();
+    private static final AtomicLong completedGenerations = new AtomicLong();
+    private static volatile int progressTotal = 0;
+    private static volatile boolean generating = false;
+
+    private static class CategoryJob {
+        final boolean fade;
+        final String name;
+        final List<ReferenceData.Stage> entries;
+        final ChecklistCache.CategoryCache existing; // Warm start, and reused if still valid
+        @SuppressWarnings("unchecked")
+        final ForkJoinTask<TypeResult>[] tasks = new ForkJoinTask[PIECE_TYPES.length];
+
+        CategoryJob(boolean fade, String name, List<ReferenceData.Stage> entries, ChecklistCache.CategoryCache existing) {
+            this.fade = fade;
+            this.name = name;
+            this.entries = entries;
+            this.existing = existing;
+        }
     }
 
-    private static class CandidateMatch {
-        int stageIndex;
-        String uuid;
-        ArmorPiece piece;
-        double deltaE;
-        boolean isNeeded;
-
-        CandidateMatch(int stageIndex, String uuid, ArmorPiece piece, double deltaE, boolean isNeeded) {
-            this.stageIndex = stageIndex;
-            this.uuid = uuid;
-            this.piece = piece;
-            this.deltaE = deltaE;
-            this.isNeeded = isNeeded;
+    /**
+     * Stage index over the current {@link ReferenceData}, rebuilt when the reference data is reloaded
+     */
+    static ChecklistStageIndex stageIndex() {
+        ReferenceData data = ReferenceData.get();
+        ChecklistStageIndex index = stageIndex;
+        if (index == null || index.getData() != data) {
+            synchronized (STAGE_INDEX_LOCK) {
+                if (stageIndex == null || stageIndex.getData() != data) {
+                    stageIndex = new ChecklistStageIndex(data);
+                }
+                index = stageIndex;
+            }
         }
+        return index;
     }
 
     /**
      * Generate all checklist caches (both normal and fade dye)
-     * This is called on mod init and after collection changes
+     * This is called on mod init and after collection changes.
+     * Every (category, piece type) pair is an independent task on {@link #POOL}; all tasks read the same
+     * collection snapshot and the results are merged into the cache per category afterwards.
      */
-    public static void generateAllCaches() {
+    public static synchronized void generateAllCaches() {
         Seymouranalyzer.LOGGER.info("Starting full checklist cache generation...");
+        long start = System.currentTimeMillis();
 
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
+        // Work against one consistent version; pieces scanned meanwhile trigger another run
+        CollectionSnapshot snapshot = CollectionManager.getInstance().snapshot();
         ChecklistCache cache = ChecklistCache.getInstance();
 
-        // Load checklist data
-        Map<String, List<ChecklistEntry>> normalCategories = loadChecklistData();
+        // Checklist categories and fade dyes from the shared reference data
+        ReferenceData data = ReferenceData.get();
+        Map<String, ReferenceData.Category> normalCategories = data.getChecklistCategories();
         if (normalCategories.isEmpty()) {
             Seymouranalyzer.LOGGER.warn("No checklist data found, skipping cache generation");
             return;
         }
 
-        // Load fade dye categories
-        Map<String, List<ChecklistEntry>> fadeDyeCategories = loadFadeDyeData();
+        Map<String, ReferenceData.Category> fadeDyeCategories = data.getFadeCategories();
         if (fadeDyeCategories.isEmpty()) {
             Seymouranalyzer.LOGGER.warn("No fade dye data found, skipping fade dye cache generation");
         }
 
-        // Generate normal color caches
-        for (Map.Entry<String, List<ChecklistEntry>> categoryEntry : normalCategories.entrySet()) {
-            String categoryName = categoryEntry.getKey();
-            List<ChecklistEntry> entries = categoryEntry.getValue();
+        List<CategoryJob> jobs = new ArrayList<>();
+        normalCategories.forEach((name, category) ->
+            jobs.add(new CategoryJob(false, name, category.stages(), categoryCache(cache, false, name))));
+        fadeDyeCategories.forEach((name, category) ->
+            jobs.add(new CategoryJob(true, name, category.stages(), categoryCache(cache, true, name))));
 
-            ChecklistCache.CategoryCache categoryCache = generateCacheForCategory(
-                categoryName, entries, collection
-            );
+        // LAB and piece types of every piece, computed once for all tasks
+        ChecklistCandidateIndex candidateIndex = ChecklistCandidateIndex.of(snapshot);
 
-            cache.setNormalColorCache(categoryName, categoryCache);
-        }
-
-        // Generate fade dye caches
-        for (Map.Entry<String, List<ChecklistEntry>> categoryEntry : fadeDyeCategories.entrySet()) {
-            String categoryName = categoryEntry.getKey();
-            List<ChecklistEntry> entries = categoryEntry.getValue();
+        progressDone.set(0);
+        progressTotal = jobs.size() * PIECE_TYPES.length;
+        generating = true;
+        int recomputed = 0;
+        try {
+            // Fork every (category, piece type) task, then join them in order
+            for (CategoryJob job : jobs) {
+                for (int t = 0; t < PIECE_TYPES.length; t++) {
+                    String pieceType = PIECE_TYPES[t];
+                    job.tasks[t] = POOL.submit(() -> {
+                        TypeResult result = solvePieceType(job.entries, pieceType, candidateIndex, job.existing);
+                        progressDone.incrementAndGet();
+                        return result;
+                    });
+                }
+            }
 
-            ChecklistCache.CategoryCache categoryCache = generateCacheForCategory(
-                categoryName, entries, collection
-            );
+            // Merge (categories whose candidates didn't change keep their assignment)
+            for (CategoryJob job : jobs) {
+                TypeResult[] results = new TypeResult[PIECE_TYPES.length];
+                for (int t = 0; t < PIECE_TYPES.length; t++) {
+                    results[t] = job.tasks[t].join();
+                }
 
-            cache.setFadeDyeOptimalCache(categoryName, categoryCache);
+                ChecklistCache.CategoryCache categoryCache = mergeCategory(job.name, job.entries, results, snapshot, job.existing);
+                if (categoryCache != job.existing) {
+                    if (job.fade) {
+                        cache.setFadeDyeOptimalCache(job.name, categoryCache);
+                    } else {
+                        cache.setNormalColorCache(job.name, categoryCache);
+                    }
+                    // Copies that only carry the new collection fingerprint don't count
+                    if (job.existing == null || categoryCache.inputFingerprint != job.existing.inputFingerprint
+                            || categoryCache.stageHash != job.existing.stageHash) {
+                        recomputed++;
+                    }
+                }
+            }
+        } finally {
+            generating = false;
         }
 
-        // Update collection size and save
-        cache.setCollectionSize(collection.size());
+        // Update collection size/fingerprint and save
+        cache.setCollectionSize(snapshot.size());
+        cache.setCollectionFingerprint(snapshot.getFingerprint());
+        cache.setComplete(true);
         cache.save();
+        completedGenerations.incrementAndGet();
 
         // Clear InfoBoxRenderer's cached hover data so it will be regenerated with new cache data
         InfoBoxRenderer.forceCloseHoveredDataCache();
 
-        Seymouranalyzer.LOGGER.info("Completed full checklist cache generation for {} normal and {} fade dye categories",
-            normalCategories.size(), fadeDyeCategories.size());
+        Seymouranalyzer.LOGGER.info("Completed checklist cache generation for {} normal and {} fade dye categories ({} recomputed) in {} ms on {} threads",
+            normalCategories.size(), fadeDyeCategories.size(), recomputed, System.currentTimeMillis() - start, POOL.getParallelism());
+
+        if (snapshot.isStale()) {
+            Seymouranalyzer.LOGGER.info("Collection changed during cache generation (version {} -> {}), cache will be refreshed",
+                snapshot.getVersion(), CollectionManager.getInstance().getVersion());
+        }
     }
 
     /**
-     * Generate cache for a single category
+     * True while {@link #generateAllCaches()} is running
      */
-    private static ChecklistCache.CategoryCache generateCacheForCategory(
-            String categoryName,
-            List<ChecklistEntry> entries,
-            Map<String, ArmorPiece> collection) {
-
-        ChecklistCache.CategoryCache categoryCache = new ChecklistCache.CategoryCache();
-        categoryCache.category = categoryName;
-        categoryCache.isCalculating = false;
+    public static boolean isGenerating() {
+        return generating;
+    }
 
-        String[] pieceTypes = {"helmet", "chestplate", "leggings", "boots"};
+    /**
+     * Progress of the running full generation, 0 to 1
+     */
+    public static float getProgress() {
+        int total = progressTotal;
+        return total == 0 ? 0f : Math.min(1f, progressDone.get() / (float) total);
+    }
 
-        // Temporary storage for matches
-        Map<Integer, Map<String, ArmorPiece>> foundPieces = new HashMap<>();
-        Map<Integer, Map<String, String>> foundPieceUuids = new HashMap<>();
+    /**
+     * Number of full generations finished so far, lets screens notice fresh results
+     */
+    public static long getCompletedGenerations() {
+        return completedGenerations.get();
+    }
 
-        for (int i = 0; i < entries.size(); i++) {
-            foundPieces.put(i, new HashMap<>());
-            foundPieceUuids.put(i, new HashMap<>());
+    /**
+     * Apply a batch of single-piece changes to a complete cache without regenerating it.
+     * Only stages within ΔE 5 of a changed piece are looked at, and only the affected
+     * (category, piece type) assignments are solved again.
+     * @param changes  Changes since the cache was last complete, in order
+     * @param snapshot Collection state right after the last of those changes
+     * @return false if the changes can't be applied incrementally (bulk change, piece content changed,
+     *         cache incomplete or out of sync) - the caller should fall back to {@link #generateAllCaches()}
+     */
+    static synchronized boolean updateIncrementally(List<CollectionChange> changes, CollectionSnapshot snapshot) {
+        ChecklistCache cache = ChecklistCache.getInstance();
+        if (!cache.isComplete()) {
+            return false;
         }
 
-        // Calculate optimal matches for each piece type
-        for (String pieceType : pieceTypes) {
-            List<CandidateMatch> candidates = new ArrayList<>();
-
-            // Build candidate list
-            for (int stageIdx = 0; stageIdx < entries.size(); stageIdx++) {
-                ChecklistEntry entry = entries.get(stageIdx);
-
-                for (Map.Entry<String, ArmorPiece> collectionEntry : collection.entrySet()) {
-                    String uuid = collectionEntry.getKey();
-                    ArmorPiece piece = collectionEntry.getValue();
-
-                    if (!matchesPieceType(piece.getPieceName(), pieceType)) {
-                        continue;
-                    }
-
-                    double deltaE = ColorMath.calculateDeltaE(entry.hex, piece.getHexcode());
-                    if (deltaE <= 5.0) {
-                        boolean isNeeded = entry.pieces.contains(pieceType);
-                        candidates.add(new CandidateMatch(stageIdx, uuid, piece, deltaE, isNeeded));
-                    }
-                }
-            }
-
-            // Sort: needed pieces first, then by quality
-            candidates.sort((a, b) -> {
-                if (a.isNeeded != b.isNeeded) {
-                    return a.isNeeded ? -1 : 1;
+        ChecklistStageIndex index = stageIndex();
+        Map<String, Set<String>> affectedTypes = new LinkedHashMap<>(); // category key -> piece types to re-solve
+        Map<String, Long> fingerprintDelta = new HashMap<>();
+        Map<String, ChecklistStageIndex.StageRef> categoryRefs = new HashMap<>();
+        long expectedFingerprint = cache.getCollectionFingerprint();
+
+        for (CollectionChange change : changes) {
+            int sign;
+            switch (change.type()) {
+                case ADDED -> sign = 1;
+                case REMOVED -> sign = -1;
+                // Re-scans of an unchanged piece don't affect the cache; if the color or type did
+                // change, the fingerprint check below fails and we fall back to a full run
+                case UPDATED -> {
+                    continue;
                 }
-                return Double.compare(a.deltaE, b.deltaE);
-            });
-
-            // Greedy assignment
-            Set<String> usedPieces = new HashSet<>();
-            Set<Integer> assignedStages = new HashSet<>();
-
-            for (CandidateMatch candidate : candidates) {
-                if (!usedPieces.contains(candidate.uuid) && !assignedStages.contains(candidate.stageIndex)) {
-                    foundPieces.get(candidate.stageIndex).put(pieceType, candidate.piece);
-                    foundPieceUuids.get(candidate.stageIndex).put(pieceType, candidate.uuid);
-                    usedPieces.add(candidate.uuid);
-                    assignedStages.add(candidate.stageIndex);
+                default -> {
+                    return false;
                 }
             }
-        }
 
-        // Build StageMatches for each entry
-        for (int i = 0; i < entries.size(); i++) {
-            ChecklistEntry entry = entries.get(i);
-            ChecklistCache.StageMatches stageMatches = new ChecklistCache.StageMatches();
-            stageMatches.stageHex = entry.hex;
-            stageMatches.calculated = true;
-
-            Map<String, ArmorPiece> pieces = foundPieces.get(i);
-            Map<String, String> uuids = foundPieceUuids.get(i);
-
-            // Save each piece match
-            if (pieces.containsKey("helmet")) {
-                ArmorPiece piece = pieces.get("helmet");
-                String uuid = uuids.get("helmet");
-                stageMatches.helmet = new ChecklistCache.MatchInfo(
-                    piece.getPieceName(),
-                    piece.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, piece.getHexcode()),
-                    uuid
-                );
+            ArmorPiece piece = change.piece();
+            expectedFingerprint += sign * CollectionFingerprint.pieceHash(piece);
+            if (piece.getHexcode() == null || CollectionStore.parseRgb(piece.getHexcode()) < 0) {
+                continue;
             }
 
-            if (pieces.containsKey("chestplate")) {
-                ArmorPiece piece = pieces.get("chestplate");
-                String uuid = uuids.get("chestplate");
-                stageMatches.chestplate = new ChecklistCache.MatchInfo(
-                    piece.getPieceName(),
-                    piece.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, piece.getHexcode()),
-                    uuid
-                );
+            List<String> types = new ArrayList<>();
+            for (String pieceType : PIECE_TYPES) {
+                if (PieceTypeUtil.matchesPieceType(piece.getPieceName(), pieceType)) {
+                    types.add(pieceType);
+                }
             }
-
-            if (pieces.containsKey("leggings")) {
-                ArmorPiece piece = pieces.get("leggings");
-                String uuid = uuids.get("leggings");
-                stageMatches.leggings = new ChecklistCache.MatchInfo(
-                    piece.getPieceName(),
-                    piece.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, piece.getHexcode()),
-                    uuid
-                );
+            if (types.isEmpty()) {
+                continue;
             }
 
-            if (pieces.containsKey("boots")) {
-                ArmorPiece piece = pieces.get("boots");
-                String uuid = uuids.get("boots");
-                stageMatches.boots = new ChecklistCache.MatchInfo(
-                    piece.getPieceName(),
-                    piece.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, piece.getHexcode()),
-                    uuid
-                );
+            for (ChecklistStageIndex.StageRef ref : index.withinRadius(ColorMath.hexToLab(piece.getHexcode()), MATCH_RADIUS)) {
+                String key = categoryKey(ref.fade(), ref.category());
+                categoryRefs.putIfAbsent(key, ref);
+                affectedTypes.computeIfAbsent(key, k -> new LinkedHashSet<>()).addAll(types);
+                long delta = 0;
+                for (String pieceType : types) {
+                    delta += candidateHash(ref.stageIndex(), pieceType, piece);
+                }
+                fingerprintDelta.merge(key, sign * delta, Long::sum);
             }
-
-            categoryCache.matchesByIndex.put(i, stageMatches);
         }
 
-        return categoryCache;
-    }
-
-    /**
-     * Check if a piece name matches a piece type
-     */
-    private static boolean matchesPieceType(String pieceName, String pieceType) {
-        return PieceTypeUtil.matchesPieceType(pieceName, pieceType);
-    }
-
-    /**
-     * Load checklist data from JSON
-     */
-    private static Map<String, List<ChecklistEntry>> loadChecklistData() {
-        Map<String, List<ChecklistEntry>> categories = new LinkedHashMap<>();
-
-        try {
-            InputStream inputStream = Seymouranalyzer.class.getResourceAsStream("/data/seymouranalyzer/checklistdata.json");
-            if (inputStream == null) {
-                Seymouranalyzer.LOGGER.error("Could not load checklistdata.json");
-                return categories;
-            }
-
-            Gson gson = new Gson();
-            JsonObject root = gson.fromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), JsonObject.class);
-
-            // Load categories
-            JsonObject categoriesJson = root.getAsJsonObject("categories");
-            for (String categoryName : categoriesJson.keySet()) {
-                List<ChecklistEntry> entries = new ArrayList<>();
-                var array = categoriesJson.getAsJsonArray(categoryName);
-
-                for (var element : array) {
-                    var obj = element.getAsJsonObject();
-                    ChecklistEntry entry = new ChecklistEntry();
-                    entry.hex = obj.get("hex").getAsString().toUpperCase();
-                    entry.name = obj.get("name").getAsString();
-                    entry.pieces = new ArrayList<>();
-
-                    var piecesArray = obj.getAsJsonArray("pieces");
-                    for (var pieceElement : piecesArray) {
-                        entry.pieces.add(pieceElement.getAsString());
-                    }
-
-                    entries.add(entry);
-                }
-
-                categories.put(categoryName, entries);
+        // The cache must have been complete for exactly the state before these changes
+        if (expectedFingerprint != snapshot.getFingerprint()) {
+            return false;
+        }
+        for (ChecklistStageIndex.StageRef ref : categoryRefs.values()) {
+            if (categoryCache(cache, ref.fade(), ref.category()) == null) {
+                return false;
             }
-        } catch (Exception e) {
-            Seymouranalyzer.LOGGER.error("Failed to load checklist data", e);
         }
 
-        return categories;
-    }
-
-    /**
-     * Load fade dye categories from colors.json
-     */
-    private static Map<String, List<ChecklistEntry>> loadFadeDyeData() {
-        Map<String, List<ChecklistEntry>> fadeDyeCategories = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> affected : affectedTypes.entrySet()) {
+            ChecklistStageIndex.StageRef ref = categoryRefs.get(affected.getKey());
+            List<ReferenceData.Stage> entries = index.getStages(ref.fade(), ref.category());
+            ChecklistCache.CategoryCache existing = categoryCache(cache, ref.fade(), ref.category());
 
-        try {
-            InputStream inputStream = Seymouranalyzer.class.getResourceAsStream("/data/seymouranalyzer/colors.json");
-            if (inputStream == null) {
-                Seymouranalyzer.LOGGER.error("Could not load colors.json for fade dyes");
-                return fadeDyeCategories;
+            ChecklistCache.CategoryCache updated = copyCategory(existing);
+            for (String pieceType : affected.getValue()) {
+                List<CandidateMatch> candidates = collectCandidates(entries, pieceType, snapshot);
+                assignPieceType(entries, pieceType, candidates, updated);
             }
+            updated.inputFingerprint = existing.inputFingerprint + fingerprintDelta.getOrDefault(affected.getKey(), 0L);
+            updated.collectionFingerprint = snapshot.getFingerprint();
 
-            Gson gson = new Gson();
-            JsonObject root = gson.fromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), JsonObject.class);
-            JsonObject fadeDyes = root.getAsJsonObject("FADE_DYES");
-
-            if (fadeDyes == null) {
-                Seymouranalyzer.LOGGER.warn("No FADE_DYES section found in colors.json");
-                return fadeDyeCategories;
+            if (ref.fade()) {
+                cache.setFadeDyeOptimalCache(ref.category(), updated);
+            } else {
+                cache.setNormalColorCache(ref.category(), updated);
             }
+        }
 
-            // Group stages by fade dye name
-            for (String key : fadeDyes.keySet()) {
-                // Parse "Aurora - Stage 1" format
-                String[] parts = key.split(" - Stage ");
-                if (parts.length == 2) {
-                    String dyeName = parts[0];
-                    String hexValue = fadeDyes.get(key).getAsString().toUpperCase();
-
-                    fadeDyeCategories.putIfAbsent(dyeName, new ArrayList<>());
-
-                    ChecklistEntry entry = new ChecklistEntry();
-                    entry.hex = hexValue;
-                    entry.name = key;
-                    entry.pieces = new ArrayList<>();
-                    entry.pieces.add("helmet");
-                    entry.pieces.add("chestplate");
-                    entry.pieces.add("leggings");
-                    entry.pieces.add("boots");
-
-                    fadeDyeCategories.get(dyeName).add(entry);
-                }
+        // Untouched categories are still valid for the new collection; not written to disk,
+        // after a restart they are revalidated through their candidate fingerprint.
+        // Categories the stage index doesn't cover (Custom) weren't checked and stay as they are.
+        for (Map.Entry<String, ChecklistCache.CategoryCache> entry : cache.getNormalColorCache().entrySet()) {
+            if (index.getStages(false, entry.getKey()) != null) {
+                entry.getValue().collectionFingerprint = snapshot.getFingerprint();
             }
+        }
+        for (Map.Entry<String, ChecklistCache.CategoryCache> entry : cache.getFadeDyeOptimalCache().entrySet()) {
+            if (index.getStages(true, entry.getKey()) != null) {
+                entry.getValue().collectionFingerprint = snapshot.getFingerprint();
+            }
+        }
 
-            Seymouranalyzer.LOGGER.info("Loaded {} fade dye categories with {} total stages",
-                fadeDyeCategories.size(),
-                fadeDyeCategories.values().stream().mapToInt(List::size).sum());
+        cache.setCollectionSize(snapshot.size());
+        cache.setCollectionFingerprint(snapshot.getFingerprint());
+        cache.save();
 
-        } catch (Exception e) {
-            Seymouranalyzer.LOGGER.error("Failed to load fade dye data", e);
+        if (!affectedTypes.isEmpty()) {
+            InfoBoxRenderer.forceCloseHoveredDataCache();
         }
 
-        return fadeDyeCategories;
+        Seymouranalyzer.LOGGER.debug("Applied {} collection changes to checklist cache ({} categories re-solved)",
+            changes.size(), affectedTypes.size());
+        return true;
     }
 }
-
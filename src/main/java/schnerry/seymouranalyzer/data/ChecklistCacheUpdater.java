@@ -0,0 +1,135 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.Seymouranalyzer;
+import schnerry.seymouranalyzer.SeymouranalyzerClient;
+import schnerry.seymouranalyzer.gui.GuiScaleManager;
+import schnerry.seymouranalyzer.scanner.ChestScanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the checklist cache up to date when collection change events arrive.
+ * Single added/removed pieces are applied right away on a background thread, touching only the
+ * stages near the piece's color (see {@link ChecklistCacheGenerator#updateIncrementally}), so the
+ * cache stays fresh while scanning. Bulk changes, or batches that can't be applied incrementally,
+ * fall back to a full regeneration which is deferred while scanning/exporting or while a mod GUI is open.
+ */
+public class ChecklistCacheUpdater implements CollectionChangeListener {
+    private static ChecklistCacheUpdater INSTANCE;
+
+    // One worker so incremental updates are applied in order and never overlap a full run
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ChecklistCacheUpdater");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final List<CollectionChange> pendingChanges = new ArrayList<>();
+    private CollectionSnapshot pendingSnapshot; // Collection state right after the last pending change
+    private boolean pendingRebuild = false;
+    private boolean rebuildRunning = false;
+
+    private ChecklistCacheUpdater() {}
+
+    public static ChecklistCacheUpdater getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new ChecklistCacheUpdater();
+        }
+        return INSTANCE;
+    }
+
+    @Override
+    public synchronized void onCollectionChanged(List<CollectionChange> changes) {
+        for (CollectionChange change : changes) {
+            if (change.isBulk()) {
+                pendingRebuild = true;
+            }
+        }
+
+        if (pendingRebuild) {
+            // A full run covers these changes anyway
+            pendingChanges.clear();
+            pendingSnapshot = null;
+            return;
+        }
+
+        pendingChanges.addAll(changes);
+        // Delivered on the client thread right after the changes were made, so this matches the batch
+        pendingSnapshot = CollectionManager.getInstance().snapshot();
+    }
+
+    /**
+     * Called every tick - applies pending piece changes, and starts a full regeneration once it is safe to do so
+     */
+    public synchronized void tick() {
+        if (!pendingChanges.isEmpty()) {
+            submitIncremental();
+        }
+
+        if (!pendingRebuild || rebuildRunning) {
+            return;
+        }
+
+        // Don't regenerate during active scanning/exporting to avoid lag
+        ChestScanner scanner = SeymouranalyzerClient.getScanner();
+        if (scanner != null && (scanner.isScanningEnabled() || scanner.isExportingEnabled())) {
+            return;
+        }
+
+        // Don't regenerate while in a mod GUI (e.g., database screen, checklist screen)
+        // to avoid lag while browsing
+        GuiScaleManager guiManager = GuiScaleManager.getInstance();
+        if (guiManager != null && guiManager.isInModGui()) {
+            return;
+        }
+
+        pendingRebuild = false;
+
+        // Changes that cancelled out (e.g. a piece removed and re-added) leave the cache valid
+        if (ChecklistCache.getInstance().isCompleteFor(CollectionManager.getInstance().getFingerprint())) {
+            return;
+        }
+
+        rebuildRunning = true;
+        worker.submit(() -> {
+            try {
+                Seymouranalyzer.LOGGER.info("Collection changed (now {} pieces), regenerating checklist cache...",
+                    CollectionManager.getInstance().size());
+                ChecklistCacheGenerator.generateAllCaches();
+            } catch (Exception e) {
+                Seymouranalyzer.LOGGER.error("Failed to regenerate checklist cache", e);
+            } finally {
+                synchronized (this) {
+                    rebuildRunning = false;
+                }
+            }
+        });
+    }
+
+    private void submitIncremental() {
+        List<CollectionChange> changes = new ArrayList<>(pendingChanges);
+        CollectionSnapshot snapshot = pendingSnapshot;
+        pendingChanges.clear();
+        pendingSnapshot = null;
+
+        worker.submit(() -> {
+            boolean applied = false;
+            try {
+                applied = ChecklistCacheGenerator.updateIncrementally(changes, snapshot);
+            } catch (Exception e) {
+                Seymouranalyzer.LOGGER.error("Failed to update checklist cache", e);
+            }
+
+            if (!applied) {
+                synchronized (this) {
+                    pendingRebuild = true;
+                    pendingChanges.clear();
+                    pendingSnapshot = null;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.util.ColorMath;
+import schnerry.seymouranalyzer.util.PieceTypeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pieces of one {@link CollectionSnapshot} split by piece type, with their LAB values computed once and
+ * stored in flat arrays sorted by grid cell ({@value LabSpatialIndex#CELL_SIZE} ΔE wide, like {@link LabSpatialIndex}).
+ * Built once per generation run so every stage query reads primitive arrays instead of re-checking
+ * piece names, re-parsing hexes or taking the live index's lock.
+ * Uses the same LAB conversion and distance as {@link LabSpatialIndex}, so both give identical candidate sets.
+ */
+final class ChecklistCandidateIndex {
+    private static volatile ChecklistCandidateIndex last; // Reused while the collection doesn't change
+
+    private final CollectionSnapshot snapshot;
+    private final TypeGrid[] grids = new TypeGrid[CollectionStore.TYPE_NAMES.length];
+
+    private ChecklistCandidateIndex(CollectionSnapshot snapshot) {
+        this.snapshot = snapshot;
+
+        List<List<Entry>> byType = new ArrayList<>();
+        for (int t = 0; t < grids.length; t++) {
+            byType.add(new ArrayList<>());
+        }
+        for (ArmorPiece piece : snapshot.values()) {
+            if (piece.getHexcode() == null || CollectionStore.parseRgb(piece.getHexcode()) < 0) continue;
+            Entry entry = null;
+            for (int t = 0; t < grids.length; t++) {
+                // Same type rule as the checklist: a name can match several type keywords
+                if (!PieceTypeUtil.matchesPieceType(piece.getPieceName(), CollectionStore.TYPE_NAMES[t])) continue;
+                if (entry == null) {
+                    ColorMath.LAB lab = ColorMath.hexToLab(piece.getHexcode().replace("#", ""));
+                    long cellKey = LabSpatialIndex.cellKey(LabSpatialIndex.cell(lab.L()), LabSpatialIndex.cell(lab.a()), LabSpatialIndex.cell(lab.b()));
+                    entry = new Entry(piece, lab.L(), lab.a(), lab.b(), cellKey);
+                }
+                byType.get(t).add(entry);
+            }
+        }
+        for (int t = 0; t < grids.length; t++) {
+            grids[t] = new TypeGrid(byType.get(t));
+        }
+    }
+
+    /**
+     * Index for {@code snapshot}, reusing the previous one if it was built for the same snapshot
+     */
+    static ChecklistCandidateIndex of(CollectionSnapshot snapshot) {
+        ChecklistCandidateIndex index = last;
+        if (index == null || index.snapshot != snapshot) {
+            index = new ChecklistCandidateIndex(snapshot);
+            last = index;
+        }
+        return index;
+    }
+
+    CollectionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Every piece of {@code pieceType} within ΔE {@value ChecklistAssignmentEngine#MATCH_RADIUS} of a stage
+     */
+    List<ChecklistAssignmentEngine.CandidateMatch> candidates(List<ReferenceData.Stage> entries, String pieceType) {
+        List<ChecklistAssignmentEngine.CandidateMatch> candidates = new ArrayList<>();
+        byte type = CollectionStore.typeIndex(pieceType);
+        if (type == CollectionStore.TYPE_UNKNOWN) return candidates;
+        TypeGrid grid = grids[type];
+        PieceIdTable ids = PieceIdTable.getInstance();
+        double radius = ChecklistAssignmentEngine.MATCH_RADIUS;
+
+        for (int stageIdx = 0; stageIdx < entries.size(); stageIdx++) {
+            ReferenceData.Stage entry = entries.get(stageIdx);
+            ColorMath.LAB center = entry.lab();
+            boolean isNeeded = entry.needs(pieceType);
+
+            int minL = LabSpatialIndex.cell(center.L() - radius), maxL = LabSpatialIndex.cell(center.L() + radius);
+            int minA = LabSpatialIndex.cell(center.a() - radius), maxA = LabSpatialIndex.cell(center.a() + radius);
+            int minB = LabSpatialIndex.cell(center.b() - radius), maxB = LabSpatialIndex.cell(center.b() + radius);
+            for (int l = minL; l <= maxL; l++) {
+                for (int a = minA; a <= maxA; a++) {
+                    for (int b = minB; b <= maxB; b++) {
+                        int c = Arrays.binarySearch(grid.cellKeys, LabSpatialIndex.cellKey(l, a, b));
+                        if (c < 0) continue;
+                        for (int i = grid.cellStart[c]; i < grid.cellStart[c + 1]; i++) {
+                            double dL = grid.L[i] - center.L();
+                            double dA = grid.a[i] - center.a();
+                            double dB = grid.b[i] - center.b();
+                            double deltaE = Math.sqrt(dL * dL + dA * dA + dB * dB);
+                            if (deltaE <= radius) {
+                                ArmorPiece piece = grid.pieces[i];
+                                candidates.add(new ChecklistAssignmentEngine.CandidateMatch(stageIdx, ids.idOf(piece), piece, deltaE, isNeeded));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private record Entry(ArmorPiece piece, double L, double a, double b, long cellKey) {}
+
+    /**
+     * One piece type's pieces sorted by cell; cell i spans [cellStart[i], cellStart[i + 1])
+     */
+    private static final class TypeGrid {
+        final long[] cellKeys;
+        final int[] cellStart;
+        final ArmorPiece[] pieces;
+        final double[] L;
+        final double[] a;
+        final double[] b;
+
+        TypeGrid(List<Entry> entries) {
+            Entry[] sorted = entries.toArray(new Entry[0]);
+            Arrays.sort(sorted, (x, y) -> Long.compare(x.cellKey(), y.cellKey()));
+
+            pieces = new ArmorPiece[sorted.length];
+            L = new double[sorted.length];
+            a = new double[sorted.length];
+            b = new double[sorted.length];
+            long[] keys = new long[sorted.length];
+            int[] starts = new int[sorted.length + 1];
+            int cells = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                Entry entry = sorted[i];
+                pieces[i] = entry.piece();
+                L[i] = entry.L();
+                a[i] = entry.a();
+                b[i] = entry.b();
+                if (cells == 0 || keys[cells - 1] != entry.cellKey()) {
+                    keys[cells] = entry.cellKey();
+                    starts[cells] = i;
+                    cells++;
+                }
+            }
+            starts[cells] = sorted.length;
+            cellKeys = Arrays.copyOf(keys, cells);
+            cellStart = Arrays.copyOf(starts, cells + 1);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Min-cost bipartite matching between checklist stages and pieces of one piece type, over the sparse
+ * candidate graph (one edge per stage/piece pair within ΔE 5).
+ * Successive shortest paths: every round finds the cheapest augmenting path with Dijkstra on reduced costs
+ * (node potentials keep them non-negative) and augments while that lowers the total cost.
+ * Can be warm-started from a previous assignment; if that assignment isn't optimal for the current graph
+ * the solver notices (negative cycle while computing potentials) and starts from scratch instead.
+ */
+final class ChecklistMatchingSolver {
+    private static final double EPSILON = 1e-9;
+
+    private final int stageCount;
+    private final int pieceCount;
+    private final int source;
+    private final int sink;
+    private final int nodeCount; // Stages 0..n-1, pieces n..n+m-1, then source and sink
+
+    // Edges grouped by stage (CSR)
+    private final int[] stageEdgeStart;
+    private final int[] stageEdges;
+    private final int[] edgeStage;
+    private final int[] edgePiece;
+    private final double[] edgeCost;
+
+    // Matched edge per stage/piece, -1 if free
+    private final int[] stageMatch;
+    private final int[] pieceMatch;
+
+    private final double[] potential;
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] parentEdge;
+
+    // Residual arcs of one node, filled by arcs()
+    private final int[] arcTo;
+    private final int[] arcEdge;
+    private final double[] arcCost;
+
+    // Binary heap for Dijkstra (lazy deletion)
+    private int[] heapNode = new int[64];
+    private double[] heapKey = new double[64];
+    private int heapSize;
+
+    /**
+     * @param edgeStage Stage index of each edge
+     * @param edgePiece Piece index (0 to pieceCount - 1) of each edge
+     * @param edgeCost  Cost of each edge, lower is better; may be negative
+     */
+    ChecklistMatchingSolver(int stageCount, int pieceCount, int[] edgeStage, int[] edgePiece, double[] edgeCost) {
+        this.stageCount = stageCount;
+        this.pieceCount = pieceCount;
+        this.source = stageCount + pieceCount;
+        this.sink = source + 1;
+        this.nodeCount = sink + 1;
+        this.edgeStage = edgeStage;
+        this.edgePiece = edgePiece;
+        this.edgeCost = edgeCost;
+
+        stageEdgeStart = new int[stageCount + 1];
+        for (int stage : edgeStage) {
+            stageEdgeStart[stage + 1]++;
+        }
+        int maxDegree = 0;
+        for (int s = 0; s < stageCount; s++) {
+            maxDegree = Math.max(maxDegree, stageEdgeStart[s + 1]);
+            stageEdgeStart[s + 1] += stageEdgeStart[s];
+        }
+        stageEdges = new int[edgeStage.length];
+        int[] fill = Arrays.copyOf(stageEdgeStart, stageCount);
+        for (int e = 0; e < edgeStage.length; e++) {
+            stageEdges[fill[edgeStage[e]]++] = e;
+        }
+
+        stageMatch = new int[stageCount];
+        pieceMatch = new int[pieceCount];
+        Arrays.fill(stageMatch, -1);
+        Arrays.fill(pieceMatch, -1);
+
+        potential = new double[nodeCount];
+        dist = new double[nodeCount];
+        parent = new int[nodeCount];
+        parentEdge = new int[nodeCount];
+
+        int maxArcs = Math.max(Math.max(stageCount, pieceCount), maxDegree + 1);
+        arcTo = new int[maxArcs];
+        arcEdge = new int[maxArcs];
+        arcCost = new double[maxArcs];
+    }
+
+    /**
+     * Start from a previous assignment. Pairs that are no longer candidates, or pieces used twice, are skipped.
+     * @param stagePiece Piece index per stage, -1 for none
+     */
+    void warmStart(int[] stagePiece) {
+        for (int s = 0; s < stageCount && s < stagePiece.length; s++) {
+            int p = stagePiece[s];
+            if (p < 0 || p >= pieceCount || pieceMatch[p] != -1 || stageMatch[s] != -1) continue;
+            for (int i = stageEdgeStart[s]; i < stageEdgeStart[s + 1]; i++) {
+                int e = stageEdges[i];
+                if (edgePiece[e] == p) {
+                    stageMatch[s] = e;
+                    pieceMatch[p] = e;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Solve from the current (warm-start or empty) assignment
+     * @return Matched edge per stage, -1 where the stage stays empty
+     */
+    int[] solve() {
+        if (!initPotentials()) {
+            // Warm start wasn't optimal for this graph
+            Arrays.fill(stageMatch, -1);
+            Arrays.fill(pieceMatch, -1);
+            initPotentials(); // No matched edges - the residual graph is acyclic
+        }
+
+        while (augment()) {
+            // Each round adds one matched stage
+        }
+        return stageMatch.clone();
+    }
+
+    /**
+     * Bellman-Ford (queue based) from a virtual source connected to every node, gives feasible potentials
+     * @return false if the residual graph has a negative cycle, i.e. the current assignment isn't min-cost
+     */
+    private boolean initPotentials() {
+        Arrays.fill(potential, 0);
+        int[] enqueued = new int[nodeCount];
+        boolean[] inQueue = new boolean[nodeCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>(nodeCount);
+        for (int v = 0; v < nodeCount; v++) {
+            queue.add(v);
+            inQueue[v] = true;
+        }
+
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            inQueue[u] = false;
+            int count = arcs(u);
+            for (int i = 0; i < count; i++) {
+                int v = arcTo[i];
+                double candidate = potential[u] + arcCost[i];
+                if (candidate < potential[v] - EPSILON) {
+                    potential[v] = candidate;
+                    if (!inQueue[v]) {
+                        if (++enqueued[v] > nodeCount) {
+                            return false;
+                        }
+                        queue.add(v);
+                        inQueue[v] = true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the cheapest augmenting path source -> free stage -> ... -> free piece -> sink and apply it
+     * @return false if there is none, or it wouldn't lower the total cost
+     */
+    private boolean augment() {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[source] = 0;
+        parent[source] = -1;
+        heapSize = 0;
+        push(source, 0);
+
+        while (heapSize > 0) {
+            double d = heapKey[0];
+            int u = pop();
+            if (d > dist[u]) continue;
+            if (u == sink) break;
+
+            int count = arcs(u);
+            for (int i = 0; i < count; i++) {
+                int v = arcTo[i];
+                double reduced = Math.max(0, arcCost[i] + potential[u] - potential[v]);
+                if (d + reduced < dist[v]) {
+                    dist[v] = d + reduced;
+                    parent[v] = u;
+                    parentEdge[v] = arcEdge[i];
+                    push(v, dist[v]);
+                }
+            }
+        }
+
+        double sinkDist = dist[sink];
+        if (sinkDist == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        if (sinkDist - potential[source] + potential[sink] >= -EPSILON) {
+            return false;
+        }
+
+        for (int v = 0; v < nodeCount; v++) {
+            potential[v] += Math.min(dist[v], sinkDist);
+        }
+
+        // Walk back: free piece <- stage (<- previously matched piece <- stage ...) <- source
+        int p = parent[sink];
+        while (true) {
+            int e = parentEdge[p];
+            int s = edgeStage[e];
+            stageMatch[s] = e;
+            pieceMatch[p - stageCount] = e;
+            if (parent[s] == source) break;
+            p = parent[s];
+        }
+        return true;
+    }
+
+    /**
+     * Fill arcTo/arcEdge/arcCost with the residual arcs leaving {@code u}
+     * @return Number of arcs
+     */
+    private int arcs(int u) {
+        int count = 0;
+        if (u == source) {
+            for (int s = 0; s < stageCount; s++) {
+                if (stageMatch[s] == -1) {
+                    count = arc(count, s, -1, 0);
+                }
+            }
+        } else if (u == sink) {
+            for (int p = 0; p < pieceCount; p++) {
+                if (pieceMatch[p] != -1) {
+                    count = arc(count, stageCount + p, -1, 0);
+                }
+            }
+        } else if (u < stageCount) {
+            int matched = stageMatch[u];
+            for (int i = stageEdgeStart[u]; i < stageEdgeStart[u + 1]; i++) {
+                int e = stageEdges[i];
+                if (e != matched) {
+                    count = arc(count, stageCount + edgePiece[e], e, edgeCost[e]);
+                }
+            }
+            if (matched != -1) {
+                count = arc(count, source, -1, 0);
+            }
+        } else {
+            int matched = pieceMatch[u - stageCount];
+            if (matched != -1) {
+                count = arc(count, edgeStage[matched], matched, -edgeCost[matched]);
+            } else {
+                count = arc(count, sink, -1, 0);
+            }
+        }
+        return count;
+    }
+
+    private int arc(int count, int to, int edge, double cost) {
+        arcTo[count] = to;
+        arcEdge[count] = edge;
+        arcCost[count] = cost;
+        return count + 1;
+    }
+
+    private void push(int node, double key) {
+        if (heapSize == heapNode.length) {
+            heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+            heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >> 1;
+            if (heapKey[up] <= key) break;
+            heapNode[i] = heapNode[up];
+            heapKey[i] = heapKey[up];
+            i = up;
+        }
+        heapNode[i] = node;
+        heapKey[i] = key;
+    }
+
+    private int pop() {
+        int top = heapNode[0];
+        int node = heapNode[--heapSize];
+        double key = heapKey[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) child++;
+            if (heapKey[child] >= key) break;
+            heapNode[i] = heapNode[child];
+            heapKey[i] = heapKey[child];
+            i = child;
+        }
+        heapNode[i] = node;
+        heapKey[i] = key;
+        return top;
+    }
+}
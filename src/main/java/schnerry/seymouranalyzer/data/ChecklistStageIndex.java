@@ -0,0 +1,93 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.util.ColorMath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable LAB grid over every checklist stage (normal categories and fade dyes) of one {@link ReferenceData}.
+ * Used to find the few stages a single added/removed piece can affect, so the checklist cache
+ * can be updated per piece instead of regenerating every category.
+ * Cells are {@value LabSpatialIndex#CELL_SIZE} ΔE wide like {@link LabSpatialIndex}.
+ */
+final class ChecklistStageIndex {
+    /**
+     * A single stage of a category
+     * @param fade True for fade dye categories, false for normal checklist categories
+     */
+    record StageRef(boolean fade, String category, int stageIndex, ColorMath.LAB lab) {}
+
+    private final ReferenceData data;
+    private final Map<Long, List<StageRef>> cells = new HashMap<>();
+    private final int stageCount;
+
+    ChecklistStageIndex(ReferenceData data) {
+        this.data = data;
+        this.stageCount = index(data.getChecklistCategories(), false) + index(data.getFadeCategories(), true);
+    }
+
+    private int index(Map<String, ReferenceData.Category> categories, boolean fade) {
+        int count = 0;
+        for (ReferenceData.Category category : categories.values()) {
+            List<ReferenceData.Stage> stages = category.stages();
+            for (int i = 0; i < stages.size(); i++) {
+                ColorMath.LAB lab = stages.get(i).lab();
+                StageRef ref = new StageRef(fade, category.name(), i, lab);
+                long key = LabSpatialIndex.cellKey(LabSpatialIndex.cell(lab.L()), LabSpatialIndex.cell(lab.a()), LabSpatialIndex.cell(lab.b()));
+                cells.computeIfAbsent(key, k -> new ArrayList<>()).add(ref);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The reference data this index was built from
+     */
+    ReferenceData getData() {
+        return data;
+    }
+
+    /**
+     * Stages of a category, or null if there is no such category
+     */
+    List<ReferenceData.Stage> getStages(boolean fade, String category) {
+        ReferenceData.Category found = (fade ? data.getFadeCategories() : data.getChecklistCategories()).get(category);
+        return found != null ? found.stages() : null;
+    }
+
+    int getStageCount() {
+        return stageCount;
+    }
+
+    /**
+     * Every stage within ΔE {@code radius} of {@code center}
+     */
+    List<StageRef> withinRadius(ColorMath.LAB center, double radius) {
+        List<StageRef> result = new ArrayList<>();
+        int minL = LabSpatialIndex.cell(center.L() - radius), maxL = LabSpatialIndex.cell(center.L() + radius);
+        int minA = LabSpatialIndex.cell(center.a() - radius), maxA = LabSpatialIndex.cell(center.a() + radius);
+        int minB = LabSpatialIndex.cell(center.b() - radius), maxB = LabSpatialIndex.cell(center.b() + radius);
+
+        for (int l = minL; l <= maxL; l++) {
+            for (int a = minA; a <= maxA; a++) {
+                for (int b = minB; b <= maxB; b++) {
+                    List<StageRef> bucket = cells.get(LabSpatialIndex.cellKey(l, a, b));
+                    if (bucket == null) continue;
+                    for (StageRef ref : bucket) {
+                        double dL = ref.lab().L() - center.L();
+                        double dA = ref.lab().a() - center.a();
+                        double dB = ref.lab().b() - center.b();
+                        if (Math.sqrt(dL * dL + dA * dA + dB * dB) <= radius) {
+                            result.add(ref);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
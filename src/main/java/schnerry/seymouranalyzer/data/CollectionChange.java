@@ -0,0 +1,46 @@
+package schnerry.seymouranalyzer.data;
+
+/**
+ * A single change to the collection, published by {@link CollectionManager}
+ * and delivered to listeners in per-tick batches.
+ *
+ * @param type  What happened
+ * @param uuid  UUID of the affected piece (null for CLEARED / RELOADED)
+ * @param piece The piece after the change, or the removed piece for REMOVED (null for CLEARED / RELOADED)
+ */
+public record CollectionChange(Type type, String uuid, ArmorPiece piece) {
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED,
+        CLEARED,
+        RELOADED // Pieces were modified in place or reloaded, listeners should rebuild
+    }
+
+    public static CollectionChange added(ArmorPiece piece) {
+        return new CollectionChange(Type.ADDED, piece.getUuid(), piece);
+    }
+
+    public static CollectionChange updated(ArmorPiece piece) {
+        return new CollectionChange(Type.UPDATED, piece.getUuid(), piece);
+    }
+
+    public static CollectionChange removed(ArmorPiece piece) {
+        return new CollectionChange(Type.REMOVED, piece.getUuid(), piece);
+    }
+
+    public static CollectionChange cleared() {
+        return new CollectionChange(Type.CLEARED, null, null);
+    }
+
+    public static CollectionChange reloaded() {
+        return new CollectionChange(Type.RELOADED, null, null);
+    }
+
+    /**
+     * True for changes that invalidate everything rather than a single piece
+     */
+    public boolean isBulk() {
+        return type == Type.CLEARED || type == Type.RELOADED;
+    }
+}
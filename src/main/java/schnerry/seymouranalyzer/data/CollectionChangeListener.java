@@ -0,0 +1,12 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.List;
+
+/**
+ * Receives batched collection changes. Called on the client thread once per tick
+ * (only when something changed), in the order the changes happened.
+ */
+@FunctionalInterface
+public interface CollectionChangeListener {
+    void onCollectionChanged(List<CollectionChange> changes);
+}
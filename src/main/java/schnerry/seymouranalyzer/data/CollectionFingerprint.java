@@ -0,0 +1,55 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.util.PieceTypeUtil;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order-independent content hash of the collection over (uuid, rgb, piece type).
+ * Each piece contributes a 64-bit hash that is added on insert and subtracted on removal,
+ * so the fingerprint is maintained in O(1) per change and two collections with the same
+ * pieces always end up with the same value, regardless of insertion order.
+ */
+public class CollectionFingerprint {
+    private final AtomicLong value = new AtomicLong();
+
+    public long get() {
+        return value.get();
+    }
+
+    public void add(ArmorPiece piece) {
+        value.addAndGet(pieceHash(piece));
+    }
+
+    public void remove(ArmorPiece piece) {
+        value.addAndGet(-pieceHash(piece));
+    }
+
+    public void reset(Collection<ArmorPiece> pieces) {
+        long sum = 0;
+        for (ArmorPiece piece : pieces) {
+            sum += pieceHash(piece);
+        }
+        value.set(sum);
+    }
+
+    public static long pieceHash(ArmorPiece piece) {
+        String uuid = piece.getUuid() != null ? piece.getUuid() : "";
+        int rgb = CollectionStore.parseRgb(piece.getHexcode());
+        byte type = CollectionStore.typeIndex(PieceTypeUtil.detectPieceType(piece.getPieceName()));
+
+        // FNV-1a over the uuid, then fold in rgb and type
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < uuid.length(); i++) {
+            h ^= uuid.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= ((long) rgb << 8) | (type & 0xFF);
+
+        // SplitMix64 finalizer so nearby inputs spread over all bits before summing
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
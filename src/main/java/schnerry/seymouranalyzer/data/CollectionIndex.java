@@ -0,0 +1,116 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.util.PieceTypeUtil;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indexes over the collection: rgb -> uuids, piece type -> uuids and chest location -> uuids.
+ * Maintained by {@link CollectionManager} under the same lock as the primary map, so lookups like
+ * dupe counts and exact-hex search don't need to scan every piece.
+ */
+public class CollectionIndex {
+    private final Map<Integer, Set<String>> byRgb = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byType = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> byLocation = new ConcurrentHashMap<>();
+
+    void add(ArmorPiece piece) {
+        String uuid = piece.getUuid();
+
+        int rgb = CollectionStore.parseRgb(piece.getHexcode());
+        if (rgb >= 0) {
+            byRgb.computeIfAbsent(rgb, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+        }
+
+        // A name can match more than one type keyword, index it under each (same rule as the checklist)
+        for (String type : CollectionStore.TYPE_NAMES) {
+            if (PieceTypeUtil.matchesPieceType(piece.getPieceName(), type)) {
+                byType.computeIfAbsent(type, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+            }
+        }
+
+        if (piece.getChestLocation() != null) {
+            byLocation.computeIfAbsent(locationKey(piece.getChestLocation()), k -> ConcurrentHashMap.newKeySet()).add(uuid);
+        }
+    }
+
+    void remove(ArmorPiece piece) {
+        String uuid = piece.getUuid();
+
+        int rgb = CollectionStore.parseRgb(piece.getHexcode());
+        if (rgb >= 0) {
+            removeFrom(byRgb, rgb, uuid);
+        }
+
+        for (String type : CollectionStore.TYPE_NAMES) {
+            removeFrom(byType, type, uuid);
+        }
+
+        if (piece.getChestLocation() != null) {
+            removeFrom(byLocation, locationKey(piece.getChestLocation()), uuid);
+        }
+    }
+
+    void clear() {
+        byRgb.clear();
+        byType.clear();
+        byLocation.clear();
+    }
+
+    public Set<String> getByRgb(int rgb) {
+        Set<String> uuids = byRgb.get(rgb);
+        return uuids != null ? Collections.unmodifiableSet(uuids) : Collections.emptySet();
+    }
+
+    public int countByRgb(int rgb) {
+        Set<String> uuids = byRgb.get(rgb);
+        return uuids != null ? uuids.size() : 0;
+    }
+
+    public Set<String> getByType(String pieceType) {
+        Set<String> uuids = byType.get(pieceType);
+        return uuids != null ? Collections.unmodifiableSet(uuids) : Collections.emptySet();
+    }
+
+    public Set<String> getByLocation(ArmorPiece.ChestLocation location) {
+        Set<String> uuids = byLocation.get(locationKey(location));
+        return uuids != null ? Collections.unmodifiableSet(uuids) : Collections.emptySet();
+    }
+
+    /**
+     * Number of distinct colors that appear on more than one piece
+     */
+    public int countDuplicateColors() {
+        int count = 0;
+        for (Set<String> uuids : byRgb.values()) {
+            if (uuids.size() > 1) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Number of pieces whose color appears on more than one piece
+     */
+    public int countDuplicatePieces() {
+        int count = 0;
+        for (Set<String> uuids : byRgb.values()) {
+            if (uuids.size() > 1) count += uuids.size();
+        }
+        return count;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String uuid) {
+        index.computeIfPresent(key, (k, uuids) -> {
+            uuids.remove(uuid);
+            return uuids.isEmpty() ? null : uuids;
+        });
+    }
+
+    // Same packing as BlockPos.asLong (26 bits x, 26 bits z, 12 bits y)
+    private static long locationKey(ArmorPiece.ChestLocation location) {
+        return ((long) (location.x & 0x3FFFFFF) << 38) | ((long) (location.z & 0x3FFFFFF) << 12) | (location.y & 0xFFF);
+    }
+}
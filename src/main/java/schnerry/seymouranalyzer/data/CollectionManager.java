@@ -4,219 +4,271 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import lombok.Getter;
-import net.fabricmc.loader.api.FabricLoader;
 import schnerry.seymouranalyzer.Seymouranalyzer;
-import schnerry.seymouranalyzer.SeymouranalyzerClient;
-import schnerry.seymouranalyzer.gui.GuiScaleManager;
-import schnerry.seymouranalyzer.scanner.ChestScanner;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collection of one profile (see {@link ProfileManager}).
+ * {@link #getInstance()} always returns the active profile's collection.
+ */
 public class CollectionManager {
-    private static CollectionManager INSTANCE;
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r, "CollectionSaver");
-        t.setDaemon(true);
-        return t;
-    });
 
+    // Snapshot versions are unique across profiles so screens notice a profile switch
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    // Listeners are shared by all profiles and stay registered across switches
+    private static final List<CollectionChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private final String profileName;
     private final File collectionFile;
+    private final File metaFile; // Fingerprint/size sidecar written alongside collection.json
     @Getter
     private final Map<String, ArmorPiece> collection = new ConcurrentHashMap<>();
-    private final AtomicBoolean isDirty = new AtomicBoolean(false);
-    private final AtomicBoolean isSaving = new AtomicBoolean(false);
-    private long lastSaveTime = 0;
-    private static final long SAVE_DEBOUNCE_MS = 2000; // Wait 2 seconds after last change before saving
-    private int lastCollectionSize = 0; // Track size to detect changes
-
-    private CollectionManager() {
-        File configDir = new File(FabricLoader.getInstance().getConfigDir().toFile(), "seymouranalyzer");
-        if (!configDir.exists() && !configDir.mkdirs()) {
-            Seymouranalyzer.LOGGER.error("Failed to create seymouranalyzer config directory");
-        }
-        collectionFile = new File(configDir, "collection.json");
+    @Getter
+    private final CollectionStore store = new CollectionStore(); // Columnar copy for queries
+    private final CollectionFingerprint fingerprint = new CollectionFingerprint();
+    @Getter
+    private final CollectionIndex index = new CollectionIndex();
+    @Getter
+    private final LabSpatialIndex spatialIndex = new LabSpatialIndex(); // LAB grid for ΔE radius / nearest queries
+    private final Object writeLock = new Object(); // Keeps the map, store, indexes and fingerprint in step
+    private volatile CollectionSnapshot snapshot = CollectionSnapshot.empty(this);
+    @Getter
+    private final CollectionPersister persister; // Write-behind saving, see CollectionPersister
+    private final Queue<CollectionChange> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    CollectionManager(String profileName, File profileDir) {
+        this.profileName = profileName;
+        if (!profileDir.exists() && !profileDir.mkdirs()) {
+            Seymouranalyzer.LOGGER.error("Failed to create profile directory {}", profileDir);
+        }
+        collectionFile = new File(profileDir, "collection.json");
+        metaFile = new File(profileDir, "collection.meta.json");
+        persister = new CollectionPersister(collectionFile, metaFile, this::snapshot);
         load();
     }
 
+    /**
+     * Collection of the active profile
+     */
     public static CollectionManager getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new CollectionManager();
-        }
-        return INSTANCE;
+        return ProfileManager.getInstance().getActiveCollection();
     }
 
     public void load() {
         try {
             if (collectionFile.exists()) {
-                JsonObject json = GSON.fromJson(new FileReader(collectionFile), JsonObject.class);
-
-                json.entrySet().forEach(entry -> {
-                    try {
-                        ArmorPiece piece = GSON.fromJson(entry.getValue(), ArmorPiece.class);
-                        collection.put(entry.getKey(), piece);
-                    } catch (Exception e) {
-                        Seymouranalyzer.LOGGER.warn("Failed to parse armor piece: " + entry.getKey(), e);
-                    }
-                });
+                collection.putAll(readCollectionFile(collectionFile));
 
-                Seymouranalyzer.LOGGER.info("Loaded {} armor pieces from collection", collection.size());
+                rebuildDerived();
+                checkStoredFingerprint();
+                Seymouranalyzer.LOGGER.info("Loaded {} armor pieces from collection (profile {})", collection.size(), profileName);
             }
         } catch (Exception e) {
             Seymouranalyzer.LOGGER.error("Failed to load collection", e);
         }
     }
 
-    public void save() {
-        save(false);
-    }
-
     /**
-     * Save collection to disk
-     * @param async If true, saves on background thread
+     * Parse a collection.json without building any indexes (also used for read-only profile views)
      */
-    public void save(boolean async) {
-        if (async) {
-            saveAsync();
-        } else {
-            saveSync();
+    static Map<String, ArmorPiece> readCollectionFile(File file) throws IOException {
+        Map<String, ArmorPiece> pieces = new HashMap<>();
+        try (FileReader reader = new FileReader(file)) {
+            JsonObject json = GSON.fromJson(reader, JsonObject.class);
+            if (json == null) {
+                return pieces;
+            }
+
+            json.entrySet().forEach(entry -> {
+                try {
+                    ArmorPiece piece = GSON.fromJson(entry.getValue(), ArmorPiece.class);
+                    if (piece.getUuid() == null) {
+                        piece.setUuid(entry.getKey());
+                    }
+                    piece.internStrings();
+                    pieces.put(entry.getKey(), piece);
+                } catch (Exception e) {
+                    Seymouranalyzer.LOGGER.warn("Failed to parse armor piece: " + entry.getKey(), e);
+                }
+            });
         }
+        return pieces;
     }
 
-    private void saveSync() {
-        if (isSaving.get()) {
-            Seymouranalyzer.LOGGER.warn("Save already in progress, skipping");
+    /**
+     * Compare the freshly computed fingerprint with the one saved next to the collection
+     */
+    private void checkStoredFingerprint() {
+        if (!metaFile.exists()) {
             return;
         }
+        try (FileReader reader = new FileReader(metaFile)) {
+            JsonObject meta = GSON.fromJson(reader, JsonObject.class);
+            if (meta != null && meta.has("fingerprint") && meta.get("fingerprint").getAsLong() != fingerprint.get()) {
+                Seymouranalyzer.LOGGER.info("collection.json changed outside the game since last save, caches will be rebuilt");
+            }
+        } catch (Exception e) {
+            Seymouranalyzer.LOGGER.warn("Failed to read collection metadata", e);
+        }
+    }
 
-        isSaving.set(true);
-        try {
-            JsonObject json = new JsonObject();
+    /**
+     * Content fingerprint of the collection, see {@link CollectionFingerprint}.
+     * Caches store the value they were built from and are valid while it matches.
+     */
+    public long getFingerprint() {
+        return fingerprint.get();
+    }
 
-            collection.forEach((uuid, piece) -> json.add(uuid, GSON.toJsonTree(piece)));
+    /**
+     * Consistent, immutable view of the collection as of the last change.
+     * Cheap to take (no copy); background jobs can check {@link CollectionSnapshot#isStale()} when done.
+     */
+    public CollectionSnapshot snapshot() {
+        return snapshot;
+    }
 
-            try (FileWriter writer = new FileWriter(collectionFile)) {
-                GSON.toJson(json, writer);
-            }
+    /**
+     * Increases on every change to the collection (unique across profiles)
+     */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
 
-            isDirty.set(false);
-            lastSaveTime = System.currentTimeMillis();
-            Seymouranalyzer.LOGGER.info("Saved {} armor pieces to collection", collection.size());
-        } catch (Exception e) {
-            Seymouranalyzer.LOGGER.error("Failed to save collection", e);
-        } finally {
-            isSaving.set(false);
-        }
+    public void save() {
+        save(false);
     }
 
-    private void saveAsync() {
-        if (isSaving.get()) {
-            return; // Already saving
+    /**
+     * Save collection to disk
+     * @param async If true, saves on background thread
+     */
+    public void save(boolean async) {
+        if (async) {
+            persister.flushAsync();
+        } else {
+            persister.flush(true);
         }
-
-        SAVE_EXECUTOR.submit(() -> {
-            try {
-                Thread.sleep(100); // Brief delay to batch multiple rapid changes
-                saveSync();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        });
     }
 
     /**
-     * Mark collection as dirty (needs save). Will trigger async save after debounce period.
+     * Record a change for the write-behind persister; the actual write happens on a later tick
      */
     private void markDirty() {
-        isDirty.set(true);
-        lastSaveTime = System.currentTimeMillis();
+        persister.recordChange();
     }
 
     /**
-     * Called every tick to handle auto-save and cache regeneration
+     * Called every tick to handle auto-save and change notification
      */
     public void tick() {
-        if (isDirty.get() && !isSaving.get()) {
-            long timeSinceLastChange = System.currentTimeMillis() - lastSaveTime;
-            if (timeSinceLastChange >= SAVE_DEBOUNCE_MS) {
-                saveAsync();
-            }
-        }
+        persister.tick();
 
-        // Check if collection size changed and regenerate cache if needed
-        checkAndRegenerateCache();
+        // Notify listeners (checklist cache, best sets, open screens) of this tick's changes
+        flushChanges();
     }
 
     /**
-     * Check if collection size changed and regenerate checklist cache if needed
+     * Deliver all changes queued since the last tick to the registered listeners
      */
-    private void checkAndRegenerateCache() {
-        int currentSize = collection.size();
-        if (currentSize != lastCollectionSize && currentSize > 0) {
-            // Don't regenerate during active scanning/exporting to avoid lag
-            ChestScanner scanner = SeymouranalyzerClient.getScanner();
-            if (scanner != null && (scanner.isScanningEnabled() || scanner.isExportingEnabled())) {
-                // Don't update lastCollectionSize during scanning - this way when scanning stops,
-                // the size mismatch will trigger regeneration
-                return;
-            }
+    private void flushChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
 
-            // Don't regenerate while in a mod GUI (e.g., database screen, checklist screen)
-            // to avoid lag while browsing
-            GuiScaleManager guiManager = GuiScaleManager.getInstance();
-            if (guiManager != null && guiManager.isInModGui()) {
-                // Don't update lastCollectionSize while in GUI - this way when GUI closes,
-                // the size mismatch will trigger regeneration
-                return;
-            }
+        List<CollectionChange> batch = new ArrayList<>();
+        CollectionChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            batch.add(change);
+        }
 
-            // Calculate the difference for logging
-            int sizeDiff = currentSize - lastCollectionSize;
-            lastCollectionSize = currentSize;
+        List<CollectionChange> changes = Collections.unmodifiableList(batch);
+        for (CollectionChangeListener listener : listeners) {
+            try {
+                listener.onCollectionChanged(changes);
+            } catch (Exception e) {
+                Seymouranalyzer.LOGGER.error("Collection change listener failed", e);
+            }
+        }
+    }
 
-            // Regenerate cache in background thread to avoid lag
-            new Thread(() -> {
-                try {
-                    if (sizeDiff > 0) {
-                        Seymouranalyzer.LOGGER.info("Collection size increased by {} (now {}), regenerating checklist cache...", sizeDiff, currentSize);
-                    } else {
-                        Seymouranalyzer.LOGGER.info("Collection size decreased by {} (now {}), regenerating checklist cache...", -sizeDiff, currentSize);
-                    }
-                    ChecklistCacheGenerator.generateAllCaches();
-                } catch (Exception e) {
-                    Seymouranalyzer.LOGGER.error("Failed to regenerate checklist cache", e);
-                }
-            }, "ChecklistCacheRegenerator").start();
+    public void addListener(CollectionChangeListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
         }
     }
 
+    public void removeListener(CollectionChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tell listeners the whole collection was swapped out (profile switch)
+     */
+    void announceReload() {
+        pendingChanges.add(CollectionChange.reloaded());
+    }
+
     /**
-     * Force immediate synchronous save (use when stopping scan or on shutdown)
+     * Force immediate synchronous save of all pending changes (use when stopping scan or on shutdown).
+     * Waits for a background write that is already running, then writes whatever is still pending.
      */
     public void forceSync() {
-        if (isDirty.get()) {
-            saveSync();
-        }
+        persister.flush(false);
     }
 
     public void addPiece(ArmorPiece piece) {
         if (piece.getUuid() == null) {
             piece.setUuid(UUID.randomUUID().toString());
         }
-        collection.put(piece.getUuid(), piece);
+        synchronized (writeLock) {
+            ArmorPiece previous = collection.put(piece.getUuid(), piece);
+            if (previous != null) {
+                fingerprint.remove(previous);
+                index.remove(previous);
+                spatialIndex.remove(previous);
+            }
+            PieceIdTable.getInstance().idOf(piece);
+            fingerprint.add(piece);
+            index.add(piece);
+            spatialIndex.add(piece);
+            store.upsert(piece);
+            snapshot = snapshot.with(VERSIONS.incrementAndGet(), fingerprint.get(), piece);
+            pendingChanges.add(previous != null ? CollectionChange.updated(piece) : CollectionChange.added(piece));
+        }
         markDirty(); // Don't save immediately!
     }
 
     public void removePiece(String uuid) {
-        collection.remove(uuid);
+        synchronized (writeLock) {
+            ArmorPiece removed = collection.remove(uuid);
+            if (removed == null) {
+                return;
+            }
+            store.remove(uuid);
+            index.remove(removed);
+            spatialIndex.remove(removed);
+            fingerprint.remove(removed);
+            snapshot = snapshot.without(VERSIONS.incrementAndGet(), fingerprint.get(), uuid);
+            pendingChanges.add(CollectionChange.removed(removed));
+        }
         markDirty(); // Don't save immediately!
     }
 
@@ -229,12 +281,89 @@ public class CollectionManager {
         return collection.containsKey(uuid);
     }
 
+    /**
+     * All pieces with exactly this color (hex with or without '#', any case)
+     */
+    public List<ArmorPiece> getPiecesByHex(String hex) {
+        return resolve(index.getByRgb(CollectionStore.parseRgb(hex)));
+    }
+
+    /**
+     * Number of pieces with exactly this color
+     */
+    public int countByHex(String hex) {
+        return index.countByRgb(CollectionStore.parseRgb(hex));
+    }
+
+    /**
+     * UUIDs of pieces with exactly this color
+     */
+    public Set<String> getUuidsByHex(String hex) {
+        return index.getByRgb(CollectionStore.parseRgb(hex));
+    }
+
+    /**
+     * All pieces whose name matches the piece type ("helmet", "chestplate", "leggings", "boots")
+     */
+    public List<ArmorPiece> getPiecesByType(String pieceType) {
+        return resolve(index.getByType(pieceType));
+    }
+
+    /**
+     * All pieces stored in the container at this location
+     */
+    public List<ArmorPiece> getPiecesAtLocation(ArmorPiece.ChestLocation location) {
+        return resolve(index.getByLocation(location));
+    }
+
+    private List<ArmorPiece> resolve(Set<String> uuids) {
+        List<ArmorPiece> pieces = new ArrayList<>(uuids.size());
+        for (String uuid : uuids) {
+            ArmorPiece piece = collection.get(uuid);
+            if (piece != null) {
+                pieces.add(piece);
+            }
+        }
+        return pieces;
+    }
+
     public void clear() {
-        collection.clear();
+        synchronized (writeLock) {
+            collection.clear();
+            store.clear();
+            index.clear();
+            spatialIndex.clear();
+            fingerprint.reset(collection.values());
+            snapshot = CollectionSnapshot.of(this, VERSIONS.incrementAndGet(), fingerprint.get(), collection.values());
+            pendingChanges.add(CollectionChange.cleared());
+        }
         markDirty();
         forceSync(); // Clear is important, save immediately
     }
 
+    /**
+     * Refresh the columnar store and indexes after pieces were modified in place (rebuild commands)
+     */
+    public void reindex() {
+        synchronized (writeLock) {
+            rebuildDerived();
+            pendingChanges.add(CollectionChange.reloaded());
+        }
+        markDirty();
+    }
+
+    private void rebuildDerived() {
+        PieceIdTable ids = PieceIdTable.getInstance();
+        collection.values().forEach(ids::idOf);
+        store.rebuild(collection.values());
+        index.clear();
+        collection.values().forEach(index::add);
+        spatialIndex.clear();
+        collection.values().forEach(spatialIndex::add);
+        fingerprint.reset(collection.values());
+        snapshot = CollectionSnapshot.of(this, VERSIONS.incrementAndGet(), fingerprint.get(), collection.values());
+    }
+
     public int size() {
         return collection.size();
     }
@@ -0,0 +1,212 @@
+package schnerry.seymouranalyzer.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import schnerry.seymouranalyzer.Seymouranalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind persistence for one profile's collection.
+ * Mutations only bump a change counter; a flush writes the latest {@link CollectionSnapshot} once for
+ * everything pending. A flush is triggered when the collection has been quiet for {@value #QUIET_PERIOD_MS} ms,
+ * when changes have been waiting for {@value #MAX_DELAY_MS} ms (continuous scanning) or when
+ * {@value #MAX_PENDING_CHANGES} changes are pending. Changes made while a write is running stay pending
+ * and go out with the next flush, so nothing is dropped. After a failed write the triggers wait before
+ * retrying, starting at {@value #RETRY_BASE_MS} ms and doubling up to {@value #RETRY_MAX_MS} ms.
+ */
+public class CollectionPersister {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final ExecutorService WRITE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "CollectionSaver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static final long QUIET_PERIOD_MS = 2000;
+    static final long MAX_DELAY_MS = 10000;
+    static final int MAX_PENDING_CHANGES = 500;
+    static final long RETRY_BASE_MS = 1000;
+    static final long RETRY_MAX_MS = 60000;
+
+    private final File collectionFile;
+    private final File metaFile;
+    private final Supplier<CollectionSnapshot> source;
+    private final Object flushLock = new Object(); // One write at a time, background or forced
+
+    // Every change bumps changeCount; persistedCount is the value covered by the last successful write
+    private final AtomicLong changeCount = new AtomicLong();
+    private final AtomicLong persistedCount = new AtomicLong();
+    private volatile long firstPendingAt = 0;
+    private volatile long lastChangeAt = 0;
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private volatile int consecutiveFailures = 0;
+    private volatile long retryAt = 0; // Triggers are ignored until then after a failed write
+
+    // Metrics
+    private volatile long lastFlushMillis = 0;
+    private volatile long lastFlushBytes = 0;
+    private final AtomicLong totalBytesWritten = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile int maxQueueDepth = 0;
+
+    CollectionPersister(File collectionFile, File metaFile, Supplier<CollectionSnapshot> source) {
+        this.collectionFile = collectionFile;
+        this.metaFile = metaFile;
+        this.source = source;
+    }
+
+    /**
+     * Record a mutation. Must be called after the change is visible in the snapshot.
+     */
+    void recordChange() {
+        long now = System.currentTimeMillis();
+        if (getQueueDepth() == 0) {
+            firstPendingAt = now;
+        }
+        lastChangeAt = now;
+        int depth = (int) Math.min(Integer.MAX_VALUE, changeCount.incrementAndGet() - persistedCount.get());
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * Called every tick - queues a background flush once a trigger fires
+     */
+    void tick() {
+        int depth = getQueueDepth();
+        if (depth == 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now < retryAt) {
+            return;
+        }
+        if (depth >= MAX_PENDING_CHANGES
+                || now - lastChangeAt >= QUIET_PERIOD_MS
+                || now - firstPendingAt >= MAX_DELAY_MS) {
+            flushAsync();
+        }
+    }
+
+    /**
+     * Queue a background flush; requests made while one is already queued are merged into it
+     */
+    void flushAsync() {
+        if (flushQueued.compareAndSet(false, true)) {
+            WRITE_EXECUTOR.submit(() -> {
+                flushQueued.set(false);
+                flush(false);
+            });
+        }
+    }
+
+    /**
+     * Write everything pending on the calling thread, waiting for a running background write first
+     * @param force Write even if nothing changed since the last flush
+     */
+    void flush(boolean force) {
+        synchronized (flushLock) {
+            long target = changeCount.get();
+            if (!force && target == persistedCount.get()) {
+                return;
+            }
+
+            // Snapshot taken after reading the counter, so it contains at least every counted change
+            CollectionSnapshot snapshot = source.get();
+            long start = System.nanoTime();
+            try {
+                JsonObject json = new JsonObject();
+                for (ArmorPiece piece : snapshot.values()) {
+                    json.add(piece.getUuid(), GSON.toJsonTree(piece));
+                }
+                long bytes = writeAtomically(collectionFile, GSON.toJson(json));
+
+                JsonObject meta = new JsonObject();
+                meta.addProperty("fingerprint", snapshot.getFingerprint());
+                meta.addProperty("size", snapshot.size());
+                bytes += writeAtomically(metaFile, GSON.toJson(meta));
+
+                persistedCount.set(target);
+                consecutiveFailures = 0;
+                retryAt = 0;
+                if (getQueueDepth() == 0) {
+                    firstPendingAt = 0;
+                }
+
+                lastFlushMillis = (System.nanoTime() - start) / 1_000_000;
+                lastFlushBytes = bytes;
+                totalBytesWritten.addAndGet(bytes);
+                flushCount.incrementAndGet();
+                Seymouranalyzer.LOGGER.info("Saved {} armor pieces to collection ({} KB in {} ms, {} changes still pending)",
+                    snapshot.size(), bytes / 1024, lastFlushMillis, getQueueDepth());
+            } catch (Exception e) {
+                // Changes stay pending and are retried by the next trigger once the backoff has passed
+                failedFlushes.incrementAndGet();
+                int failures = ++consecutiveFailures;
+                long backoff = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(failures - 1, 16));
+                retryAt = System.currentTimeMillis() + backoff;
+                Seymouranalyzer.LOGGER.error("Failed to save collection ({} failures in a row, retrying in {} ms)", failures, backoff, e);
+            }
+        }
+    }
+
+    private static long writeAtomically(File file, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        Files.write(temp, data);
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return data.length;
+    }
+
+    /**
+     * Number of changes not yet written to disk
+     */
+    public int getQueueDepth() {
+        return (int) Math.min(Integer.MAX_VALUE, changeCount.get() - persistedCount.get());
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    public long getLastFlushBytes() {
+        return lastFlushBytes;
+    }
+
+    public long getTotalBytesWritten() {
+        return totalBytesWritten.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+}
@@ -0,0 +1,213 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Small query engine over a {@link CollectionStore}.
+ * Filters and sort keys are written against row numbers and read the store's columns directly;
+ * every terminal operation runs under the store's read lock and materializes its result,
+ * so callers never hold on to row numbers.
+ *
+ * <pre>
+ * store.query()
+ *     .where(row -> store.tier(row) == 0)
+ *     .sortBy((a, b) -> Float.compare(store.bestDeltaE(a), store.bestDeltaE(b)))
+ *     .pieces();
+ * </pre>
+ */
+public class CollectionQuery {
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    @FunctionalInterface
+    public interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+
+    private final CollectionStore store;
+    private final List<IntPredicate> filters = new ArrayList<>();
+    private RowComparator comparator;
+    private boolean parallel = false;
+    private int limit = Integer.MAX_VALUE;
+
+    CollectionQuery(CollectionStore store) {
+        this.store = store;
+    }
+
+    public CollectionQuery where(IntPredicate filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public CollectionQuery sortBy(RowComparator comparator) {
+        this.comparator = this.comparator == null ? comparator : thenComparing(this.comparator, comparator);
+        return this;
+    }
+
+    public CollectionQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Allow the filter/sort passes to use the common fork-join pool on large collections
+     */
+    public CollectionQuery parallel() {
+        this.parallel = true;
+        return this;
+    }
+
+    public List<ArmorPiece> pieces() {
+        store.lock.readLock().lock();
+        try {
+            int[] rows = selectRows();
+            List<ArmorPiece> result = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                result.add(store.piece(row));
+            }
+            return result;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    public int count() {
+        store.lock.readLock().lock();
+        try {
+            if (filters.isEmpty()) {
+                return Math.min(limit, store.rowCount());
+            }
+            return Math.min(limit, selectRows().length);
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    public void forEach(IntConsumer action) {
+        store.lock.readLock().lock();
+        try {
+            for (int row : selectRows()) {
+                action.accept(row);
+            }
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count matching rows per bucket; rows mapped outside [0, buckets) are ignored
+     */
+    public int[] histogram(IntUnaryOperator bucketOf, int buckets) {
+        store.lock.readLock().lock();
+        try {
+            int[] counts = new int[buckets];
+            for (int row : selectRows()) {
+                int bucket = bucketOf.applyAsInt(row);
+                if (bucket >= 0 && bucket < buckets) {
+                    counts[bucket]++;
+                }
+            }
+            return counts;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count matching rows per key (e.g. rgb value for dupe detection)
+     */
+    public Map<Integer, Integer> countBy(IntUnaryOperator keyOf) {
+        store.lock.readLock().lock();
+        try {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int row : selectRows()) {
+                counts.merge(keyOf.applyAsInt(row), 1, Integer::sum);
+            }
+            return counts;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Group matching pieces by a key; rows with a null key are skipped.
+     * Groups keep the query's sort order.
+     */
+    public <K> Map<K, List<ArmorPiece>> groupBy(IntFunction<K> keyOf) {
+        store.lock.readLock().lock();
+        try {
+            Map<K, List<ArmorPiece>> groups = new LinkedHashMap<>();
+            for (int row : selectRows()) {
+                K key = keyOf.apply(row);
+                if (key != null) {
+                    groups.computeIfAbsent(key, k -> new ArrayList<>()).add(store.piece(row));
+                }
+            }
+            return groups;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    private int[] selectRows() {
+        int rowCount = store.rowCount();
+        boolean useParallel = parallel && rowCount >= PARALLEL_THRESHOLD;
+        IntPredicate filter = combinedFilter();
+
+        int[] rows;
+        if (useParallel) {
+            IntStream stream = IntStream.range(0, rowCount).parallel();
+            rows = filter != null ? stream.filter(filter).toArray() : stream.toArray();
+        } else {
+            rows = new int[rowCount];
+            int matched = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (filter == null || filter.test(row)) {
+                    rows[matched++] = row;
+                }
+            }
+            rows = matched == rowCount ? rows : Arrays.copyOf(rows, matched);
+        }
+
+        if (comparator != null && rows.length > 1) {
+            IntStream boxedSource = Arrays.stream(rows);
+            if (useParallel) {
+                boxedSource = boxedSource.parallel();
+            }
+            rows = boxedSource.boxed()
+                .sorted(comparator::compare)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        }
+
+        return rows.length > limit ? Arrays.copyOf(rows, limit) : rows;
+    }
+
+    private IntPredicate combinedFilter() {
+        if (filters.isEmpty()) return null;
+        if (filters.size() == 1) return filters.get(0);
+        IntPredicate[] all = filters.toArray(new IntPredicate[0]);
+        return row -> {
+            for (IntPredicate filter : all) {
+                if (!filter.test(row)) return false;
+            }
+            return true;
+        };
+    }
+
+    private static RowComparator thenComparing(RowComparator first, RowComparator second) {
+        return (a, b) -> {
+            int result = first.compare(a, b);
+            return result != 0 ? result : second.compare(a, b);
+        };
+    }
+}
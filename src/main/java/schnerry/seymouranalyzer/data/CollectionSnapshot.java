@@ -0,0 +1,176 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, versioned view of the collection membership.
+ * The uuid space is split into {@value #SEGMENTS} copy-on-write segments: a change copies only
+ * the segment it touches and every other segment is shared with the previous snapshot, so
+ * publishing a new version costs O(n / SEGMENTS) and taking a snapshot is a single volatile read.
+ * The pieces themselves are shared with the live collection.
+ */
+public final class CollectionSnapshot {
+    static final int SEGMENTS = 64;
+
+    private final CollectionManager owner; // Null for read-only snapshots of inactive profiles
+    private final long version;
+    private final long fingerprint;
+    private final Map<String, ArmorPiece>[] segments;
+    private final int size;
+    private final Collection<ArmorPiece> values = new Values();
+
+    private CollectionSnapshot(CollectionManager owner, long version, long fingerprint, Map<String, ArmorPiece>[] segments, int size) {
+        this.owner = owner;
+        this.version = version;
+        this.fingerprint = fingerprint;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    static CollectionSnapshot empty(CollectionManager owner) {
+        return new CollectionSnapshot(owner, 0, 0, emptySegments(), 0);
+    }
+
+    /**
+     * Build a snapshot from scratch (load, clear, reindex)
+     */
+    static CollectionSnapshot of(CollectionManager owner, long version, long fingerprint, Collection<ArmorPiece> pieces) {
+        @SuppressWarnings("unchecked")
+        Map<String, ArmorPiece>[] built = new Map[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            built[i] = new HashMap<>();
+        }
+        for (ArmorPiece piece : pieces) {
+            built[segmentOf(piece.getUuid())].put(piece.getUuid(), piece);
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            built[i] = Collections.unmodifiableMap(built[i]);
+        }
+        return new CollectionSnapshot(owner, version, fingerprint, built, pieces.size());
+    }
+
+    /**
+     * New snapshot with {@code piece} added or replaced; only its segment is copied
+     */
+    CollectionSnapshot with(long version, long fingerprint, ArmorPiece piece) {
+        int segment = segmentOf(piece.getUuid());
+        Map<String, ArmorPiece> copy = new HashMap<>(segments[segment]);
+        boolean replaced = copy.put(piece.getUuid(), piece) != null;
+        return withSegment(version, fingerprint, segment, copy, replaced ? size : size + 1);
+    }
+
+    /**
+     * New snapshot without {@code uuid}; only its segment is copied
+     */
+    CollectionSnapshot without(long version, long fingerprint, String uuid) {
+        int segment = segmentOf(uuid);
+        if (!segments[segment].containsKey(uuid)) {
+            return new CollectionSnapshot(owner, version, fingerprint, segments, size);
+        }
+        Map<String, ArmorPiece> copy = new HashMap<>(segments[segment]);
+        copy.remove(uuid);
+        return withSegment(version, fingerprint, segment, copy, size - 1);
+    }
+
+    private CollectionSnapshot withSegment(long version, long fingerprint, int segment, Map<String, ArmorPiece> replacement, int newSize) {
+        Map<String, ArmorPiece>[] shared = segments.clone();
+        shared[segment] = Collections.unmodifiableMap(replacement);
+        return new CollectionSnapshot(owner, version, fingerprint, shared, newSize);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Collection fingerprint at the time this snapshot was taken, see {@link CollectionFingerprint}
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public ArmorPiece get(String uuid) {
+        return uuid != null ? segments[segmentOf(uuid)].get(uuid) : null;
+    }
+
+    public boolean contains(String uuid) {
+        return get(uuid) != null;
+    }
+
+    /**
+     * Unmodifiable view over all pieces in this snapshot (no copy)
+     */
+    public Collection<ArmorPiece> values() {
+        return values;
+    }
+
+    public Stream<ArmorPiece> stream() {
+        return values.stream();
+    }
+
+    /**
+     * True once the collection has changed since this snapshot was taken or a different profile
+     * became active. Read-only snapshots of inactive profiles are never current.
+     */
+    public boolean isStale() {
+        return owner == null || owner != CollectionManager.getInstance() || owner.getVersion() != version;
+    }
+
+    private static int segmentOf(String uuid) {
+        int h = uuid.hashCode();
+        return (h ^ (h >>> 16)) & (SEGMENTS - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ArmorPiece>[] emptySegments() {
+        Map<String, ArmorPiece>[] empty = new Map[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            empty[i] = Collections.emptyMap();
+        }
+        return empty;
+    }
+
+    private class Values extends AbstractCollection<ArmorPiece> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<ArmorPiece> iterator() {
+            return new Iterator<>() {
+                private int segment = 0;
+                private Iterator<ArmorPiece> current = segments[0].values().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && segment < SEGMENTS - 1) {
+                        current = segments[++segment].values().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public ArmorPiece next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return current.next();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.analyzer.PatternDetector;
+import schnerry.seymouranalyzer.util.ColorMath;
+import schnerry.seymouranalyzer.util.PieceTypeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar copy of the collection kept beside the uuid -> ArmorPiece map.
+ * Each piece occupies one row across a set of primitive arrays, so filters, sorts and
+ * aggregations can run as tight loops instead of walking thousands of heap objects.
+ * Rows are swap-removed, so row numbers are only stable inside a single {@link CollectionQuery}.
+ */
+public class CollectionStore {
+    public static final String[] TYPE_NAMES = {"helmet", "chestplate", "leggings", "boots"};
+    public static final byte TYPE_UNKNOWN = -1;
+    public static final byte TIER_NONE = -1;
+    public static final int NO_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowByUuid = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private final Map<String, Integer> labelIds = new HashMap<>();
+
+    private int size = 0;
+    private ArmorPiece[] pieces = new ArmorPiece[INITIAL_CAPACITY];
+    private int[] rgb = new int[INITIAL_CAPACITY];
+    private byte[] type = new byte[INITIAL_CAPACITY];
+    private float[] labL = new float[INITIAL_CAPACITY];
+    private float[] labA = new float[INITIAL_CAPACITY];
+    private float[] labB = new float[INITIAL_CAPACITY];
+    private int[] bestTarget = new int[INITIAL_CAPACITY];
+    private float[] bestDeltaE = new float[INITIAL_CAPACITY];
+    private byte[] tier = new byte[INITIAL_CAPACITY];
+    private boolean[] fade = new boolean[INITIAL_CAPACITY];
+    private int[] pattern = new int[INITIAL_CAPACITY];
+    private int[] word = new int[INITIAL_CAPACITY];
+
+    /**
+     * Insert a piece or refresh its row if the uuid is already stored
+     */
+    public void upsert(ArmorPiece piece) {
+        if (piece == null || piece.getUuid() == null) return;
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = rowByUuid.get(piece.getUuid());
+            int row;
+            if (existing != null) {
+                row = existing;
+            } else {
+                ensureCapacity(size + 1);
+                row = size++;
+                rowByUuid.put(piece.getUuid(), row);
+            }
+            fillRow(row, piece);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String uuid) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowByUuid.remove(uuid);
+            if (row == null) return;
+
+            int last = size - 1;
+            if (row != last) {
+                moveRow(last, row);
+                rowByUuid.put(pieces[row].getUuid(), row);
+            }
+            pieces[last] = null;
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(pieces, 0, size, null);
+            rowByUuid.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop every row and rebuild from the given pieces (used after load and bulk rebuild commands)
+     */
+    public void rebuild(Collection<ArmorPiece> source) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            ensureCapacity(source.size());
+            for (ArmorPiece piece : source) {
+                upsert(piece);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CollectionQuery query() {
+        return new CollectionQuery(this);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Row accessors - only meaningful inside a CollectionQuery callback, which holds the read lock
+
+    int rowCount() {
+        return size;
+    }
+
+    public ArmorPiece piece(int row) {
+        return pieces[row];
+    }
+
+    public int rgb(int row) {
+        return rgb[row];
+    }
+
+    public byte type(int row) {
+        return type[row];
+    }
+
+    public float labL(int row) {
+        return labL[row];
+    }
+
+    public float labA(int row) {
+        return labA[row];
+    }
+
+    public float labB(int row) {
+        return labB[row];
+    }
+
+    public int bestTarget(int row) {
+        return bestTarget[row];
+    }
+
+    public float bestDeltaE(int row) {
+        return bestDeltaE[row];
+    }
+
+    public byte tier(int row) {
+        return tier[row];
+    }
+
+    public boolean isFade(int row) {
+        return fade[row];
+    }
+
+    public int pattern(int row) {
+        return pattern[row];
+    }
+
+    public int word(int row) {
+        return word[row];
+    }
+
+    /**
+     * CIE76 distance between a row and a LAB color, computed straight from the columns
+     */
+    public double deltaE(int row, ColorMath.LAB lab) {
+        double dL = labL[row] - lab.L();
+        double dA = labA[row] - lab.a();
+        double dB = labB[row] - lab.b();
+        return Math.sqrt(dL * dL + dA * dA + dB * dB);
+    }
+
+    /**
+     * Resolve a pattern/word id back to its string
+     */
+    public String label(int id) {
+        if (id == NO_ID) return null;
+        synchronized (labels) {
+            return labels.get(id);
+        }
+    }
+
+    public static byte typeIndex(String pieceType) {
+        if (pieceType == null) return TYPE_UNKNOWN;
+        for (byte i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(pieceType)) return i;
+        }
+        return TYPE_UNKNOWN;
+    }
+
+    public static int parseRgb(String hex) {
+        if (hex == null) return -1;
+        try {
+            return Integer.parseInt(hex.replace("#", ""), 16) & 0xFFFFFF;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void fillRow(int row, ArmorPiece piece) {
+        pieces[row] = piece;
+        int value = parseRgb(piece.getHexcode());
+        rgb[row] = value;
+        type[row] = typeIndex(PieceTypeUtil.detectPieceType(piece.getPieceName()));
+
+        if (value >= 0) {
+            ColorMath.LAB lab = ColorMath.hexToLab(String.format("%06X", value));
+            labL[row] = (float) lab.L();
+            labA[row] = (float) lab.a();
+            labB[row] = (float) lab.b();
+        } else {
+            labL[row] = labA[row] = labB[row] = Float.NaN;
+        }
+
+        ArmorPiece.BestMatch best = piece.getBestMatch();
+        if (best != null) {
+            bestTarget[row] = best.paletteId;
+            bestDeltaE[row] = (float) best.deltaE;
+            tier[row] = (byte) best.tier;
+            String colorName = best.getColorName();
+            fade[row] = colorName != null && ColorDatabase.getInstance().isFadeDye(colorName);
+        } else {
+            bestTarget[row] = NO_ID;
+            bestDeltaE[row] = Float.NaN;
+            tier[row] = TIER_NONE;
+            fade[row] = false;
+        }
+
+        pattern[row] = value >= 0 ? labelId(PatternDetector.getInstance().detectPattern(String.format("%06X", value))) : NO_ID;
+        word[row] = labelId(piece.getWordMatch());
+    }
+
+    private void moveRow(int from, int to) {
+        pieces[to] = pieces[from];
+        rgb[to] = rgb[from];
+        type[to] = type[from];
+        labL[to] = labL[from];
+        labA[to] = labA[from];
+        labB[to] = labB[from];
+        bestTarget[to] = bestTarget[from];
+        bestDeltaE[to] = bestDeltaE[from];
+        tier[to] = tier[from];
+        fade[to] = fade[from];
+        pattern[to] = pattern[from];
+        word[to] = word[from];
+    }
+
+    private int labelId(String label) {
+        if (label == null || label.isEmpty()) return NO_ID;
+        synchronized (labels) {
+            Integer id = labelIds.get(label);
+            if (id == null) {
+                id = labels.size();
+                labels.add(label);
+                labelIds.put(label, id);
+            }
+            return id;
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= pieces.length) return;
+        int capacity = Math.max(needed, pieces.length * 2);
+        pieces = Arrays.copyOf(pieces, capacity);
+        rgb = Arrays.copyOf(rgb, capacity);
+        type = Arrays.copyOf(type, capacity);
+        labL = Arrays.copyOf(labL, capacity);
+        labA = Arrays.copyOf(labA, capacity);
+        labB = Arrays.copyOf(labB, capacity);
+        bestTarget = Arrays.copyOf(bestTarget, capacity);
+        bestDeltaE = Arrays.copyOf(bestDeltaE, capacity);
+        tier = Arrays.copyOf(tier, capacity);
+        fade = Arrays.copyOf(fade, capacity);
+        pattern = Arrays.copyOf(pattern, capacity);
+        word = Arrays.copyOf(word, capacity);
+    }
+}
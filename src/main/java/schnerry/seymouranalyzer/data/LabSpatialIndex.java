@@ -0,0 +1,275 @@
+package schnerry.seymouranalyzer.data;
+
+import schnerry.seymouranalyzer.util.ColorMath;
+import schnerry.seymouranalyzer.util.PieceTypeUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Uniform-grid spatial index of owned pieces in CIELAB space, partitioned by piece type.
+ * Cells are {@value #CELL_SIZE} ΔE wide (the usual match threshold), so a radius-5 query only
+ * touches the 27 cells around the query color instead of every piece in the collection.
+ * Maintained incrementally by {@link CollectionManager}.
+ */
+public class LabSpatialIndex {
+    public static final double CELL_SIZE = 5.0;
+    private static final int MAX_RING = 64; // 64 * 5 ΔE covers the whole LAB gamut
+    private static final String ALL = "all";
+
+    public record Neighbor(ArmorPiece piece, double deltaE) {}
+
+    private record Entry(ArmorPiece piece, double L, double a, double b) {}
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Grid> partitions = new HashMap<>();
+
+    public LabSpatialIndex() {
+        partitions.put(ALL, new Grid());
+        for (String type : CollectionStore.TYPE_NAMES) {
+            partitions.put(type, new Grid());
+        }
+    }
+
+    void add(ArmorPiece piece) {
+        Entry entry = toEntry(piece);
+        if (entry == null) return;
+
+        lock.writeLock().lock();
+        try {
+            partitions.get(ALL).add(entry);
+            // Same type rule as the checklist: a name can match several type keywords
+            for (String type : CollectionStore.TYPE_NAMES) {
+                if (PieceTypeUtil.matchesPieceType(piece.getPieceName(), type)) {
+                    partitions.get(type).add(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ArmorPiece piece) {
+        Entry entry = toEntry(piece);
+        if (entry == null) return;
+
+        lock.writeLock().lock();
+        try {
+            for (Grid grid : partitions.values()) {
+                grid.remove(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            for (Grid grid : partitions.values()) {
+                grid.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * All pieces within ΔE {@code radius} of {@code center}, closest first
+     * @param pieceType "helmet", "chestplate", "leggings", "boots", or null for every piece
+     */
+    public List<Neighbor> withinRadius(ColorMath.LAB center, double radius, String pieceType) {
+        List<Neighbor> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Grid grid = grid(pieceType);
+            if (grid == null) return result;
+            grid.visitRadius(center, radius, (entry, deltaE) -> {
+                result.add(new Neighbor(entry.piece, deltaE));
+                return true;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::deltaE));
+        return result;
+    }
+
+    /**
+     * True if at least one piece accepted by {@code filter} lies within ΔE {@code radius} of {@code center}.
+     * Stops at the first hit.
+     */
+    public boolean anyWithin(ColorMath.LAB center, double radius, String pieceType, Predicate<ArmorPiece> filter) {
+        lock.readLock().lock();
+        try {
+            Grid grid = grid(pieceType);
+            if (grid == null) return false;
+            boolean[] found = {false};
+            grid.visitRadius(center, radius, (entry, deltaE) -> {
+                if (filter.test(entry.piece)) {
+                    found[0] = true;
+                    return false;
+                }
+                return true;
+            });
+            return found[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code k} pieces closest to {@code center}, closest first
+     */
+    public List<Neighbor> nearest(ColorMath.LAB center, int k, String pieceType) {
+        List<Neighbor> result = new ArrayList<>();
+        if (k <= 0) return result;
+
+        lock.readLock().lock();
+        try {
+            Grid grid = grid(pieceType);
+            if (grid == null || grid.size == 0) return result;
+
+            // Max-heap on deltaE holding the best k seen so far
+            PriorityQueue<Neighbor> best = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::deltaE).reversed());
+            int target = Math.min(k, grid.size);
+            int cl = cell(center.L());
+            int ca = cell(center.a());
+            int cb = cell(center.b());
+
+            for (int ring = 0; ring <= MAX_RING; ring++) {
+                grid.visitRing(cl, ca, cb, ring, entry -> {
+                    double deltaE = distance(entry, center);
+                    if (best.size() < k) {
+                        best.add(new Neighbor(entry.piece, deltaE));
+                    } else if (deltaE < best.peek().deltaE()) {
+                        best.poll();
+                        best.add(new Neighbor(entry.piece, deltaE));
+                    }
+                });
+
+                // Anything in rings further out is at least ring * CELL_SIZE away
+                if (best.size() >= target && best.peek().deltaE() <= ring * CELL_SIZE) {
+                    break;
+                }
+            }
+
+            result.addAll(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::deltaE));
+        return result;
+    }
+
+    private Grid grid(String pieceType) {
+        return partitions.get(pieceType == null ? ALL : pieceType);
+    }
+
+    private static Entry toEntry(ArmorPiece piece) {
+        if (piece.getHexcode() == null || CollectionStore.parseRgb(piece.getHexcode()) < 0) return null;
+        ColorMath.LAB lab = ColorMath.hexToLab(piece.getHexcode().replace("#", ""));
+        return new Entry(piece, lab.L(), lab.a(), lab.b());
+    }
+
+    private static double distance(Entry entry, ColorMath.LAB center) {
+        double dL = entry.L - center.L();
+        double dA = entry.a - center.a();
+        double dB = entry.b - center.b();
+        return Math.sqrt(dL * dL + dA * dA + dB * dB);
+    }
+
+    /**
+     * Grid cell of one LAB coordinate. Shared by every ΔE grid in the mod so their cells line up
+     */
+    public static int cell(double value) {
+        return (int) Math.floor(value / CELL_SIZE);
+    }
+
+    /**
+     * Packed key of a grid cell, see {@link #cell(double)}
+     */
+    public static long cellKey(int l, int a, int b) {
+        return ((long) (l & 0x1FFFFF) << 42) | ((long) (a & 0x1FFFFF) << 21) | (b & 0x1FFFFF);
+    }
+
+    @FunctionalInterface
+    private interface RadiusVisitor {
+        boolean visit(Entry entry, double deltaE); // return false to stop
+    }
+
+    private static class Grid {
+        final Map<Long, List<Entry>> cells = new HashMap<>();
+        int size = 0;
+
+        void add(Entry entry) {
+            cells.computeIfAbsent(cellKey(cell(entry.L), cell(entry.a), cell(entry.b)), k -> new ArrayList<>()).add(entry);
+            size++;
+        }
+
+        void remove(Entry entry) {
+            long key = cellKey(cell(entry.L), cell(entry.a), cell(entry.b));
+            List<Entry> bucket = cells.get(key);
+            if (bucket == null) return;
+            String uuid = entry.piece.getUuid();
+            if (bucket.removeIf(e -> e.piece == entry.piece || (uuid != null && uuid.equals(e.piece.getUuid())))) {
+                size--;
+                if (bucket.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        void clear() {
+            cells.clear();
+            size = 0;
+        }
+
+        void visitRadius(ColorMath.LAB center, double radius, RadiusVisitor visitor) {
+            int minL = cell(center.L() - radius), maxL = cell(center.L() + radius);
+            int minA = cell(center.a() - radius), maxA = cell(center.a() + radius);
+            int minB = cell(center.b() - radius), maxB = cell(center.b() + radius);
+
+            for (int l = minL; l <= maxL; l++) {
+                for (int a = minA; a <= maxA; a++) {
+                    for (int b = minB; b <= maxB; b++) {
+                        List<Entry> bucket = cells.get(cellKey(l, a, b));
+                        if (bucket == null) continue;
+                        for (Entry entry : bucket) {
+                            double deltaE = distance(entry, center);
+                            if (deltaE <= radius && !visitor.visit(entry, deltaE)) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Visit every entry in cells at Chebyshev distance exactly {@code ring} from the center cell
+         */
+        void visitRing(int cl, int ca, int cb, int ring, Consumer<Entry> visitor) {
+            for (int l = cl - ring; l <= cl + ring; l++) {
+                for (int a = ca - ring; a <= ca + ring; a++) {
+                    boolean onShell = Math.abs(l - cl) == ring || Math.abs(a - ca) == ring;
+                    // Inside the shell only the two b faces belong to this ring
+                    int step = onShell ? 1 : Math.max(1, 2 * ring);
+                    for (int b = cb - ring; b <= cb + ring; b += step) {
+                        List<Entry> bucket = cells.get(cellKey(l, a, b));
+                        if (bucket != null) {
+                            bucket.forEach(visitor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
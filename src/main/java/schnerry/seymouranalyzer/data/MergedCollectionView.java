@@ -0,0 +1,62 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only view over the collections of all profiles, see {@link ProfileManager#mergedView()}.
+ * Built from immutable snapshots, so it stays consistent while the active profile keeps changing.
+ */
+public class MergedCollectionView {
+    private final Map<String, CollectionSnapshot> snapshots;
+
+    MergedCollectionView(Map<String, CollectionSnapshot> snapshots) {
+        this.snapshots = Collections.unmodifiableMap(snapshots);
+    }
+
+    public Set<String> getProfiles() {
+        return snapshots.keySet();
+    }
+
+    public CollectionSnapshot getSnapshot(String profile) {
+        return snapshots.get(profile);
+    }
+
+    /**
+     * Total number of pieces over all profiles
+     */
+    public int size() {
+        int total = 0;
+        for (CollectionSnapshot snapshot : snapshots.values()) {
+            total += snapshot.size();
+        }
+        return total;
+    }
+
+    public void forEach(BiConsumer<String, ArmorPiece> action) {
+        snapshots.forEach((profile, snapshot) -> snapshot.values().forEach(piece -> action.accept(profile, piece)));
+    }
+
+    /**
+     * Pieces with exactly this color, per profile (profiles without a hit are left out)
+     */
+    public Map<String, List<ArmorPiece>> findByHex(String hex) {
+        int rgb = CollectionStore.parseRgb(hex);
+        Map<String, List<ArmorPiece>> result = new LinkedHashMap<>();
+        if (rgb < 0) {
+            return result;
+        }
+
+        forEach((profile, piece) -> {
+            if (CollectionStore.parseRgb(piece.getHexcode()) == rgb) {
+                result.computeIfAbsent(profile, k -> new ArrayList<>()).add(piece);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared flyweight table for palette entries (color name + target hex) and piece names.
+ * Stored matches keep a small int id instead of their own copies of the name/hex strings,
+ * so a large collection only holds each palette entry and piece name once.
+ */
+public class PaletteTable {
+    private static PaletteTable INSTANCE;
+
+    private final Map<PaletteEntry, Integer> idsByEntry = new ConcurrentHashMap<>();
+    private final List<PaletteEntry> entries = new CopyOnWriteArrayList<>();
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    public record PaletteEntry(String colorName, String targetHex) {}
+
+    private PaletteTable() {}
+
+    public static PaletteTable getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new PaletteTable();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Get the id for a palette entry, registering it on first use
+     */
+    public int idFor(String colorName, String targetHex) {
+        PaletteEntry key = new PaletteEntry(intern(colorName), intern(targetHex));
+        Integer id = idsByEntry.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (entries) {
+            id = idsByEntry.get(key);
+            if (id == null) {
+                id = entries.size();
+                entries.add(key);
+                idsByEntry.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    public PaletteEntry getEntry(int id) {
+        return entries.get(id);
+    }
+
+    public String getColorName(int id) {
+        return entries.get(id).colorName();
+    }
+
+    public String getTargetHex(int id) {
+        return entries.get(id).targetHex();
+    }
+
+    /**
+     * Return the canonical instance of a frequently repeated string (piece names, words, patterns)
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = names.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
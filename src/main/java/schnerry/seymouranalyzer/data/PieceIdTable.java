@@ -0,0 +1,89 @@
+package schnerry.seymouranalyzer.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int ids for piece uuids, assigned on first sight and stable for the rest of the session
+ * (ids of removed pieces aren't reused). Combinatorial searches work on these ids, e.g. with a
+ * {@link java.util.BitSet} of used pieces, instead of hashing and comparing uuid strings.
+ * The id is also cached on the piece itself, see {@link #idOf(ArmorPiece)}.
+ */
+public class PieceIdTable {
+    private static PieceIdTable INSTANCE;
+
+    private final Map<String, Integer> idsByUuid = new ConcurrentHashMap<>();
+    private volatile String[] uuids = new String[1024];
+    private volatile int size = 0;
+
+    private PieceIdTable() {}
+
+    public static PieceIdTable getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new PieceIdTable();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Get the id for a uuid, registering it on first use
+     */
+    public int idFor(String uuid) {
+        Integer id = idsByUuid.get(uuid);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = idsByUuid.get(uuid);
+            if (id == null) {
+                id = size;
+                if (id == uuids.length) {
+                    uuids = Arrays.copyOf(uuids, id * 2);
+                }
+                uuids[id] = uuid;
+                size = id + 1; // Publishes the uuid before the id can be handed out
+                idsByUuid.put(uuid, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Id of a piece, cached on the piece after the first lookup
+     */
+    public int idOf(ArmorPiece piece) {
+        int id = piece.getPieceId();
+        if (id < 0) {
+            id = idFor(piece.getUuid());
+            piece.setPieceId(id);
+        }
+        return id;
+    }
+
+    /**
+     * Id of a uuid without registering it, -1 if it never had one
+     */
+    public int find(String uuid) {
+        if (uuid == null) {
+            return -1;
+        }
+        Integer id = idsByUuid.get(uuid);
+        return id != null ? id : -1;
+    }
+
+    public String getUuid(int id) {
+        if (id < 0 || id >= size) {
+            return null;
+        }
+        return uuids[id];
+    }
+
+    /**
+     * Number of ids handed out so far, every id is below this
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,213 @@
+package schnerry.seymouranalyzer.data;
+
+import net.fabricmc.loader.api.FabricLoader;
+import schnerry.seymouranalyzer.Seymouranalyzer;
+import schnerry.seymouranalyzer.config.ClothConfig;
+import schnerry.seymouranalyzer.render.InfoBoxRenderer;
+import schnerry.seymouranalyzer.render.ItemSlotHighlighter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Named collection profiles (accounts, storage islands, ...).
+ * Each profile has its own collection.json, indexes, checklist cache and best sets. The "default" profile lives
+ * directly in the config folder (so existing installs keep their data), others under profiles/&lt;name&gt;/.
+ * Only the active profile is loaded; other profiles are read lazily and read-only for {@link #mergedView()}.
+ */
+public class ProfileManager {
+    public static final String DEFAULT_PROFILE = "default";
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+    private static ProfileManager INSTANCE;
+
+    private final File baseDir;
+    private final File profilesDir;
+    private volatile String activeProfile;
+    private volatile CollectionManager activeCollection;
+    private volatile ChecklistCache activeCache;
+    private volatile BestSetsCache activeBestSets;
+    // Read-only snapshots of inactive profiles, reused until their collection.json changes
+    private final Map<String, CachedSnapshot> readOnlySnapshots = new ConcurrentHashMap<>();
+
+    private record CachedSnapshot(long lastModified, CollectionSnapshot snapshot) {}
+
+    private ProfileManager() {
+        baseDir = new File(FabricLoader.getInstance().getConfigDir().toFile(), "seymouranalyzer");
+        profilesDir = new File(baseDir, "profiles");
+
+        String configured = ClothConfig.getInstance().getActiveProfile();
+        activeProfile = isValidName(configured) ? configured : DEFAULT_PROFILE;
+    }
+
+    public static ProfileManager getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new ProfileManager();
+        }
+        return INSTANCE;
+    }
+
+    public String getActiveProfile() {
+        return activeProfile;
+    }
+
+    /**
+     * Collection of the active profile, loaded on first use
+     */
+    public CollectionManager getActiveCollection() {
+        CollectionManager collection = activeCollection;
+        if (collection == null) {
+            synchronized (this) {
+                if (activeCollection == null) {
+                    activeCollection = new CollectionManager(activeProfile, getProfileDir(activeProfile));
+                }
+                collection = activeCollection;
+            }
+        }
+        return collection;
+    }
+
+    /**
+     * Checklist cache of the active profile, loaded on first use
+     */
+    public ChecklistCache getActiveChecklistCache() {
+        ChecklistCache cache = activeCache;
+        if (cache == null) {
+            synchronized (this) {
+                if (activeCache == null) {
+                    activeCache = new ChecklistCache(getProfileDir(activeProfile).toPath());
+                }
+                cache = activeCache;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Best sets cache of the active profile, loaded on first use
+     */
+    public BestSetsCache getActiveBestSetsCache() {
+        BestSetsCache cache = activeBestSets;
+        if (cache == null) {
+            synchronized (this) {
+                if (activeBestSets == null) {
+                    activeBestSets = new BestSetsCache(getProfileDir(activeProfile).toPath());
+                }
+                cache = activeBestSets;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Make another profile active, creating it if it doesn't exist yet.
+     * The current collection is saved first; the new one is loaded lazily on next access.
+     * @return false if the name is invalid or the profile is already active
+     */
+    public synchronized boolean switchTo(String name) {
+        if (!isValidName(name) || name.equals(activeProfile)) {
+            return false;
+        }
+
+        CollectionManager previous = activeCollection;
+        if (previous != null) {
+            previous.forceSync();
+        }
+
+        activeProfile = name;
+        activeCollection = null;
+        activeCache = null;
+        activeBestSets = null;
+        readOnlySnapshots.remove(name);
+
+        ClothConfig config = ClothConfig.getInstance();
+        config.setActiveProfile(name);
+        config.save();
+
+        // Drop per-collection render caches and let listeners (checklist cache, open screens) reload
+        ItemSlotHighlighter.getInstance().clearCache();
+        InfoBoxRenderer.forceCloseHoveredDataCache();
+        getActiveCollection().announceReload();
+
+        Seymouranalyzer.LOGGER.info("Switched to collection profile {}", name);
+        return true;
+    }
+
+    /**
+     * All existing profiles, default first
+     */
+    public List<String> listProfiles() {
+        List<String> profiles = new ArrayList<>();
+        profiles.add(DEFAULT_PROFILE);
+
+        File[] dirs = profilesDir.listFiles(File::isDirectory);
+        if (dirs != null) {
+            List<String> named = new ArrayList<>();
+            for (File dir : dirs) {
+                if (isValidName(dir.getName()) && !dir.getName().equals(DEFAULT_PROFILE)) {
+                    named.add(dir.getName());
+                }
+            }
+            Collections.sort(named);
+            profiles.addAll(named);
+        }
+
+        // A freshly created profile has no folder until its first save
+        if (!profiles.contains(activeProfile)) {
+            profiles.add(activeProfile);
+        }
+        return profiles;
+    }
+
+    /**
+     * Read-only view across every profile. The active profile contributes its live snapshot,
+     * the others are read from disk on first use and cached until their file changes.
+     */
+    public MergedCollectionView mergedView() {
+        Map<String, CollectionSnapshot> snapshots = new LinkedHashMap<>();
+        String active = activeProfile;
+        for (String name : listProfiles()) {
+            snapshots.put(name, name.equals(active) ? getActiveCollection().snapshot() : readOnlySnapshot(name));
+        }
+        return new MergedCollectionView(snapshots);
+    }
+
+    private CollectionSnapshot readOnlySnapshot(String name) {
+        File file = new File(getProfileDir(name), "collection.json");
+        long lastModified = file.lastModified(); // 0 if missing
+
+        CachedSnapshot cached = readOnlySnapshots.get(name);
+        if (cached != null && cached.lastModified() == lastModified) {
+            return cached.snapshot();
+        }
+
+        Map<String, ArmorPiece> pieces = Collections.emptyMap();
+        if (file.exists()) {
+            try {
+                pieces = CollectionManager.readCollectionFile(file);
+            } catch (IOException e) {
+                Seymouranalyzer.LOGGER.warn("Failed to read collection of profile {}", name, e);
+            }
+        }
+
+        CollectionFingerprint fingerprint = new CollectionFingerprint();
+        fingerprint.reset(pieces.values());
+        CollectionSnapshot snapshot = CollectionSnapshot.of(null, 0, fingerprint.get(), pieces.values());
+        readOnlySnapshots.put(name, new CachedSnapshot(lastModified, snapshot));
+        return snapshot;
+    }
+
+    private File getProfileDir(String name) {
+        return name.equals(DEFAULT_PROFILE) ? baseDir : new File(profilesDir, name);
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME_PATTERN.matcher(name).matches();
+    }
+}
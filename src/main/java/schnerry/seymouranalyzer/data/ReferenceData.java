@@ -0,0 +1,458 @@
+package schnerry.seymouranalyzer.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.fabricmc.loader.api.FabricLoader;
+import schnerry.seymouranalyzer.Seymouranalyzer;
+import schnerry.seymouranalyzer.config.ClothConfig;
+import schnerry.seymouranalyzer.util.ColorMath;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable model of the bundled reference data (colors.json and checklistdata.json) plus the
+ * user's custom colors, shared by the analyzer, the checklist screen and the cache generator.
+ * The bundled data is read once, from the binary table compiled at build time or from JSON when the user
+ * placed override files in the config folder; {@link #reload()} rebuilds the model when custom colors change
+ * and publishes it with a single volatile write, so readers holding {@link #get()} never see a mix.
+ */
+public final class ReferenceData {
+    private static final String COLORS_FILE = "/data/seymouranalyzer/colors.json";
+    private static final String CHECKLIST_FILE = "/data/seymouranalyzer/checklistdata.json";
+    private static final String STAGE_SEPARATOR = " - Stage ";
+    // Written by the compileReferenceData task in build.gradle.kts, keep both in sync
+    private static final String COMPILED_FILE = "/data/seymouranalyzer/referencedata.bin";
+    private static final int COMPILED_MAGIC = 0x53524431; // "SRD1"
+    private static final byte COMPILED_VERSION = 1;
+
+    private static volatile ReferenceData current;
+    private static volatile Bundled bundled; // Parsed resources, reused by every reload
+
+    /**
+     * A named target color with its LAB value precomputed
+     */
+    public record PaletteColor(String name, String hex, int rgb, ColorMath.LAB lab) {
+        static PaletteColor of(String name, String hex) {
+            String upper = hex.toUpperCase();
+            return new PaletteColor(name, upper, CollectionStore.parseRgb(upper), ColorMath.hexToLab(upper));
+        }
+    }
+
+    /**
+     * All stages of one fade dye, in stage order ("Aurora - Stage 1", "Aurora - Stage 2", ...)
+     */
+    public record FadeCurve(String name, List<PaletteColor> stages) {}
+
+    /**
+     * One checklist row
+     * @param pieceMask Needed piece types, bit i set for {@code CollectionStore.TYPE_NAMES[i]}
+     */
+    public record Stage(String name, String hex, int rgb, ColorMath.LAB lab, int pieceMask) {
+        public boolean needs(String pieceType) {
+            int index = CollectionStore.typeIndex(pieceType);
+            return index >= 0 && index < CollectionStore.TYPE_NAMES.length && (pieceMask & (1 << index)) != 0;
+        }
+
+        public List<String> pieces() {
+            List<String> pieces = new ArrayList<>(CollectionStore.TYPE_NAMES.length);
+            for (int i = 0; i < CollectionStore.TYPE_NAMES.length; i++) {
+                if ((pieceMask & (1 << i)) != 0) {
+                    pieces.add(CollectionStore.TYPE_NAMES[i]);
+                }
+            }
+            return pieces;
+        }
+
+        static Stage of(String name, String hex, int pieceMask) {
+            String upper = hex.toUpperCase();
+            return new Stage(name, upper, CollectionStore.parseRgb(upper), ColorMath.hexToLab(upper), pieceMask);
+        }
+    }
+
+    public record Category(String name, boolean fade, List<Stage> stages) {}
+
+    static final int ALL_PIECES = (1 << CollectionStore.TYPE_NAMES.length) - 1;
+
+    private record Bundled(
+        Map<String, PaletteColor> targetColors,
+        Map<String, PaletteColor> fadeDyes,
+        Map<String, FadeCurve> fadeCurves,
+        Map<String, Category> checklistCategories,
+        Map<String, Category> fadeCategories,
+        List<String> normalPageOrder) {}
+
+    private final Bundled data;
+    private final Map<String, PaletteColor> customColors;
+    private final Category customCategory;
+    // name -> hex views for callers that only need the hex
+    private final Map<String, String> targetHexes;
+    private final Map<String, String> fadeHexes;
+    private final Map<String, String> customHexes;
+
+    private ReferenceData(Bundled data, Map<String, String> custom) {
+        this.data = data;
+
+        Map<String, PaletteColor> customs = new LinkedHashMap<>();
+        List<Stage> customStages = new ArrayList<>();
+        for (Map.Entry<String, String> entry : custom.entrySet()) {
+            if (CollectionStore.parseRgb(entry.getValue()) < 0) continue;
+            customs.put(entry.getKey(), PaletteColor.of(entry.getKey(), entry.getValue()));
+            // Custom colors apply to all piece types
+            customStages.add(Stage.of(entry.getKey(), entry.getValue(), ALL_PIECES));
+        }
+        this.customColors = Collections.unmodifiableMap(customs);
+        this.customCategory = new Category("Custom", false, List.copyOf(customStages));
+
+        this.targetHexes = hexView(data.targetColors());
+        this.fadeHexes = hexView(data.fadeDyes());
+        this.customHexes = hexView(customColors);
+    }
+
+    /**
+     * Current model, built on first use
+     */
+    public static ReferenceData get() {
+        ReferenceData model = current;
+        if (model == null) {
+            synchronized (ReferenceData.class) {
+                if (current == null) {
+                    current = new ReferenceData(bundled(), new LinkedHashMap<>(ClothConfig.getInstance().getCustomColors()));
+                }
+                model = current;
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Rebuild the model from the current custom colors and publish it. Call after changing custom colors.
+     */
+    public static synchronized ReferenceData reload() {
+        ReferenceData model = new ReferenceData(bundled(), new LinkedHashMap<>(ClothConfig.getInstance().getCustomColors()));
+        current = model;
+        Seymouranalyzer.LOGGER.info("Reloaded reference data ({} custom colors)", model.customColors.size());
+        return model;
+    }
+
+    // Palette
+
+    public Map<String, PaletteColor> getTargetColors() {
+        return data.targetColors();
+    }
+
+    public Map<String, PaletteColor> getFadeDyes() {
+        return data.fadeDyes();
+    }
+
+    public Map<String, PaletteColor> getCustomColors() {
+        return customColors;
+    }
+
+    public Map<String, String> getTargetHexes() {
+        return targetHexes;
+    }
+
+    public Map<String, String> getFadeHexes() {
+        return fadeHexes;
+    }
+
+    public Map<String, String> getCustomHexes() {
+        return customHexes;
+    }
+
+    public Map<String, FadeCurve> getFadeCurves() {
+        return data.fadeCurves();
+    }
+
+    /**
+     * True for fade dye stage names like "Aurora - Stage 3"
+     */
+    public boolean isFadeDye(String colorName) {
+        int separator = colorName.indexOf(STAGE_SEPARATOR);
+        return separator > 0 && data.fadeCurves().containsKey(colorName.substring(0, separator));
+    }
+
+    // Checklist
+
+    /**
+     * Categories from checklistdata.json, in file order
+     */
+    public Map<String, Category> getChecklistCategories() {
+        return data.checklistCategories();
+    }
+
+    /**
+     * One category per fade dye, every stage needing all four pieces
+     */
+    public Map<String, Category> getFadeCategories() {
+        return data.fadeCategories();
+    }
+
+    /**
+     * The user's custom colors as a checklist category (empty if there are none)
+     */
+    public Category getCustomCategory() {
+        return customCategory;
+    }
+
+    public List<String> getNormalPageOrder() {
+        return data.normalPageOrder();
+    }
+
+    private static Map<String, String> hexView(Map<String, PaletteColor> colors) {
+        Map<String, String> hexes = new LinkedHashMap<>();
+        colors.forEach((name, color) -> hexes.put(name, color.hex()));
+        return Collections.unmodifiableMap(hexes);
+    }
+
+    private static Bundled bundled() {
+        Bundled result = bundled;
+        if (result == null) {
+            synchronized (ReferenceData.class) {
+                if (bundled == null) {
+                    bundled = loadBundled();
+                }
+                result = bundled;
+            }
+        }
+        return result;
+    }
+
+    private static Bundled loadBundled() {
+        // User overrides are plain JSON; otherwise use the table compiled at build time
+        boolean overridden = Files.exists(overrideFile(COLORS_FILE)) || Files.exists(overrideFile(CHECKLIST_FILE));
+        if (!overridden) {
+            Bundled compiled = readCompiled();
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        return parseJson();
+    }
+
+    /**
+     * Read the binary table produced by the compileReferenceData Gradle task.
+     * Everything is precomputed (LAB, piece masks, fade groupings), so this is a bulk read and a few allocations.
+     * @return null if the resource is missing or from an unknown format version
+     */
+    private static Bundled readCompiled() {
+        try (InputStream stream = Seymouranalyzer.class.getResourceAsStream(COMPILED_FILE)) {
+            if (stream == null) {
+                Seymouranalyzer.LOGGER.warn("No precompiled reference data found, parsing JSON");
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream.readAllBytes()));
+            if (in.readInt() != COMPILED_MAGIC || in.readByte() != COMPILED_VERSION) {
+                Seymouranalyzer.LOGGER.warn("Precompiled reference data has an unknown format, parsing JSON");
+                return null;
+            }
+
+            Map<String, PaletteColor> targetColors = new LinkedHashMap<>();
+            int targets = in.readInt();
+            for (int i = 0; i < targets; i++) {
+                PaletteColor color = readColor(in);
+                targetColors.put(color.name(), color);
+            }
+
+            List<PaletteColor> fadeList = new ArrayList<>();
+            Map<String, PaletteColor> fadeDyes = new LinkedHashMap<>();
+            int fades = in.readInt();
+            for (int i = 0; i < fades; i++) {
+                PaletteColor color = readColor(in);
+                fadeList.add(color);
+                fadeDyes.put(color.name(), color);
+            }
+
+            // Fade groupings reference the fade dye table by index
+            Map<String, List<PaletteColor>> fadeStages = new LinkedHashMap<>();
+            int curves = in.readInt();
+            for (int i = 0; i < curves; i++) {
+                String name = in.readUTF();
+                int stages = in.readInt();
+                List<PaletteColor> curve = new ArrayList<>(stages);
+                for (int s = 0; s < stages; s++) {
+                    curve.add(fadeList.get(in.readInt()));
+                }
+                fadeStages.put(name, curve);
+            }
+
+            Map<String, Category> checklistCategories = new LinkedHashMap<>();
+            int categories = in.readInt();
+            for (int i = 0; i < categories; i++) {
+                String name = in.readUTF();
+                int stages = in.readInt();
+                List<Stage> stageList = new ArrayList<>(stages);
+                for (int s = 0; s < stages; s++) {
+                    String stageName = in.readUTF();
+                    String hex = in.readUTF();
+                    int rgb = in.readInt();
+                    int mask = in.readByte();
+                    ColorMath.LAB lab = new ColorMath.LAB(in.readDouble(), in.readDouble(), in.readDouble());
+                    stageList.add(new Stage(stageName, hex, rgb, lab, mask));
+                }
+                checklistCategories.put(name, new Category(name, false, List.copyOf(stageList)));
+            }
+
+            List<String> normalPageOrder = new ArrayList<>();
+            int pages = in.readInt();
+            for (int i = 0; i < pages; i++) {
+                normalPageOrder.add(in.readUTF());
+            }
+
+            return assemble(targetColors, fadeDyes, fadeStages, checklistCategories, normalPageOrder);
+        } catch (Exception e) {
+            Seymouranalyzer.LOGGER.warn("Failed to read precompiled reference data, parsing JSON", e);
+            return null;
+        }
+    }
+
+    private static PaletteColor readColor(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        String hex = in.readUTF();
+        int rgb = in.readInt();
+        return new PaletteColor(name, hex, rgb, new ColorMath.LAB(in.readDouble(), in.readDouble(), in.readDouble()));
+    }
+
+    /**
+     * Parse colors.json and checklistdata.json (user overrides first, then the bundled files)
+     */
+    private static Bundled parseJson() {
+        Map<String, PaletteColor> targetColors = new LinkedHashMap<>();
+        Map<String, PaletteColor> fadeDyes = new LinkedHashMap<>();
+        Map<String, List<PaletteColor>> fadeStages = new LinkedHashMap<>();
+        Map<String, Category> checklistCategories = new LinkedHashMap<>();
+        List<String> normalPageOrder = new ArrayList<>();
+
+        JsonObject colors = readJson(COLORS_FILE);
+        if (colors != null) {
+            if (colors.has("TARGET_COLORS")) {
+                for (Map.Entry<String, JsonElement> entry : colors.getAsJsonObject("TARGET_COLORS").entrySet()) {
+                    targetColors.put(entry.getKey(), PaletteColor.of(entry.getKey(), entry.getValue().getAsString()));
+                }
+            }
+
+            if (colors.has("FADE_DYES")) {
+                // Stages keep their file order, cached checklist results are keyed by stage index
+                for (Map.Entry<String, JsonElement> entry : colors.getAsJsonObject("FADE_DYES").entrySet()) {
+                    PaletteColor color = PaletteColor.of(entry.getKey(), entry.getValue().getAsString());
+                    fadeDyes.put(entry.getKey(), color);
+
+                    String[] parts = entry.getKey().split(STAGE_SEPARATOR);
+                    if (parts.length == 2) {
+                        fadeStages.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(color);
+                    }
+                }
+            } else {
+                Seymouranalyzer.LOGGER.warn("No FADE_DYES section found in colors.json");
+            }
+        }
+
+        JsonObject checklist = readJson(CHECKLIST_FILE);
+        if (checklist != null) {
+            JsonObject categories = checklist.getAsJsonObject("categories");
+            if (categories != null) {
+                for (String categoryName : categories.keySet()) {
+                    List<Stage> stages = new ArrayList<>();
+                    for (JsonElement element : categories.getAsJsonArray(categoryName)) {
+                        JsonObject obj = element.getAsJsonObject();
+                        stages.add(Stage.of(obj.get("name").getAsString(), obj.get("hex").getAsString(), pieceMask(obj.getAsJsonArray("pieces"))));
+                    }
+                    checklistCategories.put(categoryName, new Category(categoryName, false, List.copyOf(stages)));
+                }
+            }
+
+            JsonArray pageOrder = checklist.getAsJsonArray("normalPageOrder");
+            if (pageOrder != null) {
+                for (JsonElement element : pageOrder) {
+                    normalPageOrder.add(element.getAsString());
+                }
+            }
+        }
+
+        return assemble(targetColors, fadeDyes, fadeStages, checklistCategories, normalPageOrder);
+    }
+
+    private static Bundled assemble(Map<String, PaletteColor> targetColors,
+                                    Map<String, PaletteColor> fadeDyes,
+                                    Map<String, List<PaletteColor>> fadeStages,
+                                    Map<String, Category> checklistCategories,
+                                    List<String> normalPageOrder) {
+        Map<String, FadeCurve> fadeCurves = new LinkedHashMap<>();
+        Map<String, Category> fadeCategories = new LinkedHashMap<>();
+        fadeStages.forEach((name, stages) -> {
+            fadeCurves.put(name, new FadeCurve(name, List.copyOf(stages)));
+            List<Stage> checklistStages = new ArrayList<>();
+            for (PaletteColor stage : stages) {
+                checklistStages.add(new Stage(stage.name(), stage.hex(), stage.rgb(), stage.lab(), ALL_PIECES));
+            }
+            fadeCategories.put(name, new Category(name, true, List.copyOf(checklistStages)));
+        });
+
+        Seymouranalyzer.LOGGER.info("Loaded {} target colors, {} fade dyes ({} stages) and {} checklist categories",
+            targetColors.size(), fadeCurves.size(), fadeDyes.size(), checklistCategories.size());
+
+        return new Bundled(
+            Collections.unmodifiableMap(targetColors),
+            Collections.unmodifiableMap(fadeDyes),
+            Collections.unmodifiableMap(fadeCurves),
+            Collections.unmodifiableMap(checklistCategories),
+            Collections.unmodifiableMap(fadeCategories),
+            List.copyOf(normalPageOrder));
+    }
+
+    private static int pieceMask(JsonArray pieces) {
+        int mask = 0;
+        if (pieces == null) return mask;
+        for (JsonElement element : pieces) {
+            int index = CollectionStore.typeIndex(element.getAsString());
+            if (index >= 0 && index < CollectionStore.TYPE_NAMES.length) {
+                mask |= 1 << index;
+            }
+        }
+        return mask;
+    }
+
+    private static Path overrideFile(String resource) {
+        String fileName = resource.substring(resource.lastIndexOf('/') + 1);
+        return FabricLoader.getInstance().getConfigDir().resolve("seymouranalyzer").resolve(fileName);
+    }
+
+    private static JsonObject readJson(String resource) {
+        Path override = overrideFile(resource);
+        if (Files.exists(override)) {
+            try (Reader reader = Files.newBufferedReader(override, StandardCharsets.UTF_8)) {
+                Seymouranalyzer.LOGGER.info("Using reference data override {}", override);
+                return new Gson().fromJson(reader, JsonObject.class);
+            } catch (Exception e) {
+                Seymouranalyzer.LOGGER.error("Failed to load override {}, using bundled data", override, e);
+            }
+        }
+
+        try (InputStream stream = Seymouranalyzer.class.getResourceAsStream(resource)) {
+            if (stream == null) {
+                Seymouranalyzer.LOGGER.error("Could not load {}", resource);
+                return null;
+            }
+            return new Gson().fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), JsonObject.class);
+        } catch (Exception e) {
+            Seymouranalyzer.LOGGER.error("Failed to load {}", resource, e);
+            return null;
+        }
+    }
+}
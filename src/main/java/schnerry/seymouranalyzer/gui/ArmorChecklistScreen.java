@@ -1,19 +1,15 @@
 package schnerry.seymouranalyzer.gui;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import org.jspecify.annotations.NonNull;
 import schnerry.seymouranalyzer.Seymouranalyzer;
-import schnerry.seymouranalyzer.config.ClothConfig;
 import schnerry.seymouranalyzer.data.ArmorPiece;
+import schnerry.seymouranalyzer.data.ChecklistAssignmentEngine;
 import schnerry.seymouranalyzer.data.ChecklistCache;
+import schnerry.seymouranalyzer.data.ChecklistCacheGenerator;
 import schnerry.seymouranalyzer.data.CollectionManager;
+import schnerry.seymouranalyzer.data.ReferenceData;
 import schnerry.seymouranalyzer.util.ColorMath;
-import schnerry.seymouranalyzer.util.PieceTypeUtil;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
@@ -42,6 +38,15 @@ public class ArmorChecklistScreen extends ModScreen {
     // Scrollbar dragging
     private boolean isDraggingScrollbar = false;
 
+    // Full cache generations and single category results already reflected on screen
+    private long seenGenerations = ChecklistCacheGenerator.getCompletedGenerations();
+    private long seenPublished = ChecklistAssignmentEngine.getInstance().getPublishedCount();
+
+    // Page whose matches are being solved in the background
+    private String requestedCategory = null;
+    private boolean requestedFade = false;
+    private boolean requestFailed = false; // Solving the current page failed, see ChecklistAssignmentEngine#hasFailed
+
     // Context menu
     private ContextMenu contextMenu = null;
 
@@ -61,6 +66,7 @@ public class ArmorChecklistScreen extends ModScreen {
         String hex;
         String name;
         List<String> pieces; // helmet, chestplate, leggings, boots
+        ReferenceData.Stage stage;
 
         // Completion tracking
         Map<String, ArmorPiece> foundPieces = new HashMap<>();
@@ -71,11 +77,7 @@ public class ArmorChecklistScreen extends ModScreen {
         super(Component.literal("Armor Set Checklist"), parent);
         loadChecklistData();
 
-        // Check if cache needs invalidation (collection size changed)
-        ChecklistCache cache = ChecklistCache.getInstance();
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
-        cache.checkAndInvalidate(collection.size());
-
+        // Cached categories are validated one by one in calculateOptimalMatches
         calculateOptimalMatches();
     }
 
@@ -88,48 +90,20 @@ public class ArmorChecklistScreen extends ModScreen {
 
     private void loadChecklistData() {
         try {
-            InputStream inputStream = Seymouranalyzer.class.getResourceAsStream("/data/seymouranalyzer/checklistdata.json");
-
-            if (inputStream == null) {
-                Seymouranalyzer.LOGGER.error("Could not load checklistdata.json");
-                return;
-            }
-
-            Gson gson = new Gson();
-            JsonObject root = gson.fromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), JsonObject.class);
+            ReferenceData data = ReferenceData.get();
 
             // Load categories
-            JsonObject categoriesJson = root.getAsJsonObject("categories");
-            for (String categoryName : categoriesJson.keySet()) {
-                List<ChecklistEntry> entries = new ArrayList<>();
-                var array = categoriesJson.getAsJsonArray(categoryName);
-
-                for (var element : array) {
-                    var obj = element.getAsJsonObject();
-                    ChecklistEntry entry = new ChecklistEntry();
-                    entry.hex = obj.get("hex").getAsString().toUpperCase();
-                    entry.name = obj.get("name").getAsString();
-                    entry.pieces = new ArrayList<>();
-
-                    var piecesArray = obj.getAsJsonArray("pieces");
-                    for (var pieceElement : piecesArray) {
-                        entry.pieces.add(pieceElement.getAsString());
-                    }
-
-                    entries.add(entry);
-                }
-
-                categories.put(categoryName, entries);
+            for (ReferenceData.Category category : data.getChecklistCategories().values()) {
+                categories.put(category.name(), toEntries(category));
             }
 
             // Load page order
-            var pageOrderArray = root.getAsJsonArray("normalPageOrder");
-            for (var element : pageOrderArray) {
-                normalPageOrder.add(element.getAsString());
-            }
+            normalPageOrder.addAll(data.getNormalPageOrder());
 
-            // Load fade dyes from colors.json
-            loadFadeDyes();
+            // Load fade dyes
+            for (ReferenceData.Category category : data.getFadeCategories().values()) {
+                categories.put(category.name(), toEntries(category));
+            }
 
             // Load custom colors from config
             loadCustomColors();
@@ -155,112 +129,44 @@ public class ArmorChecklistScreen extends ModScreen {
         }
     }
 
-    private void loadFadeDyes() {
-        try {
-            InputStream inputStream = Seymouranalyzer.class.getResourceAsStream("/data/seymouranalyzer/colors.json");
-
-            if (inputStream == null) {
-                Seymouranalyzer.LOGGER.error("Could not load colors.json for fade dyes");
-                return;
-            }
-
-            Gson gson = new Gson();
-            JsonObject root = gson.fromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), JsonObject.class);
-            JsonObject fadeDyes = root.getAsJsonObject("FADE_DYES");
-
-            if (fadeDyes == null) {
-                Seymouranalyzer.LOGGER.warn("No FADE_DYES section found in colors.json");
-                return;
-            }
-
-            // Group stages by fade dye name
-            Map<String, List<ChecklistEntry>> fadeDyeCategories = new LinkedHashMap<>();
-
-            for (String key : fadeDyes.keySet()) {
-                // Parse "Aurora - Stage 1" format
-                String[] parts = key.split(" - Stage ");
-                if (parts.length == 2) {
-                    String dyeName = parts[0];
-                    String hexValue = fadeDyes.get(key).getAsString().toUpperCase();
-
-                    fadeDyeCategories.putIfAbsent(dyeName, new ArrayList<>());
-
-                    ChecklistEntry entry = new ChecklistEntry();
-                    entry.hex = hexValue;
-                    entry.name = key;
-                    entry.pieces = new ArrayList<>();
-                    entry.pieces.add("helmet");
-                    entry.pieces.add("chestplate");
-                    entry.pieces.add("leggings");
-                    entry.pieces.add("boots");
-
-                    fadeDyeCategories.get(dyeName).add(entry);
-                }
-            }
-
-            // Add all fade dye categories to main categories map
-            categories.putAll(fadeDyeCategories);
-
-            Seymouranalyzer.LOGGER.info("Loaded {} fade dye categories with {} total stages",
-                fadeDyeCategories.size(),
-                fadeDyeCategories.values().stream().mapToInt(List::size).sum());
-
-        } catch (Exception e) {
-            Seymouranalyzer.LOGGER.error("Error loading fade dyes", e);
-        }
+    private static List<ChecklistEntry> toEntries(ReferenceData.Category category) {
+        List<ChecklistEntry> entries = new ArrayList<>();
+        for (ReferenceData.Stage stage : category.stages()) {
+            ChecklistEntry entry = new ChecklistEntry();
+            entry.hex = stage.hex();
+            entry.name = stage.name();
+            entry.pieces = stage.pieces();
+            entry.stage = stage;
+            entries.add(entry);
+        }
+        return entries;
     }
 
     private void loadCustomColors() {
-        try {
-            ClothConfig config = ClothConfig.getInstance();
-            Map<String, String> customColors = config.getCustomColors();
-
-            // Remove existing Custom category if it exists (for reload support)
-            categories.remove("Custom");
-            normalPageOrder.remove("Custom");
-
-            if (customColors.isEmpty()) {
-                Seymouranalyzer.LOGGER.info("No custom colors to load for checklist");
-                return;
-            }
-
-            List<ChecklistEntry> customEntries = new ArrayList<>();
-
-            for (Map.Entry<String, String> colorEntry : customColors.entrySet()) {
-                String colorName = colorEntry.getKey();
-                String hexValue = colorEntry.getValue().toUpperCase();
-
-                ChecklistEntry entry = new ChecklistEntry();
-                entry.hex = hexValue;
-                entry.name = colorName;
-                entry.pieces = new ArrayList<>();
-                // Custom colors apply to all piece types
-                entry.pieces.add("helmet");
-                entry.pieces.add("chestplate");
-                entry.pieces.add("leggings");
-                entry.pieces.add("boots");
-
-                customEntries.add(entry);
-            }
-
-            // Add Custom category to categories map
-            categories.put("Custom", customEntries);
+        // Remove existing Custom category if it exists (for reload support)
+        categories.remove("Custom");
+        normalPageOrder.remove("Custom");
 
-            // Add "Custom" to the normal page order (at the end, before "Other" if it exists, or just at the end)
-            int otherIndex = normalPageOrder.indexOf("Other Armor");
-            if (otherIndex != -1) {
-                // Insert before "Other Armor"
-                normalPageOrder.add(otherIndex, "Custom");
-            } else {
-                // Add at the end
-                normalPageOrder.add("Custom");
-            }
+        ReferenceData.Category customCategory = ReferenceData.get().getCustomCategory();
+        if (customCategory.stages().isEmpty()) {
+            Seymouranalyzer.LOGGER.info("No custom colors to load for checklist");
+            return;
+        }
 
-            Seymouranalyzer.LOGGER.info("Loaded {} custom colors for checklist", customEntries.size());
+        // Add Custom category to categories map
+        categories.put("Custom", toEntries(customCategory));
 
-        } catch (Exception e) {
-            Seymouranalyzer.LOGGER.error("Error loading custom colors for checklist", e);
+        // Add "Custom" to the normal page order (at the end, before "Other" if it exists, or just at the end)
+        int otherIndex = normalPageOrder.indexOf("Other Armor");
+        if (otherIndex != -1) {
+            // Insert before "Other Armor"
+            normalPageOrder.add(otherIndex, "Custom");
+        } else {
+            // Add at the end
+            normalPageOrder.add("Custom");
         }
+
+        Seymouranalyzer.LOGGER.info("Loaded {} custom colors for checklist", customCategory.stages().size());
     }
 
     /**
@@ -286,240 +192,82 @@ public class ArmorChecklistScreen extends ModScreen {
         }
     }
 
+    /**
+     * Show the current page's matches from the checklist cache. If the cache isn't current for this page,
+     * whatever is cached stays visible and the page is solved in the background by {@link ChecklistAssignmentEngine};
+     * render picks up the result once it is published.
+     */
     private void calculateOptimalMatches() {
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
-        ChecklistCache cache = ChecklistCache.getInstance();
-
         if (pageOrder.isEmpty() || currentPage >= pageOrder.size()) return;
 
         String currentCategory = pageOrder.get(currentPage);
         List<ChecklistEntry> entries = categories.get(currentCategory);
         if (entries == null) return;
 
-        // Check if we have cached data for this category
-        ChecklistCache.CategoryCache categoryCache;
-        if (fadeDyeMode) {
-            categoryCache = cache.getFadeDyeOptimalCache(currentCategory);
-        } else {
-            categoryCache = cache.getNormalColorCache(currentCategory);
+        ChecklistAssignmentEngine engine = ChecklistAssignmentEngine.getInstance();
+
+        // Only one page is solved at a time, drop the request of the page we came from
+        if (requestedCategory != null && (requestedFade != fadeDyeMode || !requestedCategory.equals(currentCategory))) {
+            engine.cancel(requestedFade, requestedCategory);
+            requestedCategory = null;
         }
 
-        // If we have valid cached data, use it
-        if (categoryCache != null && categoryCache.matchesByIndex != null) {
-            // Validate that cached hex values match current entries
-            boolean cacheValid = true;
-            for (int i = 0; i < entries.size(); i++) {
-                ChecklistEntry entry = entries.get(i);
-                ChecklistCache.StageMatches stageMatches = categoryCache.matchesByIndex.get(i);
-                if (stageMatches != null && stageMatches.stageHex != null) {
-                    // Compare hex values (case-insensitive)
-                    if (!stageMatches.stageHex.equalsIgnoreCase(entry.hex)) {
-                        Seymouranalyzer.LOGGER.info("Cache invalidated: hex mismatch for stage {}, cached={}, current={}",
-                            i, stageMatches.stageHex, entry.hex);
-                        cacheValid = false;
-                        break;
-                    }
-                }
-            }
+        List<ReferenceData.Stage> stages = entries.stream().map(entry -> entry.stage).toList();
+        ChecklistCache.CategoryCache categoryCache = engine.getCurrent(fadeDyeMode, currentCategory, stages);
 
-            if (cacheValid) {
-                Seymouranalyzer.LOGGER.info("Using cached matches for category: {}", currentCategory);
-
-                // Restore matches from cache
-                for (int i = 0; i < entries.size(); i++) {
-                    ChecklistEntry entry = entries.get(i);
-                    entry.foundPieces.clear();
-                    entry.foundPieceUuids.clear();
-
-                    ChecklistCache.StageMatches stageMatches = categoryCache.matchesByIndex.get(i);
-                    if (stageMatches != null && stageMatches.calculated) {
-                    // Restore each piece match
-                    if (stageMatches.helmet != null) {
-                        ArmorPiece piece = collection.get(stageMatches.helmet.uuid);
-                        if (piece != null) {
-                            entry.foundPieces.put("helmet", piece);
-                            entry.foundPieceUuids.put("helmet", stageMatches.helmet.uuid);
-                        }
-                    }
-                    if (stageMatches.chestplate != null) {
-                        ArmorPiece piece = collection.get(stageMatches.chestplate.uuid);
-                        if (piece != null) {
-                            entry.foundPieces.put("chestplate", piece);
-                            entry.foundPieceUuids.put("chestplate", stageMatches.chestplate.uuid);
-                        }
-                    }
-                    if (stageMatches.leggings != null) {
-                        ArmorPiece piece = collection.get(stageMatches.leggings.uuid);
-                        if (piece != null) {
-                            entry.foundPieces.put("leggings", piece);
-                            entry.foundPieceUuids.put("leggings", stageMatches.leggings.uuid);
-                        }
-                    }
-                    if (stageMatches.boots != null) {
-                        ArmorPiece piece = collection.get(stageMatches.boots.uuid);
-                        if (piece != null) {
-                            entry.foundPieces.put("boots", piece);
-                            entry.foundPieceUuids.put("boots", stageMatches.boots.uuid);
-                        }
-                    }
-                }
+        if (categoryCache == null) {
+            // Keep showing the previous result for these stages until the new one is published (or forever if solving failed)
+            ChecklistCache cache = ChecklistCache.getInstance();
+            ChecklistCache.CategoryCache previous = fadeDyeMode
+                ? cache.getFadeDyeOptimalCache(currentCategory)
+                : cache.getNormalColorCache(currentCategory);
+            if (previous != null && previous.stageHash != ChecklistAssignmentEngine.stageHash(stages)) {
+                previous = null;
             }
+            applyMatches(entries, previous);
 
-                return; // Cache hit, no need to recalculate
-            } else {
-                // Cache invalid, clear it for this category
-                if (fadeDyeMode) {
-                    cache.getFadeDyeOptimalCache().remove(currentCategory);
-                } else {
-                    cache.getNormalColorCache().remove(currentCategory);
-                }
-                Seymouranalyzer.LOGGER.info("Cache cleared for category {} due to hex value changes", currentCategory);
+            // A failed solve is only retried once the collection or the stages change, not on every frame
+            requestFailed = engine.hasFailed(fadeDyeMode, currentCategory, stages);
+            if (requestFailed) {
+                requestedCategory = null;
+                return;
             }
-        }
 
-        // No cache - calculate optimal matches
-        Seymouranalyzer.LOGGER.info("Calculating optimal matches for category: {}", currentCategory);
+            engine.request(fadeDyeMode, currentCategory, stages);
+            requestedCategory = currentCategory;
+            requestedFade = fadeDyeMode;
+            return;
+        }
 
-        // Create new category cache
-        categoryCache = new ChecklistCache.CategoryCache();
-        categoryCache.category = currentCategory;
-        categoryCache.isCalculating = true;
+        applyMatches(entries, categoryCache);
+        requestedCategory = null;
+        requestFailed = false;
+    }
 
-        // For each piece type, build a list of all candidates across all stages
+    /**
+     * Restore found pieces from a cached category, or clear them if {@code categoryCache} is null
+     */
+    private void applyMatches(List<ChecklistEntry> entries, ChecklistCache.CategoryCache categoryCache) {
+        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
         String[] pieceTypes = {"helmet", "chestplate", "leggings", "boots"};
 
-        for (String pieceType : pieceTypes) {
-            List<CandidateMatch> candidates = new ArrayList<>();
-
-            // Build candidate list for ALL entries (not just those that need this piece type)
-            for (int stageIdx = 0; stageIdx < entries.size(); stageIdx++) {
-                ChecklistEntry entry = entries.get(stageIdx);
-
-                // Find all matching pieces for this stage and piece type
-                for (Map.Entry<String, ArmorPiece> collectionEntry : collection.entrySet()) {
-                    String uuid = collectionEntry.getKey();
-                    ArmorPiece piece = collectionEntry.getValue();
-                    if (PieceTypeUtil.matchesPieceType(piece.getPieceName(), pieceType)) {
-                        double deltaE = ColorMath.calculateDeltaE(entry.hex, piece.getHexcode());
-                        if (deltaE <= 5.0) {
-                            // Mark if this piece is actually needed for this entry
-                            boolean isNeeded = entry.pieces.contains(pieceType);
-                            candidates.add(new CandidateMatch(stageIdx, uuid, piece, deltaE, isNeeded));
-                        }
-                    }
-                }
-            }
-
-            // Sort candidates: first by priority (needed pieces first), then by deltaE
-            candidates.sort((a, b) -> {
-                if (a.isNeeded != b.isNeeded) {
-                    return a.isNeeded ? -1 : 1; // Needed pieces first
-                }
-                return Double.compare(a.deltaE, b.deltaE); // Then by quality
-            });
-
-            // Greedy assignment: assign each piece to the best available stage
-            Set<String> usedPieces = new HashSet<>();
-            Set<Integer> assignedStages = new HashSet<>();
-
-            for (CandidateMatch candidate : candidates) {
-                String uuid = candidate.uuid;
-
-                if (!usedPieces.contains(uuid) && !assignedStages.contains(candidate.stageIndex)) {
-                    // Assign this piece to this stage
-                    ChecklistEntry targetEntry = entries.get(candidate.stageIndex);
-                    targetEntry.foundPieces.put(pieceType, candidate.piece);
-                    targetEntry.foundPieceUuids.put(pieceType, uuid);
-                    usedPieces.add(uuid);
-                    assignedStages.add(candidate.stageIndex);
-                }
-            }
-        }
-
-        // Save to cache
         for (int i = 0; i < entries.size(); i++) {
             ChecklistEntry entry = entries.get(i);
-            ChecklistCache.StageMatches stageMatches = new ChecklistCache.StageMatches();
-            stageMatches.stageHex = entry.hex;
-            stageMatches.calculated = true;
-
-            // Save each piece match with actual UUID
-            ArmorPiece helmet = entry.foundPieces.get("helmet");
-            if (helmet != null) {
-                String uuid = entry.foundPieceUuids.get("helmet");
-                stageMatches.helmet = new ChecklistCache.MatchInfo(
-                    helmet.getPieceName(),
-                    helmet.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, helmet.getHexcode()),
-                    uuid
-                );
-            }
-
-            ArmorPiece chestplate = entry.foundPieces.get("chestplate");
-            if (chestplate != null) {
-                String uuid = entry.foundPieceUuids.get("chestplate");
-                stageMatches.chestplate = new ChecklistCache.MatchInfo(
-                    chestplate.getPieceName(),
-                    chestplate.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, chestplate.getHexcode()),
-                    uuid
-                );
-            }
+            entry.foundPieces.clear();
+            entry.foundPieceUuids.clear();
 
-            ArmorPiece leggings = entry.foundPieces.get("leggings");
-            if (leggings != null) {
-                String uuid = entry.foundPieceUuids.get("leggings");
-                stageMatches.leggings = new ChecklistCache.MatchInfo(
-                    leggings.getPieceName(),
-                    leggings.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, leggings.getHexcode()),
-                    uuid
-                );
-            }
+            ChecklistCache.StageMatches stageMatches = categoryCache != null ? categoryCache.matchesByIndex.get(i) : null;
+            if (stageMatches == null || !stageMatches.calculated) continue;
 
-            ArmorPiece boots = entry.foundPieces.get("boots");
-            if (boots != null) {
-                String uuid = entry.foundPieceUuids.get("boots");
-                stageMatches.boots = new ChecklistCache.MatchInfo(
-                    boots.getPieceName(),
-                    boots.getHexcode(),
-                    ColorMath.calculateDeltaE(entry.hex, boots.getHexcode()),
-                    uuid
-                );
+            for (String pieceType : pieceTypes) {
+                ChecklistCache.MatchInfo match = stageMatches.getMatch(pieceType);
+                if (match == null) continue;
+                ArmorPiece piece = collection.get(match.uuid);
+                if (piece != null) {
+                    entry.foundPieces.put(pieceType, piece);
+                    entry.foundPieceUuids.put(pieceType, match.uuid);
+                }
             }
-
-            categoryCache.matchesByIndex.put(i, stageMatches);
-        }
-
-        categoryCache.isCalculating = false;
-
-        // Store in cache system
-        if (fadeDyeMode) {
-            cache.setFadeDyeOptimalCache(currentCategory, categoryCache);
-        } else {
-            cache.setNormalColorCache(currentCategory, categoryCache);
-        }
-
-        // Save to disk
-        cache.save();
-
-        Seymouranalyzer.LOGGER.info("Cached optimal matches for category: {}", currentCategory);
-    }
-
-    // Helper class for optimal matching
-    private static class CandidateMatch {
-        int stageIndex;
-        String uuid;
-        ArmorPiece piece;
-        double deltaE;
-        boolean isNeeded; // True if this piece type is actually needed for this stage
-
-        CandidateMatch(int stageIndex, String uuid, ArmorPiece piece, double deltaE, boolean isNeeded) {
-            this.stageIndex = stageIndex;
-            this.uuid = uuid;
-            this.piece = piece;
-            this.deltaE = deltaE;
-            this.isNeeded = isNeeded;
         }
     }
 
@@ -710,6 +458,24 @@ public class ArmorChecklistScreen extends ModScreen {
         int pageInfoWidth = this.font.width(pageInfo);
         context.drawString(this.font, pageInfo, this.width / 2 - pageInfoWidth / 2, 30, 0xFFFFFFFF);
 
+        // Background cache generation progress; pick up the new results once it finishes
+        if (ChecklistCacheGenerator.isGenerating()) {
+            String progress = "§7Updating cache... §e" + Math.round(ChecklistCacheGenerator.getProgress() * 100) + "%";
+            context.drawString(this.font, progress, this.width - this.font.width(progress) - 10, 10, 0xFFFFFFFF);
+        } else if (ChecklistAssignmentEngine.getInstance().isPending(fadeDyeMode, currentCategory)) {
+            String calculating = "§7Calculating matches...";
+            context.drawString(this.font, calculating, this.width - this.font.width(calculating) - 10, 10, 0xFFFFFFFF);
+        } else if (requestedCategory != null // Finished, failed, or dropped because the collection changed meanwhile
+                || ChecklistCacheGenerator.getCompletedGenerations() != seenGenerations
+                || ChecklistAssignmentEngine.getInstance().getPublishedCount() != seenPublished) {
+            seenGenerations = ChecklistCacheGenerator.getCompletedGenerations();
+            seenPublished = ChecklistAssignmentEngine.getInstance().getPublishedCount();
+            calculateOptimalMatches();
+        } else if (requestFailed) {
+            String failed = "§cFailed to calculate matches";
+            context.drawString(this.font, failed, this.width - this.font.width(failed) - 10, 10, 0xFFFFFFFF);
+        }
+
         // Draw checklist entries
         List<ChecklistEntry> entries = categories.get(currentCategory);
         if (entries != null) {
@@ -1191,6 +957,10 @@ public class ArmorChecklistScreen extends ModScreen {
 
     @Override
     public void onClose() {
+        if (requestedCategory != null) {
+            ChecklistAssignmentEngine.getInstance().cancel(requestedFade, requestedCategory);
+            requestedCategory = null;
+        }
         if (this.minecraft != null) {
             this.minecraft.setScreen(parent);
         }
@@ -1,80 +1,206 @@
 package schnerry.seymouranalyzer.gui;
 
 import org.jspecify.annotations.NonNull;
+import schnerry.seymouranalyzer.config.ClothConfig;
 import schnerry.seymouranalyzer.data.ArmorPiece;
+import schnerry.seymouranalyzer.data.BestSetsCache;
 import schnerry.seymouranalyzer.data.CollectionManager;
+import schnerry.seymouranalyzer.data.CollectionSnapshot;
+import schnerry.seymouranalyzer.data.LabSpatialIndex;
+import schnerry.seymouranalyzer.data.PieceIdTable;
 import schnerry.seymouranalyzer.util.ColorMath;
 import schnerry.seymouranalyzer.util.PieceTypeUtil;
+import schnerry.seymouranalyzer.util.SetPackingSolver;
+import schnerry.seymouranalyzer.util.SetScoring;
 
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.components.EditBox;
 import net.minecraft.client.gui.screens.Screen;
+import net.minecraft.client.input.CharacterEvent;
+import net.minecraft.client.input.KeyEvent;
 import net.minecraft.client.input.MouseButtonEvent;
 import net.minecraft.network.chat.Component;
 
 /**
- * Best Sets GUI - finds the truly optimal best matching 4-piece armor sets
+ * Best Sets GUI - finds the best matching armor sets: full 4-piece sets or 3p sets (chestplate, leggings, boots),
+ * optionally anchored to a target color, scored by a {@link SetScoring}
  * <p>
  * Algorithm:
- * 1. Generates ALL valid 4-piece combinations (where all pairwise ΔE ≤ 5.0)
- * 2. Sorts all combinations by average ΔE (best to worst)
- * 3. Greedily selects non-overlapping sets from the sorted list
+ * 1. Generates ALL valid combinations (all pairwise ΔE ≤ 5.0, or with a target every piece within ΔE 5.0 of it),
+ *    keeping the best ones in bounded heaps
+ * 2. Sorts the kept combinations by score (best to worst)
+ * 3. Greedily selects non-overlapping sets from the sorted list, searching again past the kept ones if needed
+ * 4. In optimal mode, improves on the greedy pick with {@link SetPackingSolver} (most sets, then lowest total score)
  * <p>
- * This guarantees the best possible sets based on average ΔE,
- * with each piece used only once across all selected sets.
+ * Each piece is used only once across all selected sets.
+ * <p>
+ * Results are stored per profile in {@link BestSetsCache} and reused until the collection changes.
  */
 public class BestSetsScreen extends ModScreen {
-    private List<ArmorSet> bestSets = new ArrayList<>();
-    private boolean isCalculating = false;
-    private int calculationProgress = 0;
+    // Written by the search threads (partial results too), read while rendering
+    private volatile List<ArmorSet> bestSets = new ArrayList<>();
+    private volatile boolean partialResults = false; // bestSets is an intermediate result of a running or cancelled search
+    private volatile boolean isCalculating = false;
+    private volatile int calculationProgress = 0;
+    private volatile AtomicBoolean searchCancelled; // Cancel flag of the running search, null when idle
+    private volatile long lastPublish;
+    private volatile String statusMessage = null; // Shown instead of the instructions, e.g. why nothing was calculated
     private int scrollOffset = 0;
     private ContextMenu contextMenu = null;
+    private EditBox targetField;
+    private String targetInput = ClothConfig.getInstance().getBestSetsTarget(); // Kept across widget rebuilds
 
-    // Static cache to persist results across GUI opens/closes
-    private static List<ArmorSet> cachedBestSets = null;
-    private static int cachedCollectionSize = -1;
-    private static long cacheTimestamp = 0;
+    private boolean refreshOnInit = false; // Stored sets are outdated, recalculate once the screen is shown
 
     private static final int MAX_SETS = 100;
     private static final double MAX_DELTA_E = 5.0;
+    private static final long OPTIMAL_TIME_BUDGET_MS = 3000; // Optimal selection returns its best packing so far after this
+    private static final int TOP_SETS_PER_PASS = MAX_SETS * 50; // Combinations kept per search pass (and per worker)
+    private static final int ROOTS_PER_CHUNK = 8;
+    private static final int SEARCH_WAVES = 8; // Partial results can be published between waves of the first pass
+    private static final long PUBLISH_INTERVAL_MS = 500;
+
+    // Own pool so the search doesn't compete with parallel streams on the common pool; parallel streams
+    // started from inside the search run here too
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("BestSetsSearch-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        },
+        null, false);
+    // Lower score first, piece ids break ties so a search pass can continue exactly where the previous one stopped
+    private static final Comparator<ArmorSet> SET_ORDER = Comparator.<ArmorSet>comparingDouble(set -> set.score)
+        .thenComparing((a, b) -> Arrays.compare(a.ids, b.ids));
+
+    // Where each piece type is drawn in a row: color box grid position, info column and label
+    private static final List<String> LAYOUT_TYPES = List.of("helmet", "chestplate", "leggings", "boots");
+    private static final String[] LAYOUT_LABELS = {"Helmet", "Chest", "Legs", "Boots"};
+    private static final String[] LAYOUT_LETTERS = {"H", "C", "L", "B"};
     private static final int ROW_HEIGHT = 80;
     private static final int START_Y = 90;
-    private static final long CACHE_VALIDITY_MS = 300000; // 5 minutes
 
     public BestSetsScreen(Screen parent) {
         super(Component.literal("Best Matching Sets"), parent);
 
-        // Load from cache if valid
-        int currentSize = CollectionManager.getInstance().getCollection().size();
-        long currentTime = System.currentTimeMillis();
+        // Load the stored result (persisted per profile, survives restarts)
+        CollectionManager collection = CollectionManager.getInstance();
+        BestSetsCache.Result stored = BestSetsCache.getInstance().get();
+        SearchMode mode = SearchMode.current();
+        String params = mode.params();
+        if (stored != null && stored.params().equals(params)) {
+            bestSets = resolveSets(stored, collection.snapshot(), mode);
+            if (stored.isValidFor(params, collection.getFingerprint())) {
+                System.out.println("[Best Sets] Loaded " + bestSets.size() + " sets from cache");
+            } else {
+                // Collection changed since - show the old sets (minus removed pieces) while recalculating
+                System.out.println("[Best Sets] Collection changed since last calculation, recalculating in background");
+                refreshOnInit = true;
+            }
+        }
+    }
 
-        if (cachedBestSets != null &&
-            cachedCollectionSize == currentSize &&
-            (currentTime - cacheTimestamp) < CACHE_VALIDITY_MS) {
-            bestSets = new ArrayList<>(cachedBestSets);
-            System.out.println("[Best Sets] Loaded " + bestSets.size() + " sets from cache");
+    /**
+     * Stored sets whose pieces are all still in the collection
+     */
+    private static List<ArmorSet> resolveSets(BestSetsCache.Result stored, CollectionSnapshot snapshot, SearchMode mode) {
+        List<ArmorSet> sets = new ArrayList<>();
+        for (String[] uuids : stored.sets()) {
+            if (uuids.length != mode.shape().types.length) continue;
+            ArmorPiece[] pieces = new ArmorPiece[uuids.length];
+            for (int i = 0; i < uuids.length; i++) {
+                pieces[i] = snapshot.get(uuids[i]);
+            }
+            if (Arrays.asList(pieces).contains(null)) continue;
+            sets.add(ArmorSet.of(mode, pieces));
         }
+        return sets;
     }
 
     @Override
     protected void init() {
         super.init();
 
-        // Calculate button - updates text based on isCalculating state
+        // Calculate button - turns into a cancel button while calculating
         Button calculateButton = Button.builder(
-            Component.literal(isCalculating ? "§7Calculating..." : "§aCalculate Best Sets"),
+            Component.literal(isCalculating ? "§cCancel Calculation" : "§aCalculate Best Sets"),
             button -> {
-                if (!isCalculating) {
+                if (isCalculating) {
+                    cancelCalculation();
+                } else {
                     calculateBestSets();
                 }
             })
             .bounds(this.width / 2 - 75, 40, 150, 25)
             .build();
-        calculateButton.active = !isCalculating; // Disable button while calculating
         this.addRenderableWidget(calculateButton);
+
+        // Selection mode toggle, next to the calculate button
+        ClothConfig config = ClothConfig.getInstance();
+        String modeLabel = config.isBestSetsOptimalSelection() ? "Mode: §aOptimal" : "Mode: §eFast";
+        Button modeButton = Button.builder(Component.literal(modeLabel),
+            button -> {
+                config.setBestSetsOptimalSelection(!config.isBestSetsOptimalSelection());
+                config.save();
+                calculateBestSets();
+            })
+            .bounds(this.width / 2 + 85, 40, 100, 25)
+            .build();
+        modeButton.active = !isCalculating;
+        this.addRenderableWidget(modeButton);
+
+        // Set shape and scoring, left of the calculate button
+        SetShape shape = SetShape.fromId(config.getBestSetsShape());
+        Button shapeButton = Button.builder(Component.literal("Sets: §b" + shape.label),
+            button -> {
+                SetShape[] shapes = SetShape.values();
+                config.setBestSetsShape(shapes[(shape.ordinal() + 1) % shapes.length].id);
+                config.save();
+                calculateBestSets();
+            })
+            .bounds(this.width / 2 - 295, 40, 100, 25)
+            .build();
+        shapeButton.active = !isCalculating;
+        this.addRenderableWidget(shapeButton);
+
+        SetScoring.Builtin scoring = SetScoring.Builtin.fromId(config.getBestSetsScoring());
+        Button scoringButton = Button.builder(Component.literal("Score: §b" + scoring.label()),
+            button -> {
+                SetScoring.Builtin[] scorings = SetScoring.Builtin.values();
+                config.setBestSetsScoring(scorings[(scoring.ordinal() + 1) % scorings.length].id());
+                config.save();
+                calculateBestSets();
+            })
+            .bounds(this.width / 2 - 185, 40, 100, 25)
+            .build();
+        scoringButton.active = !isCalculating;
+        this.addRenderableWidget(scoringButton);
+
+        // Optional target color, sets are anchored to it (every piece within ΔE 5 of it)
+        targetField = new EditBox(this.font, this.width / 2 + 195, 42, 80, 20, Component.literal("Target"));
+        targetField.setMaxLength(7);
+        targetField.setHint(Component.literal("Target hex..."));
+        targetField.setValue(targetInput);
+        targetField.setResponder(text -> targetInput = text);
+        targetField.setEditable(!isCalculating);
+        this.addRenderableWidget(targetField);
+
+        if (refreshOnInit) {
+            refreshOnInit = false;
+            if (!isCalculating) {
+                calculateBestSets();
+            }
+        }
     }
 
     @Override
@@ -112,33 +238,47 @@ public class BestSetsScreen extends ModScreen {
             context.drawString(this.font, percentText, progressBarX + (progressBarWidth - percentWidth) / 2, progressBarY + 10, 0xFFFFFFFF);
         }
 
+        String status = statusMessage;
+        if (status != null && !isCalculating) {
+            context.drawString(this.font, status, this.width / 2 - this.font.width(status) / 2, 70, 0xFFFFFFFF);
+        }
+
         // Draw sets or instructions
-        if (bestSets.isEmpty() && !isCalculating) {
+        List<ArmorSet> sets = bestSets;
+        if (sets.isEmpty() && !isCalculating) {
             String line1 = "§7Click button to calculate best matching sets";
-            String line2 = "§7This will find 4-piece sets with lowest color difference";
+            String line2 = "§7This will find " + SetShape.fromId(ClothConfig.getInstance().getBestSetsShape()).description +
+                " sets with lowest color difference";
             String line3 = "§7Each piece is used only ONCE across all sets";
 
             context.drawString(this.font, line1, this.width / 2 - this.font.width(line1) / 2, 100, 0xFF888888);
             context.drawString(this.font, line2, this.width / 2 - this.font.width(line2) / 2, 115, 0xFF888888);
             context.drawString(this.font, line3, this.width / 2 - this.font.width(line3) / 2, 130, 0xFF888888);
-        } else if (!bestSets.isEmpty()) {
-            String setsInfo = "§7Top " + bestSets.size() + " sets (ΔE ≤ " + MAX_DELTA_E + ") - Each piece used once";
+        } else if (!sets.isEmpty()) {
+            ArmorSet first = sets.getFirst();
+            String limit = first.mode.anchored() ? "ΔE ≤ " + MAX_DELTA_E + " to #" + first.mode.targetHex() : "ΔE ≤ " + MAX_DELTA_E;
+            String setsInfo = "§7Top " + sets.size() + " " + first.mode.shape().description + " sets (" + limit + ", by " +
+                first.mode.scoring().label() + ") - Each piece used once";
+            if (partialResults) {
+                setsInfo += isCalculating ? " §e(best so far)" : " §e(cancelled, incomplete)";
+            }
             context.drawString(this.font, setsInfo, 20, START_Y - 10, 0xFF888888);
 
             // Draw visible sets
             int maxVisible = 5;
-            int visibleCount = Math.min(maxVisible, bestSets.size() - scrollOffset);
+            scrollOffset = Math.min(scrollOffset, Math.max(0, sets.size() - maxVisible)); // Partial results can shrink
+            int visibleCount = Math.min(maxVisible, sets.size() - scrollOffset);
 
             for (int i = 0; i < visibleCount; i++) {
-                ArmorSet set = bestSets.get(scrollOffset + i);
+                ArmorSet set = sets.get(scrollOffset + i);
                 int rowY = START_Y + (i * ROW_HEIGHT);
                 drawSetRow(context, set, rowY, scrollOffset + i + 1, mouseX, mouseY);
             }
 
             // Scroll info
-            if (bestSets.size() > maxVisible) {
-                String scrollText = "§7(" + (scrollOffset + 1) + "-" + Math.min(scrollOffset + maxVisible, bestSets.size()) +
-                                   " of " + bestSets.size() + ") §eScroll for more";
+            if (sets.size() > maxVisible) {
+                String scrollText = "§7(" + (scrollOffset + 1) + "-" + Math.min(scrollOffset + maxVisible, sets.size()) +
+                                   " of " + sets.size() + ") §eScroll for more";
                 context.drawString(this.font, scrollText, 20, START_Y + (maxVisible * ROW_HEIGHT) + 10, 0xFF888888);
             }
         }
@@ -153,25 +293,20 @@ public class BestSetsScreen extends ModScreen {
         // Rank
         context.drawString(this.font, "§e#" + rank, 20, rowY, 0xFFFFFFFF);
 
-        // Color squares (2x2 grid)
+        // Color squares (2x2 grid, a helmet's square stays empty for 3p sets)
         int boxX = 20;
         int boxY = rowY + 15;
         int boxSize = 24;
 
-        ColorMath.RGB helmetRgb = ColorMath.hexToRgb(set.helmet.getHexcode());
-        ColorMath.RGB chestRgb = ColorMath.hexToRgb(set.chestplate.getHexcode());
-        ColorMath.RGB legsRgb = ColorMath.hexToRgb(set.leggings.getHexcode());
-        ColorMath.RGB bootsRgb = ColorMath.hexToRgb(set.boots.getHexcode());
-
-        // Draw color boxes
-        context.fill(boxX, boxY, boxX + boxSize, boxY + boxSize,
-            0xFF000000 | (helmetRgb.r() << 16) | (helmetRgb.g() << 8) | helmetRgb.b());
-        context.fill(boxX + boxSize, boxY, boxX + boxSize * 2, boxY + boxSize,
-            0xFF000000 | (chestRgb.r() << 16) | (chestRgb.g() << 8) | chestRgb.b());
-        context.fill(boxX, boxY + boxSize, boxX + boxSize, boxY + boxSize * 2,
-            0xFF000000 | (legsRgb.r() << 16) | (legsRgb.g() << 8) | legsRgb.b());
-        context.fill(boxX + boxSize, boxY + boxSize, boxX + boxSize * 2, boxY + boxSize * 2,
-            0xFF000000 | (bootsRgb.r() << 16) | (bootsRgb.g() << 8) | bootsRgb.b());
+        for (int slot = 0; slot < LAYOUT_TYPES.size(); slot++) {
+            ArmorPiece piece = set.piece(LAYOUT_TYPES.get(slot));
+            int x = boxX + (slot % 2) * boxSize;
+            int y = boxY + (slot / 2) * boxSize;
+            if (piece != null) {
+                ColorMath.RGB rgb = ColorMath.hexToRgb(piece.getHexcode());
+                context.fill(x, y, x + boxSize, y + boxSize, 0xFF000000 | (rgb.r() << 16) | (rgb.g() << 8) | rgb.b());
+            }
+        }
 
         // Border around 2x2 grid
         int totalBoxSize = boxSize * 2;
@@ -181,24 +316,20 @@ public class BestSetsScreen extends ModScreen {
         context.fill(boxX + totalBoxSize, boxY, boxX + totalBoxSize + 1, boxY + totalBoxSize, 0xFFFFFFFF);
 
         // Labels on boxes
-        context.drawString(this.font, "§8H", boxX + 3, boxY + 5, 0xFFFFFFFF);
-        context.drawString(this.font, "§8C", boxX + boxSize + 3, boxY + 5, 0xFFFFFFFF);
-        context.drawString(this.font, "§8L", boxX + 3, boxY + boxSize + 5, 0xFFFFFFFF);
-        context.drawString(this.font, "§8B", boxX + boxSize + 3, boxY + boxSize + 5, 0xFFFFFFFF);
-
-        // Piece info (left side)
-        context.drawString(this.font, "§7Helmet: §f" + set.helmet.getPieceName(), 80, rowY, 0xFFFFFFFF);
-        context.drawString(this.font, "§8  #" + set.helmet.getHexcode().toUpperCase(), 80, rowY + 12, 0xFFFFFFFF);
-
-        context.drawString(this.font, "§7Chest: §f" + set.chestplate.getPieceName(), 80, rowY + 24, 0xFFFFFFFF);
-        context.drawString(this.font, "§8  #" + set.chestplate.getHexcode().toUpperCase(), 80, rowY + 36, 0xFFFFFFFF);
-
-        // Piece info (middle)
-        context.drawString(this.font, "§7Legs: §f" + set.leggings.getPieceName(), 420, rowY, 0xFFFFFFFF);
-        context.drawString(this.font, "§8  #" + set.leggings.getHexcode().toUpperCase(), 420, rowY + 12, 0xFFFFFFFF);
+        for (int slot = 0; slot < LAYOUT_TYPES.size(); slot++) {
+            if (set.piece(LAYOUT_TYPES.get(slot)) == null) continue;
+            context.drawString(this.font, "§8" + LAYOUT_LETTERS[slot], boxX + (slot % 2) * boxSize + 3, boxY + (slot / 2) * boxSize + 5, 0xFFFFFFFF);
+        }
 
-        context.drawString(this.font, "§7Boots: §f" + set.boots.getPieceName(), 420, rowY + 24, 0xFFFFFFFF);
-        context.drawString(this.font, "§8  #" + set.boots.getHexcode().toUpperCase(), 420, rowY + 36, 0xFFFFFFFF);
+        // Piece info (helmet and chest on the left, legs and boots in the middle)
+        for (int slot = 0; slot < LAYOUT_TYPES.size(); slot++) {
+            ArmorPiece piece = set.piece(LAYOUT_TYPES.get(slot));
+            if (piece == null) continue;
+            int x = infoX(slot);
+            int y = infoY(slot, rowY);
+            context.drawString(this.font, "§7" + LAYOUT_LABELS[slot] + ": §f" + piece.getPieceName(), x, y, 0xFFFFFFFF);
+            context.drawString(this.font, "§8  #" + piece.getHexcode().toUpperCase(), x, y + 12, 0xFFFFFFFF);
+        }
 
         // Statistics (right side)
         String avgColor = set.avgDeltaE <= 1.0 ? "§a" : (set.avgDeltaE <= 2.0 ? "§e" : "§6");
@@ -206,11 +337,22 @@ public class BestSetsScreen extends ModScreen {
         context.drawString(this.font, "§7W/o worst: §b" + String.format("%.2f", set.avgWithout1), 770, rowY + 12, 0xFFFFFFFF);
         context.drawString(this.font, "§7W/o worst 2: §d" + String.format("%.2f", set.avgWithout2), 770, rowY + 24, 0xFFFFFFFF);
         context.drawString(this.font, "§7Worst: §c" + set.worstPieceType, 770, rowY + 36, 0xFFFFFFFF);
+        if (set.mode.scoring() != SetScoring.Builtin.AVERAGE) {
+            context.drawString(this.font, "§7" + set.mode.scoring().label() + ": §f" + String.format("%.2f", set.score), 770, rowY + 48, 0xFFFFFFFF);
+        }
 
         // Separator line
         context.fill(20, rowY + 75, this.width - 40, rowY + 76, 0xFF3C3C3C);
     }
 
+    private static int infoX(int layoutSlot) {
+        return layoutSlot < 2 ? 80 : 420;
+    }
+
+    private static int infoY(int layoutSlot, int rowY) {
+        return rowY + (layoutSlot % 2) * 24;
+    }
+
     @Override
     public boolean mouseClicked(MouseButtonEvent click, boolean isOutOfBounds) {
         double mouseX = click.x();
@@ -238,32 +380,23 @@ public class BestSetsScreen extends ModScreen {
     }
 
     private void handleHexRightClick(double mouseX, double mouseY) {
+        List<ArmorSet> sets = bestSets;
         int maxVisible = 5;
-        int visibleCount = Math.min(maxVisible, bestSets.size() - scrollOffset);
+        int visibleCount = Math.min(maxVisible, sets.size() - scrollOffset);
 
         for (int i = 0; i < visibleCount; i++) {
-            ArmorSet set = bestSets.get(scrollOffset + i);
+            ArmorSet set = sets.get(scrollOffset + i);
             int rowY = START_Y + (i * ROW_HEIGHT);
 
-            // Check helmet hex
-            if (mouseX >= 80 && mouseX <= 230 && mouseY >= rowY + 10 && mouseY <= rowY + 24) {
-                showContextMenu(set.helmet.getHexcode(), mouseX, mouseY);
-                return;
-            }
-            // Check chest hex
-            if (mouseX >= 80 && mouseX <= 230 && mouseY >= rowY + 34 && mouseY <= rowY + 48) {
-                showContextMenu(set.chestplate.getHexcode(), mouseX, mouseY);
-                return;
-            }
-            // Check legs hex
-            if (mouseX >= 420 && mouseX <= 570 && mouseY >= rowY + 10 && mouseY <= rowY + 24) {
-                showContextMenu(set.leggings.getHexcode(), mouseX, mouseY);
-                return;
-            }
-            // Check boots hex
-            if (mouseX >= 420 && mouseX <= 570 && mouseY >= rowY + 34 && mouseY <= rowY + 48) {
-                showContextMenu(set.boots.getHexcode(), mouseX, mouseY);
-                return;
+            // Check each piece's hex line
+            for (int slot = 0; slot < LAYOUT_TYPES.size(); slot++) {
+                ArmorPiece piece = set.piece(LAYOUT_TYPES.get(slot));
+                int x = infoX(slot);
+                int y = infoY(slot, rowY);
+                if (piece != null && mouseX >= x && mouseX <= x + 150 && mouseY >= y + 10 && mouseY <= y + 24) {
+                    showContextMenu(piece.getHexcode(), mouseX, mouseY);
+                    return;
+                }
             }
         }
     }
@@ -311,6 +444,22 @@ public class BestSetsScreen extends ModScreen {
         return false;
     }
 
+    @Override
+    public boolean keyPressed(KeyEvent keyInput) {
+        if (targetField != null && targetField.keyPressed(keyInput)) {
+            return true;
+        }
+        return super.keyPressed(keyInput);
+    }
+
+    @Override
+    public boolean charTyped(CharacterEvent charInput) {
+        if (targetField != null && targetField.charTyped(charInput)) {
+            return true;
+        }
+        return super.charTyped(charInput);
+    }
+
     @Override
     public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
         int maxVisible = 5;
@@ -326,225 +475,522 @@ public class BestSetsScreen extends ModScreen {
     }
 
     private void calculateBestSets() {
+        // The target field is only applied when calculating, so half-typed colors don't start searches
+        ClothConfig config = ClothConfig.getInstance();
+        String target = targetInput.trim();
+        if (!target.equals(config.getBestSetsTarget())) {
+            config.setBestSetsTarget(target);
+            config.save();
+        }
+
+        SearchMode mode = SearchMode.current();
+        if (!target.isEmpty() && !mode.anchored()) {
+            statusMessage = "§cInvalid target hex: " + target;
+        } else if (mode.scoring().needsTarget() && !mode.anchored()) {
+            statusMessage = "§cEnter a target hex for target scoring";
+        } else {
+            statusMessage = null;
+        }
+        if (statusMessage != null) {
+            this.minecraft.execute(this::rebuildWidgets); // Shape and scoring buttons show the new config
+            return;
+        }
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        searchCancelled = cancelled;
         isCalculating = true;
         calculationProgress = 0;
-        bestSets.clear();
+        lastPublish = System.currentTimeMillis();
+        // Current sets stay visible until partial or final results replace them
 
         // Re-init to update button state
-        this.minecraft.execute(this::init);
+        this.minecraft.execute(this::rebuildWidgets);
 
-        // Run calculation asynchronously
-        CompletableFuture.runAsync(() -> {
+        // Run calculation on the search pool
+        SEARCH_POOL.execute(() -> {
             try {
-                performCalculation();
+                performCalculation(cancelled);
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
-                isCalculating = false;
-                calculationProgress = 100;
+                if (searchCancelled == cancelled) {
+                    searchCancelled = null;
+                    isCalculating = false;
+                    calculationProgress = 100;
+                }
 
                 // Re-init to update button state back
-                this.minecraft.execute(this::init);
+                this.minecraft.execute(this::rebuildWidgets);
             }
         });
     }
 
-    private void performCalculation() {
-        long startTime = System.currentTimeMillis();
+    /**
+     * Stop the running search, whatever it found so far stays on screen
+     */
+    private void cancelCalculation() {
+        AtomicBoolean cancelled = searchCancelled;
+        if (cancelled != null && !cancelled.getAndSet(true)) {
+            System.out.println("[Best Sets] Calculation cancelled");
+        }
+    }
+
+    @Override
+    public void removed() {
+        cancelCalculation();
+        super.removed();
+    }
+
+    /**
+     * Whether enough time passed since the last partial result to show a new one
+     */
+    private boolean publishDue() {
+        return System.currentTimeMillis() - lastPublish >= PUBLISH_INTERVAL_MS;
+    }
 
-        // Categorize pieces by type
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
+    private void publishPartial(List<ArmorSet> sets) {
+        lastPublish = System.currentTimeMillis();
+        bestSets = sets;
+        partialResults = true;
+    }
 
-        List<PieceWithLab> helmets = new ArrayList<>();
-        List<PieceWithLab> chestplates = new ArrayList<>();
-        List<PieceWithLab> leggings = new ArrayList<>();
-        List<PieceWithLab> boots = new ArrayList<>();
+    private void performCalculation(AtomicBoolean cancelled) {
+        long startTime = System.currentTimeMillis();
+        // Consistent view even if the scanner adds pieces while we calculate
+        CollectionManager collectionManager = CollectionManager.getInstance();
+        CollectionSnapshot snapshot = collectionManager.snapshot();
+        BestSetsCache cache = BestSetsCache.getInstance(); // Taken with the snapshot in case the profile is switched meanwhile
+        SearchMode mode = SearchMode.current();
+        String params = mode.params();
+        boolean optimalSelection = ClothConfig.getInstance().isBestSetsOptimalSelection();
+
+        // Categorize pieces by the shape's slots
+        List<String> types = List.of(mode.shape().types);
+        List<List<PieceWithLab>> piecesBySlot = new ArrayList<>();
+        for (int slot = 0; slot < types.size(); slot++) {
+            piecesBySlot.add(new ArrayList<>());
+        }
 
         calculationProgress = 5;
 
-        // Pre-calculate LAB values for ALL pieces (huge optimization - done once instead of 6x per set)
-        for (ArmorPiece piece : collection.values()) {
+        // Pre-calculate LAB values for ALL pieces (huge optimization - done once instead of for every pair)
+        for (ArmorPiece piece : snapshot.values()) {
             if (piece.getHexcode() == null || piece.getPieceName() == null) continue;
 
-            String type = getPieceType(piece.getPieceName());
-            PieceWithLab pwl = new PieceWithLab(piece);
-
-            switch (type) {
-                case "helmet" -> helmets.add(pwl);
-                case "chestplate" -> chestplates.add(pwl);
-                case "leggings" -> leggings.add(pwl);
-                case "boots" -> boots.add(pwl);
+            int slot = types.indexOf(getPieceType(piece.getPieceName()));
+            if (slot >= 0) {
+                piecesBySlot.get(slot).add(new PieceWithLab(piece));
             }
         }
 
-        System.out.println("[Best Sets] Pieces: " + helmets.size() + " helmets, " + chestplates.size() +
-                          " chests, " + leggings.size() + " legs, " + boots.size() + " boots");
+        StringBuilder counts = new StringBuilder();
+        for (int slot = 0; slot < types.size(); slot++) {
+            counts.append(slot == 0 ? "" : ", ").append(piecesBySlot.get(slot).size()).append(" ").append(types.get(slot));
+        }
+        System.out.println("[Best Sets] Pieces: " + counts + " (" + mode.shape().label + ", " + mode.scoring().label() +
+            (mode.anchored() ? ", target #" + mode.targetHex() : "") + ")");
 
         calculationProgress = 10;
 
-        // Pre-filter: Remove pieces that can't possibly match with ANY other piece
-        helmets = filterViablePieces(helmets, Arrays.asList(chestplates, leggings, boots));
-        chestplates = filterViablePieces(chestplates, Arrays.asList(helmets, leggings, boots));
-        leggings = filterViablePieces(leggings, Arrays.asList(helmets, chestplates, boots));
-        boots = filterViablePieces(boots, Arrays.asList(helmets, chestplates, leggings));
-
-        System.out.println("[Best Sets] After filtering: " + helmets.size() + " helmets, " +
-                          chestplates.size() + " chests, " + leggings.size() + " legs, " +
-                          boots.size() + " boots");
+        // Bucket every slot into LAB voxels, a set's pieces are all within ΔE 5 of the first piece (or of the target)
+        // so they can only come from the voxels around it
+        VoxelGrid[] grids = new VoxelGrid[types.size()];
+        for (int slot = 0; slot < types.size(); slot++) {
+            grids[slot] = new VoxelGrid(piecesBySlot.get(slot));
+        }
 
         calculationProgress = 15;
 
-        // Generate ALL valid 4-piece combinations and calculate their scores
-        List<ArmorSet> allValidSets = Collections.synchronizedList(new ArrayList<>());
+        // Only the best TOP_SETS_PER_PASS combinations are kept per pass. The greedy selection walks them in order;
+        // if it runs out before MAX_SETS without having seen every combination, the next pass continues exactly
+        // where the kept ones ended, skipping pieces that are already used
+        List<ArmorSet> selectedSets = new ArrayList<>();
+        List<ArmorSet> consideredSets = new ArrayList<>(); // Everything the greedy selection looked at, best first
+        BitSet usedPieces = new BitSet(PieceIdTable.getInstance().size()); // By piece id
+        ArmorSet after = null;
+        int passes = 0;
+
+        while (true) {
+            TopSets top = searchPass(mode, piecesBySlot.getFirst(), grids, usedPieces, after, passes == 0, cancelled);
+            if (cancelled.get()) return;
+            List<ArmorSet> candidates = top.sorted();
+            if (passes == 0) {
+                calculationProgress = 85;
+                System.out.println("[Best Sets] Scored " + top.found + " valid combinations");
+            }
+            passes++;
+            consideredSets.addAll(candidates);
 
-        long totalCombinations = (long) helmets.size() * chestplates.size() * leggings.size() * boots.size();
-        final long[] processedCombinations = {0};
-        final int[] lastProgress = {15};
+            selectGreedy(candidates, selectedSets, usedPieces);
 
-        System.out.println("[Best Sets] Total theoretical combinations: " + totalCombinations);
+            if (selectedSets.size() >= MAX_SETS || !top.truncated || candidates.isEmpty()) break;
+            after = candidates.getLast();
+        }
 
-        // Make lists final for lambda
-        final List<PieceWithLab> finalChestplates = chestplates;
-        final List<PieceWithLab> finalLeggings = leggings;
-        final List<PieceWithLab> finalBoots = boots;
+        if (passes > 1) {
+            System.out.println("[Best Sets] Selection needed " + passes + " passes");
+        }
 
-        // Process in parallel for better performance
-        helmets.parallelStream().forEach(helmet -> {
-            for (PieceWithLab chest : finalChestplates) {
-                // Quick validation - check if helmet-chest pair is within threshold
-                double hcDelta = ColorMath.calculateDeltaEWithLab(helmet.lab, chest.lab);
-                if (hcDelta > MAX_DELTA_E) {
-                    synchronized (processedCombinations) {
-                        processedCombinations[0] += (long) finalLeggings.size() * finalBoots.size();
-                    }
-                    continue;
-                }
+        // Greedy can let one early pick block two better sets, improve on it over the same candidates
+        if (optimalSelection && !consideredSets.isEmpty()) {
+            calculationProgress = 90;
+            selectedSets = optimizeSelection(consideredSets, selectedSets, cancelled);
+            if (cancelled.get()) return;
+        }
 
-                for (PieceWithLab leg : finalLeggings) {
-                    // Check if adding legs keeps us within threshold
-                    double hlDelta = ColorMath.calculateDeltaEWithLab(helmet.lab, leg.lab);
-                    double clDelta = ColorMath.calculateDeltaEWithLab(chest.lab, leg.lab);
+        calculationProgress = 95;
 
-                    if (hlDelta > MAX_DELTA_E || clDelta > MAX_DELTA_E) {
-                        synchronized (processedCombinations) {
-                            processedCombinations[0] += finalBoots.size();
-                        }
-                        continue;
-                    }
+        bestSets = selectedSets;
+        partialResults = false;
 
-                    for (PieceWithLab boot : finalBoots) {
-                        synchronized (processedCombinations) {
-                            processedCombinations[0]++;
-
-                            // Update progress every 5000 combinations (cap at 80 for this phase)
-                            if (processedCombinations[0] % 5000 == 0) {
-                                int newProgress = 15 + (int)((processedCombinations[0] * 65.0) / totalCombinations);
-                                newProgress = Math.min(80, newProgress);
-                                if (newProgress > lastProgress[0]) {
-                                    calculationProgress = newProgress;
-                                    lastProgress[0] = newProgress;
-                                }
-                            }
-                        }
+        // Persist, tagged with the collection state it was calculated for
+        List<String[]> storedSets = new ArrayList<>();
+        for (ArmorSet set : selectedSets) {
+            storedSets.add(Arrays.stream(set.pieces).map(ArmorPiece::getUuid).toArray(String[]::new));
+        }
+        cache.put(params, snapshot.getFingerprint(), storedSets);
 
-                        // Check if all pieces are different (no reuse within a set)
-                        if (helmet.piece.getUuid().equals(chest.piece.getUuid()) ||
-                            helmet.piece.getUuid().equals(leg.piece.getUuid()) ||
-                            helmet.piece.getUuid().equals(boot.piece.getUuid()) ||
-                            chest.piece.getUuid().equals(leg.piece.getUuid()) ||
-                            chest.piece.getUuid().equals(boot.piece.getUuid()) ||
-                            leg.piece.getUuid().equals(boot.piece.getUuid())) {
-                            continue;
-                        }
+        long endTime = System.currentTimeMillis();
+        long totalTimeMs = endTime - startTime;
+        double totalTimeSec = totalTimeMs / 1000.0;
+        System.out.println("[Best Sets] Selected " + bestSets.size() + " optimal sets in " + totalTimeMs + "ms (" + String.format("%.2f", totalTimeSec) + " seconds)");
+        if (snapshot.isStale()) {
+            System.out.println("[Best Sets] Collection changed during calculation, results will be recalculated on next open");
+        }
+    }
 
-                        // Check boots deltas
-                        double hbDelta = ColorMath.calculateDeltaEWithLab(helmet.lab, boot.lab);
-                        double cbDelta = ColorMath.calculateDeltaEWithLab(chest.lab, boot.lab);
-                        double lbDelta = ColorMath.calculateDeltaEWithLab(leg.lab, boot.lab);
+    /**
+     * Select the best non-overlapping sets (greedy selection from sorted list), adding to {@code selectedSets}
+     */
+    private static void selectGreedy(List<ArmorSet> candidates, List<ArmorSet> selectedSets, BitSet usedPieces) {
+        for (ArmorSet set : candidates) {
+            if (selectedSets.size() >= MAX_SETS) break;
 
-                        // All pairwise deltas must be within threshold
-                        if (hbDelta > MAX_DELTA_E || cbDelta > MAX_DELTA_E || lbDelta > MAX_DELTA_E) {
-                            continue;
-                        }
+            // Check if any piece in this set is already used
+            boolean overlaps = false;
+            for (int id : set.ids) {
+                overlaps |= usedPieces.get(id);
+            }
+            if (overlaps) continue;
 
-                        // Create the set with pre-computed LAB values and deltas
-                        ArmorSet set = new ArmorSet(
-                            helmet.piece, chest.piece, leg.piece, boot.piece,
-                            helmet.lab, chest.lab, leg.lab, boot.lab,
-                            hcDelta, hlDelta, hbDelta, clDelta, cbDelta, lbDelta
-                        );
+            // This set doesn't overlap with any selected set - add it
+            selectedSets.add(set);
+            for (int id : set.ids) {
+                usedPieces.set(id);
+            }
+        }
+    }
 
-                        if (set.avgDeltaE <= MAX_DELTA_E) {
-                            allValidSets.add(set);
-                        }
-                    }
+    /**
+     * Best packing of {@code candidates}: most sets, then lowest total score. Starts from the greedy
+     * selection, so running out of time still returns something at least as good.
+     */
+    private List<ArmorSet> optimizeSelection(List<ArmorSet> candidates, List<ArmorSet> greedy, AtomicBoolean cancelled) {
+        long startTime = System.currentTimeMillis();
+        Map<ArmorSet, Integer> setIndex = new HashMap<>();
+        int[][] setPieces = new int[candidates.size()][];
+        double[] setCost = new double[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            ArmorSet set = candidates.get(i);
+            setIndex.put(set, i);
+            setPieces[i] = set.ids;
+            setCost[i] = set.score;
+        }
+        int[] initial = greedy.stream().mapToInt(setIndex::get).toArray();
+
+        SetPackingSolver.Result result = SetPackingSolver.solve(setPieces, setCost, PieceIdTable.getInstance().size(), MAX_SETS, initial,
+            OPTIMAL_TIME_BUDGET_MS, cancelled::get, improved -> {
+                if (publishDue()) {
+                    publishPartial(Arrays.stream(improved).mapToObj(candidates::get).sorted(SET_ORDER).toList());
                 }
+            });
+
+        List<ArmorSet> selected = new ArrayList<>();
+        for (int i : result.sets()) {
+            selected.add(candidates.get(i));
+        }
+        System.out.println("[Best Sets] Optimal selection: " + greedy.size() + " -> " + selected.size() + " sets, " +
+            result.nodes() + " nodes in " + (System.currentTimeMillis() - startTime) + "ms" +
+            (result.provedOptimal() ? "" : " (stopped early, using best found)"));
+        return selected;
+    }
+
+    /**
+     * Find the best valid combinations that come after {@code after} in {@link #SET_ORDER} (all if null)
+     * and don't use any piece in {@code usedPieces}.
+     * Every worker keeps its own bounded heap, they're merged at the end.
+     */
+    private TopSets searchPass(SearchMode mode, List<PieceWithLab> firstSlot, VoxelGrid[] grids, BitSet usedPieces,
+                               ArmorSet after, boolean firstPass, AtomicBoolean cancelled) {
+        // With a target every piece has to be near it, so each slot only needs its target neighbourhood once
+        List<List<Near>> nearTarget = new ArrayList<>();
+        List<Near> roots;
+        if (mode.anchored()) {
+            for (VoxelGrid grid : grids) {
+                nearTarget.add(grid.within(mode.targetLab(), usedPieces));
             }
-        });
+            roots = nearTarget.getFirst();
+        } else {
+            roots = firstSlot.stream().filter(piece -> !usedPieces.get(piece.id)).map(piece -> new Near(piece, 0)).toList();
+        }
 
-        calculationProgress = 85;
-        System.out.println("[Best Sets] Found " + allValidSets.size() + " valid combinations");
+        Queue<TopSets> workerSets = new ConcurrentLinkedQueue<>();
+        ThreadLocal<SetSearch> localSearch = ThreadLocal.withInitial(() -> {
+            SetSearch search = new SetSearch(mode, grids, nearTarget, usedPieces, after);
+            workerSets.add(search.top);
+            return search;
+        });
+        LongAdder processedRoots = new LongAdder();
+        int rootCount = roots.size();
+        int chunkCount = (rootCount + ROOTS_PER_CHUNK - 1) / ROOTS_PER_CHUNK;
+        int chunksPerWave = Math.max(1, (chunkCount + SEARCH_WAVES - 1) / SEARCH_WAVES);
+
+        for (int waveStart = 0; waveStart < chunkCount && !cancelled.get(); waveStart += chunksPerWave) {
+            // Process in parallel for better performance
+            IntStream.range(waveStart, Math.min(chunkCount, waveStart + chunksPerWave)).parallel().forEach(chunk -> {
+                if (cancelled.get()) return;
+                SetSearch search = localSearch.get();
+                int end = Math.min(rootCount, (chunk + 1) * ROOTS_PER_CHUNK);
+
+                for (int r = chunk * ROOTS_PER_CHUNK; r < end; r++) {
+                    search.searchRoot(roots.get(r));
+                }
 
-        // Sort all valid sets by average delta E (best first)
-        allValidSets.sort(Comparator.comparingDouble(set -> set.avgDeltaE));
+                processedRoots.add(end - chunk * ROOTS_PER_CHUNK);
+                if (firstPass) {
+                    calculationProgress = Math.max(calculationProgress, 15 + (int) ((processedRoots.sum() * 65) / rootCount));
+                }
+            });
 
-        calculationProgress = 90;
+            // Workers are idle between waves, so their heaps can be read for a preview of the selection
+            if (firstPass && publishDue() && !cancelled.get()) {
+                List<ArmorSet> preview = new ArrayList<>();
+                selectGreedy(merge(workerSets).sorted(), preview, new BitSet());
+                publishPartial(preview);
+            }
+        }
 
-        // Select the best non-overlapping sets (greedy selection from sorted list)
-        List<ArmorSet> selectedSets = new ArrayList<>();
-        Set<String> usedUuids = new HashSet<>();
+        TopSets merged = merge(workerSets);
+        workerSets.forEach(TopSets::clear); // The pool threads' locals outlive this pass
+        return merged;
+    }
 
-        for (ArmorSet set : allValidSets) {
-            if (selectedSets.size() >= MAX_SETS) break;
+    private static TopSets merge(Collection<TopSets> workerSets) {
+        TopSets merged = new TopSets(TOP_SETS_PER_PASS);
+        for (TopSets sets : workerSets) {
+            merged.addAll(sets);
+        }
+        return merged;
+    }
 
-            // Check if any piece in this set is already used
-            if (usedUuids.contains(set.helmet.getUuid()) ||
-                usedUuids.contains(set.chestplate.getUuid()) ||
-                usedUuids.contains(set.leggings.getUuid()) ||
-                usedUuids.contains(set.boots.getUuid())) {
-                continue;
-            }
+    /**
+     * The best sets seen so far, at most {@code capacity} of them
+     */
+    private static class TopSets {
+        private final int capacity;
+        private final PriorityQueue<ArmorSet> heap = new PriorityQueue<>(SET_ORDER.reversed()); // Worst kept set on top
+        long found; // Valid combinations seen, kept or not
+        boolean truncated; // Some valid combination was dropped for capacity
+
+        TopSets(int capacity) {
+            this.capacity = capacity;
+        }
 
-            // This set doesn't overlap with any selected set - add it
-            selectedSets.add(set);
-            usedUuids.add(set.helmet.getUuid());
-            usedUuids.add(set.chestplate.getUuid());
-            usedUuids.add(set.leggings.getUuid());
-            usedUuids.add(set.boots.getUuid());
+        /**
+         * Whether a set with this score could still be kept
+         */
+        boolean accepts(double score) {
+            return heap.size() < capacity || score <= heap.peek().score;
         }
 
-        calculationProgress = 95;
+        void offer(ArmorSet set) {
+            if (heap.size() < capacity) {
+                heap.add(set);
+                return;
+            }
+            truncated = true;
+            if (SET_ORDER.compare(set, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(set);
+            }
+        }
 
-        bestSets = selectedSets;
+        void clear() {
+            heap.clear();
+        }
 
-        // Save to cache
-        cachedBestSets = new ArrayList<>(selectedSets);
-        cachedCollectionSize = collection.size();
-        cacheTimestamp = System.currentTimeMillis();
+        void addAll(TopSets other) {
+            for (ArmorSet set : other.heap) {
+                offer(set);
+            }
+            found += other.found;
+            truncated |= other.truncated;
+        }
 
-        long endTime = System.currentTimeMillis();
-        long totalTimeMs = endTime - startTime;
-        double totalTimeSec = totalTimeMs / 1000.0;
-        System.out.println("[Best Sets] Selected " + bestSets.size() + " optimal sets in " + totalTimeMs + "ms (" + String.format("%.2f", totalTimeSec) + " seconds)");
+        /**
+         * Kept sets, best first
+         */
+        List<ArmorSet> sorted() {
+            List<ArmorSet> sets = new ArrayList<>(heap);
+            sets.sort(SET_ORDER);
+            return sets;
+        }
     }
 
     /**
-     * Pre-filter pieces that can't possibly match with ANY piece from other types
+     * One worker's search of a pass: fills the set slot by slot, each level keeping only the candidates
+     * of the later slots that still fit the pieces chosen so far (with their ΔE to them). Partial sets are
+     * scored as they grow; since a score never decreases, a partial set that can't make the heap is dropped
+     * with all its completions.
      */
-    private List<PieceWithLab> filterViablePieces(List<PieceWithLab> pieces, List<List<PieceWithLab>> otherTypesLists) {
-        return pieces.stream()
-            .filter(piece -> {
-                // Check if this piece can match with at least one piece from EACH other type
-                for (List<PieceWithLab> otherType : otherTypesLists) {
-                    boolean hasMatch = otherType.stream()
-                        .anyMatch(other -> ColorMath.calculateDeltaEWithLab(piece.lab, other.lab) <= MAX_DELTA_E);
-                    if (!hasMatch) {
-                        return false; // Can't form a valid set
+    private static class SetSearch {
+        final TopSets top = new TopSets(TOP_SETS_PER_PASS);
+        private final SearchMode mode;
+        private final int size;
+        private final VoxelGrid[] grids;
+        private final List<List<Near>> nearTarget; // Per slot when anchored, otherwise empty
+        private final BitSet usedPieces;
+        private final ArmorSet after;
+
+        // Candidates for each slot once `level` pieces are chosen: pieces[level][slot][i], their ΔE to the piece
+        // chosen for slot k < level at deltas[level][slot][i * size + k] and to the target at targets[level][slot][i]
+        private final PieceWithLab[][][] pieces;
+        private final double[][][] deltas;
+        private final double[][][] targets;
+        private final int[][] counts;
+
+        private final PieceWithLab[] chosen;
+        private final double[] pairDeltas;
+        private final double[] targetDeltas;
+
+        SetSearch(SearchMode mode, VoxelGrid[] grids, List<List<Near>> nearTarget, BitSet usedPieces, ArmorSet after) {
+            this.mode = mode;
+            this.size = grids.length;
+            this.grids = grids;
+            this.nearTarget = nearTarget;
+            this.usedPieces = usedPieces;
+            this.after = after;
+            this.pieces = new PieceWithLab[size][size][0];
+            this.deltas = new double[size][size][0];
+            this.targets = new double[size][size][0];
+            this.counts = new int[size][size];
+            this.chosen = new PieceWithLab[size];
+            this.pairDeltas = new double[SetScoring.pairCount(size)];
+            this.targetDeltas = new double[size];
+        }
+
+        /**
+         * Every valid set with {@code root} in the first slot ({@code root.deltaE} is its ΔE to the target)
+         */
+        void searchRoot(Near root) {
+            chosen[0] = root.piece;
+            targetDeltas[0] = root.deltaE;
+            if (!top.accepts(mode.scoring().score(pairDeltas, 0, targetDeltas, 1, size))) {
+                top.truncated = true;
+                return;
+            }
+            if (mode.anchored() ? narrow(0) : fromGrids()) {
+                extend(1);
+            }
+        }
+
+        /**
+         * Level 1 without a target: the later slots' pieces within ΔE {@value #MAX_DELTA_E} of the root
+         */
+        private boolean fromGrids() {
+            for (int slot = 1; slot < size; slot++) {
+                List<Near> near = grids[slot].within(chosen[0].lab, usedPieces);
+                if (near.isEmpty()) return false;
+                ensureCapacity(1, slot, near.size());
+                for (int i = 0; i < near.size(); i++) {
+                    pieces[1][slot][i] = near.get(i).piece;
+                    deltas[1][slot][i * size] = near.get(i).deltaE;
+                    targets[1][slot][i] = 0;
+                }
+                counts[1][slot] = near.size();
+            }
+            return true;
+        }
+
+        /**
+         * Level {@code depth + 1} from level {@code depth} and the piece just chosen for slot {@code depth}.
+         * Level 0 is the target neighbourhood, only used when anchored
+         */
+        private boolean narrow(int depth) {
+            PieceWithLab piece = chosen[depth];
+            for (int slot = depth + 1; slot < size; slot++) {
+                int count = 0;
+                int available = depth == 0 ? nearTarget.get(slot).size() : counts[depth][slot];
+                ensureCapacity(depth + 1, slot, available);
+                for (int i = 0; i < available; i++) {
+                    PieceWithLab candidate = depth == 0 ? nearTarget.get(slot).get(i).piece : pieces[depth][slot][i];
+                    double deltaE = ColorMath.calculateDeltaEWithLab(piece.lab, candidate.lab);
+                    if (deltaE > MAX_DELTA_E && !mode.anchored()) continue;
+
+                    pieces[depth + 1][slot][count] = candidate;
+                    if (depth > 0) {
+                        System.arraycopy(deltas[depth][slot], i * size, deltas[depth + 1][slot], count * size, depth);
                     }
+                    deltas[depth + 1][slot][count * size + depth] = deltaE;
+                    targets[depth + 1][slot][count] = depth == 0 ? nearTarget.get(slot).get(i).deltaE : targets[depth][slot][i];
+                    count++;
                 }
-                return true;
-            })
-            .collect(Collectors.toList());
+                if (count == 0) return false;
+                counts[depth + 1][slot] = count;
+            }
+            return true;
+        }
+
+        /**
+         * Try every candidate of slot {@code depth}, the slots before it are chosen
+         */
+        private void extend(int depth) {
+            int pairs = SetScoring.pairCount(depth + 1);
+            for (int i = 0; i < counts[depth][depth]; i++) {
+                for (int k = 0; k < depth; k++) {
+                    pairDeltas[SetScoring.pairIndex(k, depth)] = deltas[depth][depth][i * size + k];
+                }
+                targetDeltas[depth] = targets[depth][depth][i];
+
+                // Lower bound for every set completed from here (the score itself once the set is complete)
+                double score = mode.scoring().score(pairDeltas, pairs, targetDeltas, depth + 1, size);
+                if (!top.accepts(score)) {
+                    top.truncated = true;
+                    continue;
+                }
+
+                chosen[depth] = pieces[depth][depth][i];
+                if (depth == size - 1) {
+                    complete(score);
+                } else if (narrow(depth)) {
+                    extend(depth + 1);
+                }
+            }
+        }
+
+        private void complete(double score) {
+            if (after != null && score < after.score) return;
+            top.found++;
+
+            ArmorPiece[] setPieces = new ArmorPiece[size];
+            for (int slot = 0; slot < size; slot++) {
+                setPieces[slot] = chosen[slot].piece;
+            }
+            ArmorSet set = new ArmorSet(mode, setPieces, pairDeltas, score);
+            if (after != null && SET_ORDER.compare(set, after) <= 0) {
+                return; // Same score as a set the previous pass already considered
+            }
+            top.offer(set);
+        }
+
+        private void ensureCapacity(int level, int slot, int capacity) {
+            if (pieces[level][slot].length < capacity) {
+                int grown = Math.max(capacity, pieces[level][slot].length * 2);
+                pieces[level][slot] = new PieceWithLab[grown];
+                deltas[level][slot] = new double[grown * size];
+                targets[level][slot] = new double[grown];
+            }
+        }
     }
 
     /**
@@ -552,79 +998,218 @@ public class BestSetsScreen extends ModScreen {
      */
     private static class PieceWithLab {
         final ArmorPiece piece;
+        final int id; // See PieceIdTable
         final ColorMath.LAB lab;
 
         PieceWithLab(ArmorPiece piece) {
             this.piece = piece;
+            this.id = PieceIdTable.getInstance().idOf(piece);
             this.lab = ColorMath.hexToLab(piece.getHexcode());
         }
     }
 
+    private record Near(PieceWithLab piece, double deltaE) {}
+
+    /**
+     * Pieces of one type bucketed into the {@link LabSpatialIndex} cells, so every piece within
+     * ΔE {@value #MAX_DELTA_E} of a color is in the few cells around it
+     */
+    private static class VoxelGrid {
+        private final Map<Long, List<PieceWithLab>> cells = new HashMap<>();
+
+        VoxelGrid(List<PieceWithLab> pieces) {
+            for (PieceWithLab piece : pieces) {
+                long key = LabSpatialIndex.cellKey(LabSpatialIndex.cell(piece.lab.L()), LabSpatialIndex.cell(piece.lab.a()), LabSpatialIndex.cell(piece.lab.b()));
+                cells.computeIfAbsent(key, k -> new ArrayList<>()).add(piece);
+            }
+        }
+
+        /**
+         * Every piece within ΔE {@value #MAX_DELTA_E} of {@code center} that isn't excluded, with its ΔE
+         */
+        List<Near> within(ColorMath.LAB center, BitSet excludedPieces) {
+            List<Near> result = new ArrayList<>();
+            int minL = LabSpatialIndex.cell(center.L() - MAX_DELTA_E), maxL = LabSpatialIndex.cell(center.L() + MAX_DELTA_E);
+            int minA = LabSpatialIndex.cell(center.a() - MAX_DELTA_E), maxA = LabSpatialIndex.cell(center.a() + MAX_DELTA_E);
+            int minB = LabSpatialIndex.cell(center.b() - MAX_DELTA_E), maxB = LabSpatialIndex.cell(center.b() + MAX_DELTA_E);
+            for (int l = minL; l <= maxL; l++) {
+                for (int a = minA; a <= maxA; a++) {
+                    for (int b = minB; b <= maxB; b++) {
+                        List<PieceWithLab> bucket = cells.get(LabSpatialIndex.cellKey(l, a, b));
+                        if (bucket == null) continue;
+                        for (PieceWithLab piece : bucket) {
+                            if (excludedPieces.get(piece.id)) continue;
+                            double deltaE = ColorMath.calculateDeltaEWithLab(center, piece.lab);
+                            if (deltaE <= MAX_DELTA_E) {
+                                result.add(new Near(piece, deltaE));
+                            }
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
     private String getPieceType(String pieceName) {
         String detected = PieceTypeUtil.detectPieceType(pieceName);
         return detected != null ? detected : "unknown";
     }
 
     /**
-     * Represents a complete 4-piece armor set with statistics
+     * Which piece types make up a set, in search order
      */
-    private static class ArmorSet {
-        final ArmorPiece helmet;
-        final ArmorPiece chestplate;
-        final ArmorPiece leggings;
-        final ArmorPiece boots;
+    private enum SetShape {
+        FULL("4p", "4 Pieces", "4-piece", "helmet", "chestplate", "leggings", "boots"),
+        THREE_PIECE("3p", "3p (C/L/B)", "3-piece (chest/legs/boots)", "chestplate", "leggings", "boots");
+
+        final String id;
+        final String label;
+        final String description;
+        final String[] types;
+
+        SetShape(String id, String label, String description, String... types) {
+            this.id = id;
+            this.label = label;
+            this.description = description;
+            this.types = types;
+        }
 
-        final double avgDeltaE;
-        final double avgWithout1; // Average ΔE without worst piece
-        final double avgWithout2; // Average ΔE of best 2 pieces
-        final String worstPieceType;
+        static SetShape fromId(String id) {
+            for (SetShape shape : values()) {
+                if (shape.id.equals(id)) {
+                    return shape;
+                }
+            }
+            return FULL;
+        }
+    }
 
-        // Constructor with pre-computed LAB values and deltas (MAJOR optimization)
-        ArmorSet(ArmorPiece helmet, ArmorPiece chestplate, ArmorPiece leggings, ArmorPiece boots,
-                 ColorMath.LAB helmetLab, ColorMath.LAB chestLab, ColorMath.LAB legsLab, ColorMath.LAB bootsLab,
-                 double d_hc, double d_hl, double d_hb, double d_cl, double d_cb, double d_lb) {
-            this.helmet = helmet;
-            this.chestplate = chestplate;
-            this.leggings = leggings;
-            this.boots = boots;
+    /**
+     * What the search looks for, from the config
+     *
+     * @param targetHex Normalized target color (6 uppercase hex digits), null without a target
+     */
+    private record SearchMode(SetShape shape, SetScoring scoring, String targetHex, ColorMath.LAB targetLab) {
+        static SearchMode current() {
+            ClothConfig config = ClothConfig.getInstance();
+            String target = config.getBestSetsTarget().trim().toUpperCase();
+            if (target.startsWith("#")) {
+                target = target.substring(1);
+            }
+            boolean validTarget = target.matches("[0-9A-F]{6}");
+            return new SearchMode(SetShape.fromId(config.getBestSetsShape()), SetScoring.Builtin.fromId(config.getBestSetsScoring()),
+                validTarget ? target : null, validTarget ? ColorMath.hexToLab(target) : null);
+        }
 
-            // Average of all pairs (already computed)
-            this.avgDeltaE = (d_hc + d_hl + d_hb + d_cl + d_cb + d_lb) / 6.0;
+        /**
+         * Whether every piece has to be near the target instead of near each other
+         */
+        boolean anchored() {
+            return targetLab != null;
+        }
 
-            // Calculate average delta for each piece
-            double helmetAvg = (d_hc + d_hl + d_hb) / 3.0;
-            double chestAvg = (d_hc + d_cl + d_cb) / 3.0;
-            double legsAvg = (d_hl + d_cl + d_lb) / 3.0;
-            double bootsAvg = (d_hb + d_cb + d_lb) / 3.0;
+        /**
+         * Stored results are only reused if they were calculated with the same parameters
+         */
+        String params() {
+            String selection = ClothConfig.getInstance().isBestSetsOptimalSelection() ? "optimal" : "greedy";
+            return "sets=" + MAX_SETS + ";maxDeltaE=" + MAX_DELTA_E + ";shape=" + shape.id + ";score=" + scoring.id() +
+                ";target=" + (targetHex != null ? targetHex : "") + ";select=" + selection + ";v=1";
+        }
+    }
 
-            // Find worst piece
-            Map<String, Double> pieceAvgs = new HashMap<>();
-            pieceAvgs.put("helmet", helmetAvg);
-            pieceAvgs.put("chestplate", chestAvg);
-            pieceAvgs.put("leggings", legsAvg);
-            pieceAvgs.put("boots", bootsAvg);
+    /**
+     * Represents a complete armor set (one piece per slot of its shape) with statistics
+     */
+    private static class ArmorSet {
+        final SearchMode mode;
+        final ArmorPiece[] pieces; // In the shape's slot order
+        final int[] ids; // See PieceIdTable
 
-            List<Map.Entry<String, Double>> sorted = pieceAvgs.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .toList();
+        final double score; // What the sets are ranked by, see SetScoring
+        final double avgDeltaE;
+        final double avgWithout1; // Average ΔE without worst piece
+        final double avgWithout2; // Average ΔE of best 2 pieces
+        final String worstPieceType;
 
-            this.worstPieceType = sorted.getFirst().getKey();
+        /**
+         * Set from pieces alone, e.g. when restoring stored results
+         */
+        static ArmorSet of(SearchMode mode, ArmorPiece[] pieces) {
+            ColorMath.LAB[] labs = new ColorMath.LAB[pieces.length];
+            double[] targetDeltas = new double[pieces.length];
+            for (int i = 0; i < pieces.length; i++) {
+                labs[i] = ColorMath.hexToLab(pieces[i].getHexcode());
+                if (mode.anchored()) {
+                    targetDeltas[i] = ColorMath.calculateDeltaEWithLab(mode.targetLab(), labs[i]);
+                }
+            }
+            double[] pairDeltas = new double[SetScoring.pairCount(pieces.length)];
+            for (int j = 1; j < pieces.length; j++) {
+                for (int i = 0; i < j; i++) {
+                    pairDeltas[SetScoring.pairIndex(i, j)] = ColorMath.calculateDeltaEWithLab(labs[i], labs[j]);
+                }
+            }
+            double score = mode.scoring().score(pairDeltas, pairDeltas.length, targetDeltas, pieces.length, pieces.length);
+            return new ArmorSet(mode, pieces, pairDeltas, score);
+        }
 
-            // Calculate average without worst piece (best 3 pieces)
-            List<Double> best3Deltas = new ArrayList<>();
-            String worst = sorted.getFirst().getKey();
+        // Constructor with pre-computed deltas (MAJOR optimization)
+        ArmorSet(SearchMode mode, ArmorPiece[] pieces, double[] pairDeltas, double score) {
+            this.mode = mode;
+            this.pieces = pieces.clone();
+            this.score = score;
+            PieceIdTable idTable = PieceIdTable.getInstance();
+            this.ids = new int[pieces.length];
+            for (int i = 0; i < pieces.length; i++) {
+                ids[i] = idTable.idOf(pieces[i]);
+            }
 
-            if (!worst.equals("helmet")) best3Deltas.addAll(Arrays.asList(d_hc, d_hl, d_hb));
-            if (!worst.equals("chestplate")) best3Deltas.addAll(Arrays.asList(d_hc, d_cl, d_cb));
-            if (!worst.equals("leggings")) best3Deltas.addAll(Arrays.asList(d_hl, d_cl, d_lb));
-            if (!worst.equals("boots")) best3Deltas.addAll(Arrays.asList(d_hb, d_cb, d_lb));
+            // Average of all pairs (already computed)
+            int pairs = SetScoring.pairCount(pieces.length);
+            double sum = 0;
+            double bestPair = Double.MAX_VALUE;
+            for (int p = 0; p < pairs; p++) {
+                sum += pairDeltas[p];
+                bestPair = Math.min(bestPair, pairDeltas[p]);
+            }
+            this.avgDeltaE = sum / pairs;
+
+            // Find worst piece (highest average ΔE to the others)
+            int worst = 0;
+            double worstSum = -1;
+            for (int i = 0; i < pieces.length; i++) {
+                double pieceSum = 0;
+                for (int j = 0; j < pieces.length; j++) {
+                    if (j != i) pieceSum += pairDeltas[SetScoring.pairIndex(Math.min(i, j), Math.max(i, j))];
+                }
+                if (pieceSum > worstSum) {
+                    worstSum = pieceSum;
+                    worst = i;
+                }
+            }
+            this.worstPieceType = mode.shape().types[worst];
 
-            this.avgWithout1 = best3Deltas.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            // Calculate average without worst piece: the other pieces' averages, each over all its pairs
+            double othersSum = 0;
+            for (int i = 0; i < pieces.length; i++) {
+                for (int j = 0; j < pieces.length; j++) {
+                    if (i != worst && j != i) othersSum += pairDeltas[SetScoring.pairIndex(Math.min(i, j), Math.max(i, j))];
+                }
+            }
+            this.avgWithout1 = othersSum / ((pieces.length - 1) * (pieces.length - 1));
 
             // Calculate average of best 2 pieces (smallest delta)
-            double[] allDeltas = {d_hc, d_hl, d_hb, d_cl, d_cb, d_lb};
-            Arrays.sort(allDeltas);
-            this.avgWithout2 = allDeltas[0]; // Best pair
+            this.avgWithout2 = bestPair; // Best pair
+        }
+
+        /**
+         * Piece of this type, null if the shape has no such slot
+         */
+        ArmorPiece piece(String type) {
+            int slot = List.of(mode.shape().types).indexOf(type);
+            return slot >= 0 ? pieces[slot] : null;
         }
     }
 
@@ -5,11 +5,16 @@ import org.lwjgl.glfw.GLFW;
 import schnerry.seymouranalyzer.Seymouranalyzer;
 import schnerry.seymouranalyzer.config.ClothConfig;
 import schnerry.seymouranalyzer.data.ArmorPiece;
+import schnerry.seymouranalyzer.data.CollectionChangeListener;
+import schnerry.seymouranalyzer.data.CollectionIndex;
 import schnerry.seymouranalyzer.data.CollectionManager;
+import schnerry.seymouranalyzer.data.CollectionQuery;
+import schnerry.seymouranalyzer.data.CollectionStore;
+import schnerry.seymouranalyzer.data.LabSpatialIndex;
+import schnerry.seymouranalyzer.data.PaletteTable;
 import schnerry.seymouranalyzer.util.ColorMath;
 import com.mojang.blaze3d.platform.InputConstants;
 import java.util.*;
-import java.util.stream.Collectors;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
@@ -27,6 +32,9 @@ import net.minecraft.network.chat.Component;
 public class DatabaseScreen extends ModScreen {
     private List<ArmorPiece> allPieces = new ArrayList<>();
     private List<ArmorPiece> filteredPieces = new ArrayList<>();
+
+    // Tier counts over the whole collection (recomputed on load, not every frame)
+    private int t1Normal = 0, t1Fade = 0, t2Normal = 0, t2Fade = 0, dupes = 0;
     private int scrollOffset = 0;
     private static final int ROW_HEIGHT = 20;
     private static final int HEADER_Y = 50;
@@ -65,6 +73,11 @@ public class DatabaseScreen extends ModScreen {
 
     // Pending initial search (set before init())
     private String pendingInitialSearch = null;
+
+    // Reload when the collection changes while the screen is open
+    private boolean needsReload = false;
+    private long loadedVersion = -1; // Collection version the list was loaded from
+    private final CollectionChangeListener changeListener = changes -> needsReload = true;
     public DatabaseScreen() {
         this(null);
     }
@@ -91,23 +104,48 @@ public class DatabaseScreen extends ModScreen {
     }
 
     private void loadPieces() {
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
-        allPieces = new ArrayList<>(collection.values());
+        CollectionStore store = CollectionManager.getInstance().getStore();
+        loadedVersion = CollectionManager.getInstance().getVersion();
 
         // Sort by deltaE on first load (best to worst) - matching JS behavior
-        allPieces.sort((a, b) -> {
-            double deltaA = a.getBestMatch() != null ? a.getBestMatch().deltaE : 999.0;
-            double deltaB = b.getBestMatch() != null ? b.getBestMatch().deltaE : 999.0;
-            return Double.compare(deltaA, deltaB);
-        });
+        allPieces = store.query()
+            .sortBy(bestDeltaEComparator(store))
+            .pieces();
+
+        calculateTierCounts(store);
 
         Seymouranalyzer.LOGGER.info("Loaded {} pieces into database GUI", allPieces.size());
         filteredPieces = new ArrayList<>(allPieces);
     }
 
+    private void calculateTierCounts(CollectionStore store) {
+        Map<String, String> customColors = ClothConfig.getInstance().getCustomColors();
+
+        // Buckets: 0 = T1 normal, 1 = T1 fade, 2 = T2 normal, 3 = T2 fade
+        int[] counts = store.query()
+            .where(row -> store.bestDeltaE(row) <= 5)
+            .histogram(row -> {
+                boolean isFade = store.isFade(row);
+                boolean isCustom = customColors.containsKey(PaletteTable.getInstance().getColorName(store.bestTarget(row)));
+
+                if (store.bestDeltaE(row) <= 2) {
+                    return isCustom || !isFade ? 0 : 1;
+                }
+                return isFade && !isCustom ? 3 : 2;
+            }, 4);
+        t1Normal = counts[0];
+        t1Fade = counts[1];
+        t2Normal = counts[2];
+        t2Fade = counts[3];
+
+        // Count actual dupes
+        dupes = CollectionManager.getInstance().getIndex().countDuplicatePieces();
+    }
+
     @Override
     protected void init() {
         super.init();
+        CollectionManager.getInstance().addListener(changeListener);
 
         // Save current search text before re-initialization (in case GUI scale triggers re-init)
         String previousSearchText = searchField != null ? searchField.getValue() : null;
@@ -211,8 +249,25 @@ public class DatabaseScreen extends ModScreen {
         filterAndSort();
     }
 
+    @Override
+    public void removed() {
+        CollectionManager.getInstance().removeListener(changeListener);
+        super.removed();
+    }
+
     @Override
     public void render(@NonNull GuiGraphics context, int mouseX, int mouseY, float delta) {
+        if (needsReload) {
+            needsReload = false;
+            // Events can arrive for a version that is already loaded (e.g. right after init)
+            if (loadedVersion != CollectionManager.getInstance().getVersion()) {
+                int previousScroll = scrollOffset;
+                loadPieces();
+                filterAndSort();
+                scrollOffset = Math.min(previousScroll, Math.max(0, filteredPieces.size() - 1));
+            }
+        }
+
         // Don't fill ANY background - let default background show through
         // Text renders correctly without background fills covering it
 
@@ -262,43 +317,6 @@ public class DatabaseScreen extends ModScreen {
             context.drawString(this.font, filteredEnd, infoX, 19, 0xFF888888);
         }
 
-        // Calculate tier counts
-        int t1Normal = 0, t1Fade = 0, t2Normal = 0, t2Fade = 0, dupes = 0;
-        Map<String, Integer> hexCounts = new HashMap<>();
-
-        for (ArmorPiece piece : allPieces) {
-            // Count hex occurrences for dupes
-            String hex = piece.getHexcode();
-            hexCounts.put(hex, hexCounts.getOrDefault(hex, 0) + 1);
-
-            if (piece.getBestMatch() != null) {
-                double deltaE = piece.getBestMatch().deltaE;
-                boolean isFade = checkFadeDye(piece.getBestMatch().colorName);
-                boolean isCustom = ClothConfig.getInstance().getCustomColors().containsKey(piece.getBestMatch().colorName);
-
-                if (deltaE <= 2) {
-                    if (isCustom || !isFade) {
-                        t1Normal++;
-                    } else {
-                        t1Fade++;
-                    }
-                } else if (deltaE <= 5) {
-                    if (isFade && !isCustom) {
-                        t2Fade++;
-                    } else {
-                        t2Normal++;
-                    }
-                }
-            }
-        }
-
-        // Count actual dupes
-        for (ArmorPiece piece : allPieces) {
-            if (hexCounts.getOrDefault(piece.getHexcode(), 0) > 1) {
-                dupes++;
-            }
-        }
-
         // Display tier counts (two rows) - calculate total width first, then center
         // Row 1: T1, T2, Dupes
         String t1Label = "T1: ";
@@ -446,8 +464,8 @@ public class DatabaseScreen extends ModScreen {
         // Draw highlight backgrounds first
         if (piece.getBestMatch() != null) {
             double deltaE = piece.getBestMatch().deltaE;
-            boolean isFade = checkFadeDye(piece.getBestMatch().colorName);
-            boolean isCustom = ClothConfig.getInstance().getCustomColors().containsKey(piece.getBestMatch().colorName);
+            boolean isFade = checkFadeDye(piece.getBestMatch().getColorName());
+            boolean isCustom = ClothConfig.getInstance().getCustomColors().containsKey(piece.getBestMatch().getColorName());
 
             int highlightColor = 0;
 
@@ -504,15 +522,15 @@ public class DatabaseScreen extends ModScreen {
 
         // Match name
         if (piece.getBestMatch() != null) {
-            String matchStr = piece.getBestMatch().colorName;
+            String matchStr = piece.getBestMatch().getColorName();
             if (matchStr.length() > 35) {
                 matchStr = matchStr.substring(0, 35) + "...";
             }
             context.drawString(this.font, matchStr, 300, y + 4, 0xFF55FFFF);
 
             double deltaE = piece.getBestMatch().deltaE;
-            boolean isFade = checkFadeDye(piece.getBestMatch().colorName);
-            boolean isCustom = ClothConfig.getInstance().getCustomColors().containsKey(piece.getBestMatch().colorName);
+            boolean isFade = checkFadeDye(piece.getBestMatch().getColorName());
+            boolean isCustom = ClothConfig.getInstance().getCustomColors().containsKey(piece.getBestMatch().getColorName());
 
             int deColor;
             if (isCustom) {
@@ -582,7 +600,7 @@ public class DatabaseScreen extends ModScreen {
 
         for (int i = 0; i < numMatches; i++) {
             ArmorPiece.ColorMatch match = matches.get(i);
-            boolean isFade = checkFadeDye(match.colorName);
+            boolean isFade = checkFadeDye(match.getColorName());
 
             // Skip fade dyes if showFades is false
             if (!showFades && isFade) {
@@ -614,12 +632,12 @@ public class DatabaseScreen extends ModScreen {
             }
 
             // Draw match color box
-            ColorMath.RGB matchRgb = ColorMath.hexToRgb(match.targetHex);
+            ColorMath.RGB matchRgb = ColorMath.hexToRgb(match.getTargetHex());
             int matchColor = 0xFF000000 | (matchRgb.r() << 16) | (matchRgb.g() << 8) | matchRgb.b();
             context.fill(30, currentY, 90, currentY + 14, matchColor);
 
             // Draw match name
-            String matchName = match.colorName;
+            String matchName = match.getColorName();
             if (matchName.length() > 30) {
                 matchName = matchName.substring(0, 30) + "...";
             }
@@ -714,7 +732,7 @@ public class DatabaseScreen extends ModScreen {
             CollectionManager.getInstance().removePiece(uuid);
 
             // Rebuild filtered pieces list
-            allPieces.removeIf(p -> p.getUuid().equals(uuid));
+            loadPieces();
             filterAndSort();
 
             if (minecraft != null && minecraft.player != null) {
@@ -807,30 +825,18 @@ public class DatabaseScreen extends ModScreen {
     }
 
     private void filterAndSort() {
-        // Start with all pieces
-        List<ArmorPiece> result = new ArrayList<>(allPieces);
+        CollectionStore store = CollectionManager.getInstance().getStore();
+        CollectionQuery query = store.query().parallel();
 
         // Apply dupes filter first if enabled
         if (showDupesOnly) {
-            Map<String, Integer> hexCounts = new HashMap<>();
-            for (ArmorPiece piece : result) {
-                String hex = piece.getHexcode();
-                hexCounts.put(hex, hexCounts.getOrDefault(hex, 0) + 1);
-            }
-
-            result = result.stream()
-                .filter(piece -> hexCounts.getOrDefault(piece.getHexcode(), 0) > 1)
-                .collect(Collectors.toList());
+            CollectionIndex index = CollectionManager.getInstance().getIndex();
+            query.where(row -> index.countByRgb(store.rgb(row)) > 1);
         }
 
         // Apply fades filter
         if (!showFades) {
-            result = result.stream()
-                .filter(piece -> {
-                    if (piece.getBestMatch() == null) return true;
-                    return !checkFadeDye(piece.getBestMatch().colorName);
-                })
-                .collect(Collectors.toList());
+            query.where(row -> !store.isFade(row));
         }
 
         // Apply text search filter
@@ -843,49 +849,44 @@ public class DatabaseScreen extends ModScreen {
             boolean hasWildcard = searchUpper.contains("X") && searchUpper.length() == 6 && searchUpper.matches("[0-9A-FX]+");
 
             if (hasWildcard) {
-                // Build regex pattern from wildcard search
-                StringBuilder regexPattern = new StringBuilder("^");
+                // Turn the wildcard into a nibble mask so it can be matched against the rgb column
+                int mask = 0;
+                int value = 0;
                 for (int i = 0; i < 6; i++) {
                     char c = searchUpper.charAt(i);
-                    if (c == 'X') {
-                        regexPattern.append("[0-9A-F]");
-                    } else {
-                        regexPattern.append(c);
+                    int shift = (5 - i) * 4;
+                    if (c != 'X') {
+                        mask |= 0xF << shift;
+                        value |= Character.digit(c, 16) << shift;
                     }
                 }
-                regexPattern.append("$");
-                String pattern = regexPattern.toString();
-
-                result = result.stream()
-                    .filter(piece -> {
-                        String hexClean = piece.getHexcode().replace("#", "").toUpperCase();
-                        return hexClean.matches(pattern);
-                    })
-                    .collect(Collectors.toList());
+                final int wildcardMask = mask;
+                final int wildcardValue = value;
+
+                query.where(row -> store.rgb(row) >= 0 && (store.rgb(row) & wildcardMask) == wildcardValue);
             } else {
                 // Normal text search
-                result = result.stream()
-                    .filter(piece -> {
-                        String name = piece.getPieceName().toLowerCase();
-                        String hex = piece.getHexcode().toLowerCase();
+                query.where(row -> {
+                    ArmorPiece piece = store.piece(row);
+                    String name = piece.getPieceName().toLowerCase();
+                    String hex = piece.getHexcode().toLowerCase();
+
+                    if (name.contains(searchLower) || hex.contains(searchLower)) {
+                        return true;
+                    }
 
-                        if (name.contains(searchLower) || hex.contains(searchLower)) {
+                    if (piece.getBestMatch() != null) {
+                        String match = piece.getBestMatch().getColorName().toLowerCase();
+                        if (match.contains(searchLower)) {
                             return true;
                         }
 
-                        if (piece.getBestMatch() != null) {
-                            String match = piece.getBestMatch().colorName.toLowerCase();
-                            if (match.contains(searchLower)) {
-                                return true;
-                            }
-
-                            String delta = String.format("%.2f", piece.getBestMatch().deltaE);
-                            return delta.contains(searchLower);
-                        }
+                        String delta = String.format("%.2f", piece.getBestMatch().deltaE);
+                        return delta.contains(searchLower);
+                    }
 
-                        return false;
-                    })
-                    .collect(Collectors.toList());
+                    return false;
+                });
             }
         }
 
@@ -895,56 +896,76 @@ public class DatabaseScreen extends ModScreen {
 
         if (hasActiveHexSearch) {
             final String searchHex = hexSearchText;
-            result = result.stream()
-                .filter(piece -> {
-                    // Calculate and cache deltaE and distance for this search
-                    if (!searchHex.equals(piece.getCachedSearchHex())) {
-                        double deltaE = ColorMath.calculateDeltaE(searchHex, piece.getHexcode());
-                        int distance = ColorMath.calculateAbsoluteDistance(searchHex, piece.getHexcode());
-
-                        piece.setCachedSearchHex(searchHex);
-                        piece.setCachedSearchDeltaE(deltaE);
-                        piece.setCachedSearchDistance(distance);
-                    }
+            final ColorMath.LAB searchLab = ColorMath.hexToLab(searchHex);
+            final int searchRgb = CollectionStore.parseRgb(searchHex);
+
+            // Radius query on the LAB grid instead of a ΔE check against every row
+            Set<ArmorPiece> hits = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (LabSpatialIndex.Neighbor hit : CollectionManager.getInstance().getSpatialIndex().withinRadius(searchLab, 5.0, null)) {
+                ArmorPiece piece = hit.piece();
+                int rgb = CollectionStore.parseRgb(piece.getHexcode());
+                int distance = Math.abs(((searchRgb >> 16) & 0xFF) - ((rgb >> 16) & 0xFF)) +
+                               Math.abs(((searchRgb >> 8) & 0xFF) - ((rgb >> 8) & 0xFF)) +
+                               Math.abs((searchRgb & 0xFF) - (rgb & 0xFF));
+
+                // Cache deltaE and distance on the piece for the distance column
+                piece.setCachedSearchHex(searchHex);
+                piece.setCachedSearchDeltaE(hit.deltaE());
+                piece.setCachedSearchDistance(distance);
+                hits.add(piece);
+            }
 
-                    return piece.getCachedSearchDeltaE() <= 5.0;
-                })
-                .collect(Collectors.toList());
+            query.where(row -> hits.contains(store.piece(row)));
 
             // Automatically sort by distance when hex search is active
             sortColumn = "distance";
             sortAscending = true;
         }
 
-        // Apply sorting
+        // Apply sorting (default keeps the initial best-to-worst deltaE order)
         if (sortColumn != null) {
-            result.sort(getComparator(sortColumn, sortAscending));
+            query.sortBy(getComparator(store, sortColumn, sortAscending));
+        } else {
+            query.sortBy(bestDeltaEComparator(store));
         }
 
-        filteredPieces = result;
+        filteredPieces = query.pieces();
         scrollOffset = 0;
     }
 
-    private Comparator<ArmorPiece> getComparator(String column, boolean ascending) {
-        Comparator<ArmorPiece> comparator = switch (column) {
-            case "name" -> Comparator.comparing(p -> p.getPieceName().toLowerCase());
-            case "hex" -> Comparator.comparing(ArmorPiece::getHexcode);
-            case "match" -> Comparator.comparing(p ->
-                p.getBestMatch() != null ? p.getBestMatch().colorName.toLowerCase() : ""
-            );
-            case "deltaE" -> Comparator.comparingDouble(p ->
-                p.getBestMatch() != null ? p.getBestMatch().deltaE : 999.0
-            );
-            case "absolute" -> Comparator.comparingInt(p ->
-                p.getBestMatch() != null ? p.getBestMatch().absoluteDistance : 999
-            );
-            case "distance" -> Comparator.comparingDouble(p ->
-                p.getCachedSearchDeltaE() != null ? p.getCachedSearchDeltaE() : 999.0
-            );
-            default -> Comparator.comparing(ArmorPiece::getHexcode);
+    private CollectionQuery.RowComparator getComparator(CollectionStore store, String column, boolean ascending) {
+        CollectionQuery.RowComparator comparator = switch (column) {
+            case "name" -> (a, b) -> store.piece(a).getPieceName().toLowerCase()
+                .compareTo(store.piece(b).getPieceName().toLowerCase());
+            case "match" -> (a, b) -> matchNameLower(store.piece(a)).compareTo(matchNameLower(store.piece(b)));
+            case "deltaE" -> bestDeltaEComparator(store);
+            case "absolute" -> (a, b) -> Integer.compare(absoluteDistance(store.piece(a)), absoluteDistance(store.piece(b)));
+            case "distance" -> (a, b) -> Double.compare(searchDeltaE(store.piece(a)), searchDeltaE(store.piece(b)));
+            default -> (a, b) -> store.piece(a).getHexcode().compareTo(store.piece(b).getHexcode());
         };
 
-        return ascending ? comparator : comparator.reversed();
+        return ascending ? comparator : (a, b) -> comparator.compare(b, a);
+    }
+
+    private static CollectionQuery.RowComparator bestDeltaEComparator(CollectionStore store) {
+        // Pieces without analysis have NaN deltaE and sort last, like the old 999.0 default
+        return (a, b) -> Float.compare(sortableDeltaE(store.bestDeltaE(a)), sortableDeltaE(store.bestDeltaE(b)));
+    }
+
+    private static float sortableDeltaE(float deltaE) {
+        return Float.isNaN(deltaE) ? 999.0f : deltaE;
+    }
+
+    private static String matchNameLower(ArmorPiece piece) {
+        return piece.getBestMatch() != null ? piece.getBestMatch().getColorName().toLowerCase() : "";
+    }
+
+    private static int absoluteDistance(ArmorPiece piece) {
+        return piece.getBestMatch() != null ? piece.getBestMatch().absoluteDistance : 999;
+    }
+
+    private static double searchDeltaE(ArmorPiece piece) {
+        return piece.getCachedSearchDeltaE() != null ? piece.getCachedSearchDeltaE() : 999.0;
     }
 
     private boolean checkFadeDye(String colorName) {
@@ -1016,7 +1037,7 @@ public class DatabaseScreen extends ModScreen {
 
         for (int i = 0; i < numMatches; i++) {
             ArmorPiece.ColorMatch match = matches.get(i);
-            boolean isFade = checkFadeDye(match.colorName);
+            boolean isFade = checkFadeDye(match.getColorName());
 
             // Only count this line if it will be shown (respecting showFades filter)
             if (showFades || !isFade) {
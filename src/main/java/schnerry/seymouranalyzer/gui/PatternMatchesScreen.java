@@ -1,9 +1,9 @@
 package schnerry.seymouranalyzer.gui;
 
 import org.jspecify.annotations.NonNull;
-import schnerry.seymouranalyzer.analyzer.PatternDetector;
 import schnerry.seymouranalyzer.data.ArmorPiece;
 import schnerry.seymouranalyzer.data.CollectionManager;
+import schnerry.seymouranalyzer.data.CollectionStore;
 import schnerry.seymouranalyzer.util.ColorMath;
 
 import java.util.*;
@@ -51,20 +51,17 @@ public class PatternMatchesScreen extends ModScreen {
 
     private void loadPatternMatches() {
         Map<String, PatternMatchEntry> patternMap = new HashMap<>();
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
-        PatternDetector detector = PatternDetector.getInstance();
-
-        for (ArmorPiece piece : collection.values()) {
-            String pattern = detector.detectPattern(piece.getHexcode());
-            if (pattern != null) {
-                PatternMatchEntry entry = patternMap.computeIfAbsent(pattern, k -> {
-                    PatternMatchEntry e = new PatternMatchEntry();
-                    e.patternType = k;
-                    return e;
-                });
-                entry.pieces.add(piece);
-            }
-        }
+        CollectionStore store = CollectionManager.getInstance().getStore();
+
+        store.query()
+            .where(row -> store.pattern(row) != CollectionStore.NO_ID)
+            .groupBy(row -> store.label(store.pattern(row)))
+            .forEach((pattern, pieces) -> {
+                PatternMatchEntry entry = new PatternMatchEntry();
+                entry.patternType = pattern;
+                entry.pieces.addAll(pieces);
+                patternMap.put(pattern, entry);
+            });
 
         patternMatches = new ArrayList<>(patternMap.values());
 
@@ -3,6 +3,7 @@ package schnerry.seymouranalyzer.gui;
 import org.jspecify.annotations.NonNull;
 import schnerry.seymouranalyzer.data.ArmorPiece;
 import schnerry.seymouranalyzer.data.CollectionManager;
+import schnerry.seymouranalyzer.data.CollectionStore;
 import schnerry.seymouranalyzer.util.ColorMath;
 
 import java.util.*;
@@ -49,19 +50,17 @@ public class WordMatchesScreen extends ModScreen {
 
     private void loadWordMatches() {
         Map<String, WordMatchEntry> wordMap = new HashMap<>();
-        Map<String, ArmorPiece> collection = CollectionManager.getInstance().getCollection();
-
-        for (ArmorPiece piece : collection.values()) {
-            String wordMatch = piece.getWordMatch();
-            if (wordMatch != null && !wordMatch.isEmpty()) {
-                WordMatchEntry entry = wordMap.computeIfAbsent(wordMatch, k -> {
-                    WordMatchEntry e = new WordMatchEntry();
-                    e.word = k;
-                    return e;
-                });
-                entry.pieces.add(piece);
-            }
-        }
+        CollectionStore store = CollectionManager.getInstance().getStore();
+
+        store.query()
+            .where(row -> store.word(row) != CollectionStore.NO_ID)
+            .groupBy(row -> store.label(store.word(row)))
+            .forEach((word, pieces) -> {
+                WordMatchEntry entry = new WordMatchEntry();
+                entry.word = word;
+                entry.pieces.addAll(pieces);
+                wordMap.put(word, entry);
+            });
 
         wordMatches = new ArrayList<>(wordMap.values());
         wordMatches.sort(Comparator.comparing(e -> e.word));
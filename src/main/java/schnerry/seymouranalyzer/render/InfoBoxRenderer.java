@@ -15,7 +15,8 @@ import schnerry.seymouranalyzer.data.CollectionManager;
 import schnerry.seymouranalyzer.util.ItemStackUtils;
 import schnerry.seymouranalyzer.util.StringUtility;
 
-import java.util.Objects;
+import java.util.List;
+import java.util.Set;
 
 public class InfoBoxRenderer {
     private static final boolean DEBUG = false; // Disable debugging
@@ -254,7 +255,6 @@ public class InfoBoxRenderer {
      */
     private static ChecklistStatus getChecklistStatusForHex(String targetHex, String itemName) {
         ChecklistCache cache = ChecklistCache.getInstance();
-        String hexUpper = targetHex.toUpperCase();
 
         // Determine piece type
         String pieceType = getPieceTypeFromName(itemName);
@@ -262,42 +262,18 @@ public class InfoBoxRenderer {
             return new ChecklistStatus(false, false, Integer.MAX_VALUE);
         }
 
-        // Check normal color cache
-        for (var categoryCache : cache.getNormalColorCache().values()) {
-            if (categoryCache.matchesByIndex != null) {
-                for (var stageMatches : categoryCache.matchesByIndex.values()) {
-                    if (stageMatches.stageHex != null && stageMatches.stageHex.equalsIgnoreCase(hexUpper)) {
-                        // This hex is a target in checklist
-                        ChecklistCache.MatchInfo matchInfo = getMatchForPieceType(stageMatches, pieceType);
-                        if (matchInfo != null) {
-                            // We have a match assigned
-                            int tier = getTierFromMatch(matchInfo);
-                            return new ChecklistStatus(true, true, tier);
-                        }
-                        // Target exists but no match assigned yet
-                        return new ChecklistStatus(false, true, Integer.MAX_VALUE);
-                    }
-                }
-            }
-        }
-
-        // Check fade dye cache
-        for (var categoryCache : cache.getFadeDyeOptimalCache().values()) {
-            if (categoryCache.matchesByIndex != null) {
-                for (var stageMatches : categoryCache.matchesByIndex.values()) {
-                    if (stageMatches.stageHex != null && stageMatches.stageHex.equalsIgnoreCase(hexUpper)) {
-                        // This hex is a target in checklist
-                        ChecklistCache.MatchInfo matchInfo = getMatchForPieceType(stageMatches, pieceType);
-                        if (matchInfo != null) {
-                            // We have a match assigned
-                            int tier = getTierFromMatch(matchInfo);
-                            return new ChecklistStatus(true, true, tier);
-                        }
-                        // Target exists but no match assigned yet
-                        return new ChecklistStatus(false, true, Integer.MAX_VALUE);
-                    }
-                }
+        // Single lookup in the cache's reverse index; normal categories come before fade dyes
+        List<ChecklistCache.StageTarget> targets = cache.getTargets(targetHex);
+        if (!targets.isEmpty()) {
+            // This hex is a target in checklist
+            ChecklistCache.MatchInfo matchInfo = targets.getFirst().getMatch(pieceType);
+            if (matchInfo != null) {
+                // We have a match assigned
+                int tier = getTierFromMatch(matchInfo);
+                return new ChecklistStatus(true, true, tier);
             }
+            // Target exists but no match assigned yet
+            return new ChecklistStatus(false, true, Integer.MAX_VALUE);
         }
 
         // Not a checklist target
@@ -320,16 +296,6 @@ public class InfoBoxRenderer {
         return null;
     }
 
-    private static ChecklistCache.MatchInfo getMatchForPieceType(ChecklistCache.StageMatches stageMatches, String pieceType) {
-        return switch (pieceType) {
-            case "helmet" -> stageMatches.helmet;
-            case "chestplate" -> stageMatches.chestplate;
-            case "leggings" -> stageMatches.leggings;
-            case "boots" -> stageMatches.boots;
-            default -> null;
-        };
-    }
-
     private static int getTierFromMatch(ChecklistCache.MatchInfo matchInfo) {
         if (matchInfo == null || matchInfo.hex == null) return Integer.MAX_VALUE;
 
@@ -342,21 +308,11 @@ public class InfoBoxRenderer {
     }
 
     private static int checkDupeCount(String hex, String uuid) {
-        var collection = CollectionManager.getInstance().getCollection();
-        String hexUpper = hex.toUpperCase();
-        int dupeCount = 0;
-        boolean isThisItemInCollection = false;
-
-        for (var entry : collection.entrySet()) {
-            if (entry.getValue().getHexcode().toUpperCase().equals(hexUpper)) {
-                dupeCount++;
-
-                // Check if the hovered item IS this collection piece
-                if (Objects.equals(uuid, entry.getKey())) {
-                    isThisItemInCollection = true;
-                }
-            }
-        }
+        Set<String> sameHexUuids = CollectionManager.getInstance().getUuidsByHex(hex);
+        int dupeCount = sameHexUuids.size();
+
+        // Check if the hovered item IS one of these collection pieces
+        boolean isThisItemInCollection = uuid != null && sameHexUuids.contains(uuid);
 
         // For items IN collection: show dupe if there are 2+ pieces with this hex
         if (isThisItemInCollection && dupeCount >= 2) {
@@ -4,7 +4,6 @@ import schnerry.seymouranalyzer.analyzer.ColorAnalyzer;
 import schnerry.seymouranalyzer.analyzer.PatternDetector;
 import schnerry.seymouranalyzer.config.ClothConfig;
 import schnerry.seymouranalyzer.config.MatchPriority;
-import schnerry.seymouranalyzer.data.ArmorPiece;
 import schnerry.seymouranalyzer.data.CollectionManager;
 import schnerry.seymouranalyzer.scanner.ChestScanner;
 import schnerry.seymouranalyzer.util.ItemStackUtils;
@@ -504,23 +503,11 @@ public class ItemSlotHighlighter {
      * - But has a DIFFERENT uuid (it's a different item)
      */
     private boolean isDuplicateHex(String hex, String uuid) {
-        var collection = CollectionManager.getInstance().getCollection();
-        String hexUpper = hex.toUpperCase();
-
-        for (var entry : collection.entrySet()) {
-            String entryUuid = entry.getKey();
-            ArmorPiece piece = entry.getValue();
-
-            // Check if hex matches
-            if (piece.getHexcode().toUpperCase().equals(hexUpper)) {
-                // Only mark as dupe if UUID is DIFFERENT (different item, same color)
-                if (!entryUuid.equals(uuid)) {
-                    return true;
-                }
-            }
-        }
+        Set<String> sameHexUuids = CollectionManager.getInstance().getUuidsByHex(hex);
 
-        return false;
+        // Only mark as dupe if some UUID is DIFFERENT (different item, same color)
+        int others = sameHexUuids.size() - (sameHexUuids.contains(uuid) ? 1 : 0);
+        return others > 0;
     }
 
     /**
@@ -0,0 +1,258 @@
+package schnerry.seymouranalyzer.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Picks non-overlapping sets out of a candidate list: as many sets as possible (up to a maximum),
+ * then the lowest total cost.
+ * <p>
+ * Branch and bound over the pieces of one slot (the one with the fewest distinct pieces): each of them
+ * is either used by one of its sets or left out. Bounds come from every branching piece's cheapest set,
+ * which can't be beaten by any set still available for it. The first levels are split into tasks that run
+ * in parallel and share the incumbent; when the time budget runs out or the caller cancels, the best packing
+ * found so far is returned.
+ */
+public final class SetPackingSolver {
+    private static final double EPSILON = 1e-9;
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    private static final int MAX_SPLIT_DEPTH = 3;
+
+    /**
+     * @param sets          Indices of the chosen sets, cheapest first
+     * @param provedOptimal False if the search was stopped (time budget or cancelled) before it finished
+     * @param nodes         Search nodes visited
+     */
+    public record Result(int[] sets, boolean provedOptimal, long nodes) {}
+
+    private record Incumbent(int count, double cost, int[] sets) {}
+
+    private record Task(int group, int[] chosen, double cost) {}
+
+    private final int[][] setPieces;
+    private final double[] setCost;
+    private final int pieceCount;
+    private final int maxSets;
+    private final long deadline;
+    private final BooleanSupplier cancelled;
+    private final Consumer<int[]> onImprovement;
+
+    // Sets grouped by their piece in the branching slot, groups ordered by cheapest set; group g spans [groupStart[g], groupStart[g + 1])
+    private final int[] groupStart;
+    private final int[] groupSets;
+    private final double[] bestCostPrefix; // Sum of the cheapest set cost of groups 0..g-1
+    private final int groupCount;
+    private final int minDistinctPieces; // Fewest distinct pieces in any slot
+
+    private volatile Incumbent incumbent;
+    private volatile boolean stopped;
+    private final LongAdder nodes = new LongAdder();
+
+    private SetPackingSolver(int[][] setPieces, double[] setCost, int pieceCount, int maxSets, long timeBudgetMs,
+                             BooleanSupplier cancelled, Consumer<int[]> onImprovement) {
+        this.setPieces = setPieces;
+        this.setCost = setCost;
+        this.pieceCount = pieceCount;
+        this.maxSets = maxSets;
+        this.deadline = System.nanoTime() + timeBudgetMs * 1_000_000L;
+        this.cancelled = cancelled;
+        this.onImprovement = onImprovement;
+
+        int slots = setPieces.length == 0 ? 0 : setPieces[0].length;
+        int branchSlot = 0;
+        int minDistinct = Integer.MAX_VALUE;
+        for (int slot = 0; slot < slots; slot++) {
+            boolean[] seen = new boolean[pieceCount];
+            int distinct = 0;
+            for (int[] pieces : setPieces) {
+                if (!seen[pieces[slot]]) {
+                    seen[pieces[slot]] = true;
+                    distinct++;
+                }
+            }
+            if (distinct < minDistinct) {
+                minDistinct = distinct;
+                branchSlot = slot;
+            }
+        }
+        this.minDistinctPieces = slots == 0 ? 0 : minDistinct;
+
+        // Group by branching piece, each group cheapest set first, groups by their cheapest set
+        Integer[] order = new Integer[setPieces.length];
+        for (int s = 0; s < order.length; s++) {
+            order[s] = s;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(s -> setCost[s]));
+        int slot = branchSlot;
+        int[] groupOfPiece = new int[pieceCount];
+        Arrays.fill(groupOfPiece, -1);
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int s : order) {
+            int piece = setPieces[s][slot];
+            if (groupOfPiece[piece] == -1) {
+                groupOfPiece[piece] = groups.size();
+                groups.add(new ArrayList<>());
+            }
+            groups.get(groupOfPiece[piece]).add(s);
+        }
+
+        groupCount = groups.size();
+        groupStart = new int[groupCount + 1];
+        groupSets = new int[setPieces.length];
+        bestCostPrefix = new double[groupCount + 1];
+        int fill = 0;
+        for (int g = 0; g < groupCount; g++) {
+            groupStart[g] = fill;
+            for (int s : groups.get(g)) {
+                groupSets[fill++] = s;
+            }
+            bestCostPrefix[g + 1] = bestCostPrefix[g] + setCost[groupSets[groupStart[g]]];
+        }
+        groupStart[groupCount] = fill;
+    }
+
+    /**
+     * @param setPieces     Piece ids (0 to pieceCount - 1) per set, one per slot, every set has the same slots
+     * @param setCost       Cost per set, lower is better
+     * @param maxSets       Stop adding sets beyond this many
+     * @param initial       Known packing to start from (e.g. a greedy one), may be empty
+     * @param timeBudgetMs  Return the best packing found after this long
+     * @param cancelled     Checked periodically, returns the best packing found so far once true
+     * @param onImprovement Called with every better packing found (set indices), from the search threads
+     */
+    public static Result solve(int[][] setPieces, double[] setCost, int pieceCount, int maxSets, int[] initial, long timeBudgetMs,
+                               BooleanSupplier cancelled, Consumer<int[]> onImprovement) {
+        SetPackingSolver solver = new SetPackingSolver(setPieces, setCost, pieceCount, maxSets, timeBudgetMs, cancelled, onImprovement);
+        double initialCost = 0;
+        for (int s : initial) {
+            initialCost += setCost[s];
+        }
+        solver.incumbent = new Incumbent(initial.length, initialCost, initial.clone());
+
+        List<Task> tasks = solver.split();
+        tasks.parallelStream().forEach(solver::run);
+
+        int[] sorted = IntStream.of(solver.incumbent.sets()).boxed()
+            .sorted(Comparator.comparingDouble(s -> setCost[s]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+        return new Result(sorted, !solver.stopped, solver.nodes.sum());
+    }
+
+    /**
+     * Expand the first levels breadth first into independent subtrees, enough to keep every core busy
+     */
+    private List<Task> split() {
+        int target = Runtime.getRuntime().availableProcessors() * 4;
+        List<Task> tasks = List.of(new Task(0, new int[0], 0));
+        for (int depth = 0; depth < MAX_SPLIT_DEPTH && tasks.size() < target; depth++) {
+            List<Task> next = new ArrayList<>();
+            for (Task task : tasks) {
+                if (task.group() == groupCount || task.chosen().length == maxSets) {
+                    next.add(task);
+                    continue;
+                }
+                boolean[] used = usedBy(task.chosen());
+                for (int i = groupStart[task.group()]; i < groupStart[task.group() + 1]; i++) {
+                    int s = groupSets[i];
+                    if (!fits(s, used)) continue;
+                    int[] chosen = Arrays.copyOf(task.chosen(), task.chosen().length + 1);
+                    chosen[chosen.length - 1] = s;
+                    next.add(new Task(task.group() + 1, chosen, task.cost() + setCost[s]));
+                }
+                next.add(new Task(task.group() + 1, task.chosen(), task.cost()));
+            }
+            tasks = next;
+        }
+        return tasks;
+    }
+
+    private void run(Task task) {
+        if (stopped) return;
+        Search search = new Search(task);
+        search.visit(task.group(), task.chosen().length, task.cost());
+        nodes.add(search.visited);
+    }
+
+    private boolean[] usedBy(int[] sets) {
+        boolean[] used = new boolean[pieceCount];
+        for (int s : sets) {
+            for (int piece : setPieces[s]) {
+                used[piece] = true;
+            }
+        }
+        return used;
+    }
+
+    private boolean fits(int set, boolean[] used) {
+        for (int piece : setPieces[set]) {
+            if (used[piece]) return false;
+        }
+        return true;
+    }
+
+    private synchronized void offer(int count, double cost, int[] chosen) {
+        Incumbent current = incumbent;
+        if (count > current.count() || (count == current.count() && cost < current.cost() - EPSILON)) {
+            incumbent = new Incumbent(count, cost, Arrays.copyOf(chosen, count));
+            onImprovement.accept(Arrays.copyOf(chosen, count));
+        }
+    }
+
+    /**
+     * Depth first search below one task, with its own piece usage
+     */
+    private final class Search {
+        private final boolean[] used;
+        private final int[] chosen = new int[maxSets];
+        private long visited;
+
+        Search(Task task) {
+            used = usedBy(task.chosen());
+            System.arraycopy(task.chosen(), 0, chosen, 0, task.chosen().length);
+        }
+
+        void visit(int group, int count, double cost) {
+            Incumbent best = incumbent;
+            if (count > best.count() || (count == best.count() && cost < best.cost() - EPSILON)) {
+                offer(count, cost, chosen);
+            }
+
+            // Leaving a group out continues in this frame, so recursion only goes as deep as the sets chosen
+            for (; group < groupCount && count < maxSets; group++) {
+                if (stopped) return;
+                if (++visited % DEADLINE_CHECK_INTERVAL == 0 && (System.nanoTime() > deadline || cancelled.getAsBoolean())) {
+                    stopped = true;
+                    return;
+                }
+
+                // At most one more set per remaining group and per free piece of any slot, each costing
+                // at least its group's cheapest set - groups are ordered by that, so the next ones are the cheapest
+                best = incumbent;
+                int more = Math.min(Math.min(maxSets, minDistinctPieces) - count, groupCount - group);
+                if (count + more < best.count()) return;
+                if (count + more == best.count() && cost + bestCostPrefix[group + more] - bestCostPrefix[group] >= best.cost() - EPSILON) return;
+
+                for (int i = groupStart[group]; i < groupStart[group + 1]; i++) {
+                    int s = groupSets[i];
+                    if (!fits(s, used)) continue;
+                    for (int piece : setPieces[s]) {
+                        used[piece] = true;
+                    }
+                    chosen[count] = s;
+                    visit(group + 1, count + 1, cost + setCost[s]);
+                    for (int piece : setPieces[s]) {
+                        used[piece] = false;
+                    }
+                    if (stopped) return;
+                }
+            }
+        }
+    }
+}
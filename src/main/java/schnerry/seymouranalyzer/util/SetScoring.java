@@ -0,0 +1,124 @@
+package schnerry.seymouranalyzer.util;
+
+/**
+ * How the best sets search scores a candidate set, lower is better.
+ * <p>
+ * The search calls {@link #score} for partial sets too, while it is still adding pieces, and skips every
+ * completion of a partial set whose score is already too high. So a score must never decrease when
+ * pieces (and their deltas) are added.
+ */
+public interface SetScoring {
+    /**
+     * Short stable id, stored with results and in the config
+     */
+    String id();
+
+    /**
+     * Name shown on screen, e.g. next to the score value
+     */
+    String label();
+
+    /**
+     * Whether the score needs a target color (target deltas are all 0 without one)
+     */
+    boolean needsTarget();
+
+    /**
+     * @param pairDeltas   ΔE of each piece pair; pair (i, j) with i < j is at {@code j * (j - 1) / 2 + i}
+     * @param pairCount    Pairs filled in, always {@code pieceCount * (pieceCount - 1) / 2}
+     * @param targetDeltas ΔE of each piece to the target color
+     * @param pieceCount   Pieces filled in
+     * @param setSize      Pieces in a complete set
+     */
+    double score(double[] pairDeltas, int pairCount, double[] targetDeltas, int pieceCount, int setSize);
+
+    static int pairIndex(int i, int j) {
+        return j * (j - 1) / 2 + i;
+    }
+
+    static int pairCount(int pieces) {
+        return pieces * (pieces - 1) / 2;
+    }
+
+    /**
+     * Scorings that come with the mod
+     */
+    enum Builtin implements SetScoring {
+        /**
+         * Average ΔE over all piece pairs (missing pairs count as 0 while building)
+         */
+        AVERAGE("avg", "Avg ΔE", false) {
+            @Override
+            public double score(double[] pairDeltas, int pairCount, double[] targetDeltas, int pieceCount, int setSize) {
+                double sum = 0;
+                for (int i = 0; i < pairCount; i++) {
+                    sum += pairDeltas[i];
+                }
+                return sum / SetScoring.pairCount(setSize);
+            }
+        },
+        /**
+         * Worst piece pair, for sets where no two pieces may clash
+         */
+        MAX_PAIRWISE("max", "Max ΔE", false) {
+            @Override
+            public double score(double[] pairDeltas, int pairCount, double[] targetDeltas, int pieceCount, int setSize) {
+                double max = 0;
+                for (int i = 0; i < pairCount; i++) {
+                    max = Math.max(max, pairDeltas[i]);
+                }
+                return max;
+            }
+        },
+        /**
+         * Average ΔE of the pieces to the target color
+         */
+        TARGET_DISTANCE("target", "Target ΔE", true) {
+            @Override
+            public double score(double[] pairDeltas, int pairCount, double[] targetDeltas, int pieceCount, int setSize) {
+                double sum = 0;
+                for (int i = 0; i < pieceCount; i++) {
+                    sum += targetDeltas[i];
+                }
+                return sum / setSize;
+            }
+        };
+
+        private final String id;
+        private final String label;
+        private final boolean needsTarget;
+
+        Builtin(String id, String label, boolean needsTarget) {
+            this.id = id;
+            this.label = label;
+            this.needsTarget = needsTarget;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public String label() {
+            return label;
+        }
+
+        @Override
+        public boolean needsTarget() {
+            return needsTarget;
+        }
+
+        /**
+         * Scoring with this id, average if unknown
+         */
+        public static Builtin fromId(String id) {
+            for (Builtin scoring : values()) {
+                if (scoring.id.equals(id)) {
+                    return scoring;
+                }
+            }
+            return AVERAGE;
+        }
+    }
+}